@@ -0,0 +1,243 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 自适应的发送并发数和全局速率（AIMD）
+ *
+ * 每次发送成功且延迟正常时加性增加：并发数每轮（约等于当前并发数个请求）加 1，速率每秒约加 1 条；
+ * 收到 429 时两者减半，并按 retry_after 暂停全局发送；无上传的请求延迟明显高于基线时按比例小幅降低。
+ * 两次降低之间至少间隔一个冷却时间，避免同一批并发请求的多个 429 把限额连续减半。
+ * 并发许可在 {@link SendRateLimiter} 分配速率额度之后获取，高优先级的等待者先拿到许可；
+ * 等待超过该优先级 max-wait-ms 的请求不再让给高优先级，与其他等待者平等竞争，避免持续的高优先级请求使 BULK 无法发送。
+ */
+@Component
+public class AdaptiveSendLimit {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveSendLimit.class);
+
+    /** 延迟基线向上漂移的速度，基线下降则立即跟随 */
+    private static final int BASELINE_DRIFT = 256;
+
+    private final SendRateLimiter rateLimiter;
+    private final boolean enabled;
+    private final double minConcurrency;
+    private final double maxConcurrency;
+    private final double minRate;
+    private final double maxRate;
+    private final double latencyFactor;
+    private final long latencyFloorNanos;
+    private final long cooldownNanos;
+    /** 各优先级让给高优先级的最长时间，下标为 {@link SendPriority#ordinal()} */
+    private final long[] maxWaitNanos = new long[SendPriority.values().length];
+    /** 纳秒时钟，测试时可替换 */
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    /** 各优先级正在等待并发许可的数量，下标为 {@link SendPriority#ordinal()} */
+    private final int[] waiting = new int[SendPriority.values().length];
+
+    /** 只在持有锁时修改，volatile 供监控读取 */
+    private volatile double concurrencyLimit;
+    private volatile double rateLimit;
+    private volatile int inFlight;
+    private long baselineNanos;
+    private long lastDecreaseNanos;
+
+    private final Counter throttled;
+
+    @Autowired
+    public AdaptiveSendLimit(SendRateLimiter rateLimiter,
+                             MeterRegistry meterRegistry,
+                             @Value("${bot.send.adaptive.enabled:true}") boolean enabled,
+                             @Value("${bot.send.concurrency.initial:4}") int initialConcurrency,
+                             @Value("${bot.send.concurrency.min:1}") int minConcurrency,
+                             @Value("${bot.send.concurrency.max:16}") int maxConcurrency,
+                             @Value("${bot.send.adaptive.min-rate:1}") double minRate,
+                             @Value("${bot.send.adaptive.latency-factor:2.0}") double latencyFactor,
+                             @Value("${bot.send.adaptive.latency-floor-ms:100}") long latencyFloorMillis,
+                             @Value("${bot.send.adaptive.cooldown-ms:1000}") long cooldownMillis,
+                             @Value("${bot.priority.interactive.max-wait-ms:2000}") long interactiveMaxWaitMillis,
+                             @Value("${bot.priority.normal.max-wait-ms:30000}") long normalMaxWaitMillis,
+                             @Value("${bot.priority.bulk.max-wait-ms:300000}") long bulkMaxWaitMillis) {
+        this(rateLimiter, meterRegistry, enabled, initialConcurrency, minConcurrency, maxConcurrency, minRate,
+                latencyFactor, latencyFloorMillis, cooldownMillis,
+                interactiveMaxWaitMillis, normalMaxWaitMillis, bulkMaxWaitMillis, System::nanoTime);
+    }
+
+    AdaptiveSendLimit(SendRateLimiter rateLimiter, MeterRegistry meterRegistry, boolean enabled,
+                      int initialConcurrency, int minConcurrency, int maxConcurrency, double minRate,
+                      double latencyFactor, long latencyFloorMillis, long cooldownMillis,
+                      long interactiveMaxWaitMillis, long normalMaxWaitMillis, long bulkMaxWaitMillis, LongSupplier clock) {
+        this.clock = clock;
+        this.rateLimiter = rateLimiter;
+        this.enabled = enabled;
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.maxRate = rateLimiter.getMaxGlobalPerSecond();
+        this.minRate = Math.min(maxRate, Math.max(0.1, minRate));
+        this.latencyFactor = Math.max(1.0, latencyFactor);
+        this.latencyFloorNanos = TimeUnit.MILLISECONDS.toNanos(latencyFloorMillis);
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+        this.concurrencyLimit = enabled
+                ? Math.min(this.maxConcurrency, Math.max(this.minConcurrency, initialConcurrency))
+                : this.maxConcurrency;
+        this.rateLimit = maxRate;
+        this.lastDecreaseNanos = clock.getAsLong() - cooldownNanos;
+        maxWaitNanos[SendPriority.INTERACTIVE.ordinal()] = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, interactiveMaxWaitMillis));
+        maxWaitNanos[SendPriority.NORMAL.ordinal()] = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, normalMaxWaitMillis));
+        maxWaitNanos[SendPriority.BULK.ordinal()] = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, bulkMaxWaitMillis));
+
+        Gauge.builder("telegram.send.concurrency.limit", this, AdaptiveSendLimit::getConcurrencyLimit)
+                .description("Current adaptive limit of concurrent Bot API calls")
+                .register(meterRegistry);
+        Gauge.builder("telegram.send.rate.limit", this, AdaptiveSendLimit::getRateLimit)
+                .description("Current adaptive global send rate per second")
+                .register(meterRegistry);
+        Gauge.builder("telegram.send.inflight", this, AdaptiveSendLimit::getInFlight)
+                .description("Bot API calls in flight")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("telegram.send.throttled")
+                .description("Bot API calls rejected with 429")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 等待并发许可，高优先级的等待者先获得许可；等待超过该优先级的上限后不再让给高优先级
+     */
+    public void acquire(SendPriority priority) throws InterruptedException {
+        long yieldUntil = clock.getAsLong() + maxWaitNanos[priority.ordinal()];
+        lock.lock();
+        try {
+            waiting[priority.ordinal()]++;
+            try {
+                while (true) {
+                    if (inFlight >= (int) concurrencyLimit) {
+                        released.await();
+                        continue;
+                    }
+                    long remaining = yieldUntil - clock.getAsLong();
+                    if (remaining <= 0 || !higherPriorityWaiting(priority)) {
+                        break;
+                    }
+                    // 有空闲许可但要先让给高优先级，最多等到上限
+                    released.awaitNanos(remaining);
+                }
+            } finally {
+                waiting[priority.ordinal()]--;
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 归还并发许可，并根据这次调用的结果调整限额
+     *
+     * @param latencyNanos 调用耗时
+     * @param bytes        上传字节数，只有无上传的调用参与延迟判断
+     * @param success      调用是否成功，失败（非429）时不调整
+     */
+    public void release(long latencyNanos, long bytes, boolean success) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (enabled && success) {
+                onSuccess(latencyNanos, bytes);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 收到 429：并发数和速率减半，并按 retry_after 暂停全局发送
+     *
+     * @param retryAfterSeconds 服务端要求的等待秒数，没有时为 null
+     */
+    public void onThrottled(Integer retryAfterSeconds) {
+        throttled.increment();
+        long pauseNanos = TimeUnit.SECONDS.toNanos(retryAfterSeconds != null ? Math.max(1, retryAfterSeconds) : 1);
+        rateLimiter.pauseFor(pauseNanos);
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            decrease(0.5, "throttled");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    private void onSuccess(long latencyNanos, long bytes) {
+        if (bytes == 0L) {
+            if (baselineNanos == 0L || latencyNanos < baselineNanos) {
+                baselineNanos = latencyNanos;
+            } else {
+                baselineNanos += (latencyNanos - baselineNanos) / BASELINE_DRIFT;
+            }
+            if (latencyNanos > latencyFloorNanos && latencyNanos > baselineNanos * latencyFactor) {
+                decrease(0.9, "latency");
+                return;
+            }
+        }
+        concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+        double rate = Math.min(maxRate, rateLimit + 1.0 / rateLimit);
+        if ((int) rate != (int) rateLimit || rate == maxRate && rateLimit != maxRate) {
+            // 只在整数位变化时更新速率，减少对限流器锁的争用
+            rateLimiter.setGlobalPerSecond(rate);
+        }
+        rateLimit = rate;
+    }
+
+    private void decrease(double factor, String reason) {
+        long now = clock.getAsLong();
+        if (now - lastDecreaseNanos < cooldownNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        concurrencyLimit = Math.max(minConcurrency, concurrencyLimit * factor);
+        rateLimit = Math.max(minRate, rateLimit * factor);
+        rateLimiter.setGlobalPerSecond(rateLimit);
+        log.info("event=send_limit_decrease reason={} concurrency_limit={} rate_limit={}",
+                reason, (int) concurrencyLimit, String.format("%.1f", rateLimit));
+    }
+
+    private boolean higherPriorityWaiting(SendPriority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,7 +1,16 @@
 package com.tutorial.telegrambot;
 
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.CopyMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -9,15 +18,24 @@ import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
 import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
 import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.MessageId;
 import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
 import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * @Description
@@ -27,6 +45,8 @@ import java.util.List;
 @Component
 public class Bot extends TelegramLongPollingBot {
 
+    private static final Logger log = LoggerFactory.getLogger(Bot.class);
+
     @Value("${bot.username}")
     private String botUsername;
 
@@ -36,6 +56,82 @@ public class Bot extends TelegramLongPollingBot {
     @Value("${bot.default.chat.id}")
     private String defaultChatId;
 
+    @Autowired
+    private SendRateLimiter rateLimiter;
+
+    @Autowired
+    private AdaptiveSendLimit sendLimit;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ShutdownCoordinator shutdownCoordinator;
+
+    @Autowired
+    private RemoteMediaCache remoteMedia;
+
+    @Autowired
+    private ChatDirectory chatDirectory;
+
+    @Autowired
+    private DeliveryJournal journal;
+
+    @Value("${bot.send.max-retries:3}")
+    private int maxRetries;
+
+    /**
+     * @param baseUrl        Bot API 地址前缀（token之前的部分），可指向自建的 Bot API 服务或测试用的模拟服务
+     * @param maxConcurrency 最大发送并发数，HTTP 客户端的连接数按它设置
+     */
+    public Bot(@Value("${bot.api.base-url:https://api.telegram.org/bot}") String baseUrl,
+               @Value("${bot.send.concurrency.max:16}") int maxConcurrency) {
+        super(botOptions(baseUrl));
+        resizeConnectionPool(maxConcurrency);
+    }
+
+    private static DefaultBotOptions botOptions(String baseUrl) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(baseUrl);
+        return options;
+    }
+
+    /**
+     * telegrambots 自建的 HTTP 客户端没有设置每个路由的连接数，沿用 Apache HttpClient 的默认值 2，
+     * 而所有请求都发往同一个 Bot API 地址，超过 2 个的并发发送都在连接池里排队，bot.send.concurrency.max 形同虚设。
+     * 库没有提供替换客户端的入口，这里通过反射换成按最大并发数（另留 2 个给下载文件等请求）设置连接数的客户端，
+     * 其余设置与库的 TelegramHttpClientBuilder 相同；失败时保留原客户端
+     */
+    private void resizeConnectionPool(int maxConcurrency) {
+        int perRoute = Math.max(maxConcurrency, 1) + 2;
+        CloseableHttpClient client = HttpClientBuilder.create()
+                .setSSLHostnameVerifier(new NoopHostnameVerifier())
+                .setConnectionTimeToLive(70, TimeUnit.SECONDS)
+                .setMaxConnTotal(Math.max(100, perRoute))
+                .setMaxConnPerRoute(perRoute)
+                .build();
+        CloseableHttpClient previous;
+        try {
+            Field field = DefaultAbsSender.class.getDeclaredField("httpClient");
+            field.setAccessible(true);
+            previous = (CloseableHttpClient) field.get(this);
+            field.set(this, client);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("event=http_pool_resize_failed max_connections_per_route={} error=\"{}\"", perRoute, e.getMessage());
+            closeQuietly(client);
+            return;
+        }
+        closeQuietly(previous);
+    }
+
+    private static void closeQuietly(CloseableHttpClient client) {
+        try {
+            client.close();
+        } catch (IOException ignored) {
+            // 未发出过请求的客户端，关闭失败无影响
+        }
+    }
+
     @Override
     public String getBotUsername() {
         return botUsername;
@@ -49,6 +145,12 @@ public class Bot extends TelegramLongPollingBot {
 
     @Override
     public void onUpdateReceived(Update update) {
+        DeliveryLog.inbound(update);
+        // 频道消息交给转发模块处理
+        if (update != null && update.hasChannelPost()) {
+            eventPublisher.publishEvent(new ChannelPostEvent(this, update.getChannelPost()));
+            return;
+        }
         // 安全检查更新对象是否包含消息
         if (update != null && update.hasMessage()) {
             var msg = update.getMessage();
@@ -57,20 +159,21 @@ public class Bot extends TelegramLongPollingBot {
                 var user = msg.getFrom();
                 var id = user.getId();
 
-                sendText(Long.valueOf(defaultChatId),"外语学院,新院长-樊院长,欢迎您的加入!");
-
-                System.out.println(user.getFirstName() + " wrote " + msg.getText());
+                // 对用户的回复走最高优先级，不排在批量推送之后
+                try (SendPriority.Scope ignored = SendPriority.INTERACTIVE.enter()) {
+                    sendText(Long.valueOf(defaultChatId),"外语学院,新院长-樊院长,欢迎您的加入!");
+                }
             }
         }
     }
 
 
-    public void sendText(Long who, String what){
+    public Message sendText(Long who, String what){
         SendMessage sm = SendMessage.builder()
                 .chatId(who.toString()) //Who are we sending a message to
                 .text(what).build();    //Message content
         try {
-            execute(sm);                        //Actually sending the message
+            return call("sendMessage", sm.getChatId(), sm::setChatId, 0L, RequestTiming.Phase.API, () -> execute(sm)); //Actually sending the message
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);      //Any error will be printed here
         }
@@ -83,7 +186,7 @@ public class Bot extends TelegramLongPollingBot {
      * @param photoPath 图片路径
      * @param caption 图片说明文字
      */
-    public void sendPhotoWithCaption(Long chatId, String photoPath, String caption) {
+    public Message sendPhotoWithCaption(Long chatId, String photoPath, String caption) {
         SendPhoto sendPhoto = new SendPhoto();
         sendPhoto.setChatId(chatId.toString());
         
@@ -99,7 +202,7 @@ public class Bot extends TelegramLongPollingBot {
         sendPhoto.setCaption(caption);
         
         try {
-            execute(sendPhoto);
+            return call("sendPhoto", sendPhoto.getChatId(), sendPhoto::setChatId, sizeOf(photoPath), RequestTiming.Phase.UPLOAD, () -> execute(sendPhoto));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
         }
@@ -112,7 +215,10 @@ public class Bot extends TelegramLongPollingBot {
      * @param imageUrl 图片URL
      * @param caption 图片说明文字
      */
-    public void sendPhotoWithCaptionByUrl(Long chatId, String imageUrl, String caption) {
+    public Message sendPhotoWithCaptionByUrl(Long chatId, String imageUrl, String caption) {
+        if (remoteMedia.handles(imageUrl)) {
+            return sendRemote(imageUrl, RemoteMediaCache.Kind.PHOTO, photo -> sendPhoto(chatId, photo, caption));
+        }
         SendPhoto sendPhoto = new SendPhoto();
         sendPhoto.setChatId(chatId.toString());
         // 根据Telegram Bot API要求，即使是URL也需要使用InputFile包装
@@ -120,7 +226,7 @@ public class Bot extends TelegramLongPollingBot {
         sendPhoto.setCaption(caption);
         
         try {
-            execute(sendPhoto);
+            return call("sendPhoto", sendPhoto.getChatId(), sendPhoto::setChatId, 0L, RequestTiming.Phase.UPLOAD, () -> execute(sendPhoto));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
         }
@@ -134,7 +240,7 @@ public class Bot extends TelegramLongPollingBot {
      * @param caption 图片说明文字
      * @param parseMode 解析模式，如 "HTML" 或 "Markdown"
      */
-    public void sendPhotoWithCaptionAndFormat(Long chatId, String photoPath, String caption, String parseMode) {
+    public Message sendPhotoWithCaptionAndFormat(Long chatId, String photoPath, String caption, String parseMode) {
         SendPhoto sendPhoto = new SendPhoto();
         sendPhoto.setChatId(chatId.toString());
         
@@ -153,7 +259,7 @@ public class Bot extends TelegramLongPollingBot {
         }
         
         try {
-            execute(sendPhoto);
+            return call("sendPhoto", sendPhoto.getChatId(), sendPhoto::setChatId, sizeOf(photoPath), RequestTiming.Phase.UPLOAD, () -> execute(sendPhoto));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
         }
@@ -166,24 +272,18 @@ public class Bot extends TelegramLongPollingBot {
      * @param photoBytes 图片字节数组
      * @param caption 图片说明文字
      */
-    public void sendPhotoWithCaptionFromBytes(Long chatId, byte[] photoBytes, String caption) {
+    public Message sendPhotoWithCaptionFromBytes(Long chatId, byte[] photoBytes, String caption) {
         SendPhoto sendPhoto = new SendPhoto();
         sendPhoto.setChatId(chatId.toString());
         
         // 创建临时文件来发送图片
         try {
-            File tempFile = File.createTempFile("temp_photo_", ".jpg");
-            tempFile.deleteOnExit();
-            
-            // 写入字节数组到临时文件
-            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                fos.write(photoBytes);
-            }
+            File tempFile = spoolToTempFile(photoBytes, "temp_photo_", ".jpg");
             
             sendPhoto.setPhoto(new InputFile(tempFile, tempFile.getName()));
             sendPhoto.setCaption(caption);
             
-            execute(sendPhoto);
+            return call("sendPhoto", sendPhoto.getChatId(), sendPhoto::setChatId, photoBytes.length, RequestTiming.Phase.UPLOAD, () -> execute(sendPhoto));
         } catch (TelegramApiException | java.io.IOException e) {
             throw new RuntimeException(e);
         }
@@ -196,7 +296,31 @@ public class Bot extends TelegramLongPollingBot {
      * @param photoPaths 图片路径列表
      * @param captions 图片说明文字列表
      */
-    public void sendMediaGroup(Long chatId, List<String> photoPaths, List<String> captions) {
+    public List<Message> sendMediaGroup(Long chatId, List<String> photoPaths, List<String> captions) {
+        boolean remote = photoPaths.stream().anyMatch(remoteMedia::handles);
+        if (remote && remoteMedia.getMode() == RemoteMediaCache.Mode.PROXY) {
+            try {
+                return sendRemoteMediaGroup(chatId, photoPaths, captions);
+            } catch (IOException e) {
+                // 本地下载失败时仍交给 Telegram 获取
+            }
+        }
+        try {
+            return sendMediaGroupByPaths(chatId, photoPaths, captions);
+        } catch (RuntimeException e) {
+            // fallback 模式：Telegram 无法获取外部图片时改为下载后上传
+            if (!remote || !isBadRequest(e) || remoteMedia.getMode() != RemoteMediaCache.Mode.FALLBACK) {
+                throw e;
+            }
+            try {
+                return sendRemoteMediaGroup(chatId, photoPaths, captions);
+            } catch (IOException io) {
+                throw new RuntimeException(io);
+            }
+        }
+    }
+
+    private List<Message> sendMediaGroupByPaths(Long chatId, List<String> photoPaths, List<String> captions) {
         SendMediaGroup sendMediaGroup = new SendMediaGroup();
         sendMediaGroup.setChatId(chatId.toString());
         
@@ -230,7 +354,7 @@ public class Bot extends TelegramLongPollingBot {
         sendMediaGroup.setMedias(mediaList);
         
         try {
-            execute(sendMediaGroup);
+            return call("sendMediaGroup", sendMediaGroup.getChatId(), sendMediaGroup::setChatId, mediaList.size(), photoPaths.stream().mapToLong(Bot::sizeOf).sum(), RequestTiming.Phase.UPLOAD, () -> execute(sendMediaGroup));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
         }
@@ -243,7 +367,7 @@ public class Bot extends TelegramLongPollingBot {
      * @param photoBytesList 图片字节数组列表
      * @param captions 图片说明文字列表
      */
-    public void sendMediaGroupFromBytes(Long chatId, List<byte[]> photoBytesList, List<String> captions) {
+    public List<Message> sendMediaGroupFromBytes(Long chatId, List<byte[]> photoBytesList, List<String> captions) {
         SendMediaGroup sendMediaGroup = new SendMediaGroup();
         sendMediaGroup.setChatId(chatId.toString());
         
@@ -252,13 +376,7 @@ public class Bot extends TelegramLongPollingBot {
         for (int i = 0; i < photoBytesList.size(); i++) {
             try {
                 // 创建临时文件来发送图片
-                File tempFile = File.createTempFile("temp_photo_", ".jpg");
-                tempFile.deleteOnExit();
-                
-                // 写入字节数组到临时文件
-                try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                    fos.write(photoBytesList.get(i));
-                }
+                File tempFile = spoolToTempFile(photoBytesList.get(i), "temp_photo_", ".jpg");
                 
                 // 使用构建器模式创建InputMediaPhoto，对于临时文件使用路径字符串
                 InputMediaPhoto inputMediaPhoto = InputMediaPhoto.builder()
@@ -279,26 +397,149 @@ public class Bot extends TelegramLongPollingBot {
         sendMediaGroup.setMedias(mediaList);
         
         try {
-            execute(sendMediaGroup);
+            return call("sendMediaGroup", sendMediaGroup.getChatId(), sendMediaGroup::setChatId, mediaList.size(), photoBytesList.stream().mapToLong(bytes -> bytes.length).sum(), RequestTiming.Phase.UPLOAD, () -> execute(sendMediaGroup));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
         }
     }
 
 
-    public void copyMessage(Long who, Integer msgId){
+    /**
+     * 以本地文件发送图片媒体组，文件作为 multipart 附件上传
+     *
+     * @param chatId  接收者聊天ID
+     * @param photos  2到10个图片文件
+     * @param caption 媒体组的说明文字，设置在第一个元素上，可为空
+     * @return 发送的消息
+     */
+    public List<Message> sendMediaGroupFromFiles(Long chatId, List<File> photos, String caption) {
+        List<InputMedia> mediaList = new ArrayList<>(photos.size());
+        for (File photo : photos) {
+            InputMediaPhoto inputMediaPhoto = new InputMediaPhoto();
+            inputMediaPhoto.setMedia(photo, photo.getName());
+            mediaList.add(inputMediaPhoto);
+        }
+        if (caption != null && !caption.isEmpty()) {
+            mediaList.get(0).setCaption(caption);
+        }
+        SendMediaGroup sendMediaGroup = new SendMediaGroup();
+        sendMediaGroup.setChatId(chatId.toString());
+        sendMediaGroup.setMedias(mediaList);
+        try {
+            return call("sendMediaGroup", sendMediaGroup.getChatId(), sendMediaGroup::setChatId, mediaList.size(), photos.stream().mapToLong(File::length).sum(), RequestTiming.Phase.UPLOAD, () -> execute(sendMediaGroup));
+        } catch (TelegramApiException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public MessageId copyMessage(Long who, Integer msgId){
+        return copyMessage(who, who, msgId);
+    }
+
+    /**
+     * 复制消息到另一个聊天（服务端复制，不下载也不重新上传媒体）
+     *
+     * @param fromChatId 来源聊天ID
+     * @param toChatId   目标聊天ID
+     * @param msgId      来源消息ID
+     * @return 新消息的ID
+     */
+    public MessageId copyMessage(Long fromChatId, Long toChatId, Integer msgId) {
         CopyMessage cm = CopyMessage.builder()
-                .fromChatId(who.toString())  //We copy from the user
-                .chatId(who.toString())      //And send it back to him
-                .messageId(msgId)            //Specifying what message
+                .fromChatId(fromChatId.toString())  //We copy from the source chat
+                .chatId(toChatId.toString())        //And send it to the target chat
+                .messageId(msgId)                   //Specifying what message
                 .build();
         try {
-            execute(cm);
+            return call("copyMessage", cm.getChatId(), cm::setChatId, 0L, RequestTiming.Phase.API, () -> execute(cm));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
         }
     }
-    
+
+    /**
+     * 发送由已有file_id组成的媒体组（不重新上传）
+     *
+     * @param chatId 接收者聊天ID
+     * @param medias 媒体列表，media 字段为 file_id
+     * @return 发送出的消息
+     */
+    public List<Message> sendMediaGroupByFileIds(Long chatId, List<InputMedia> medias) {
+        return sendMediaGroup(chatId, medias);
+    }
+
+    /**
+     * 发送媒体组，元素可以是 file_id、URL 或新上传的文件
+     *
+     * @param chatId 接收者聊天ID
+     * @param medias 2到10个媒体
+     * @return 发送出的消息，与 medias 顺序一致
+     */
+    public List<Message> sendMediaGroup(Long chatId, List<InputMedia> medias) {
+        SendMediaGroup sendMediaGroup = new SendMediaGroup();
+        sendMediaGroup.setChatId(chatId.toString());
+        sendMediaGroup.setMedias(medias);
+
+        long bytes = 0L;
+        for (InputMedia media : medias) {
+            if (media.isNewMedia() && media.getNewMediaFile() != null) {
+                bytes += media.getNewMediaFile().length();
+            }
+        }
+        RequestTiming.Phase phase = bytes > 0 ? RequestTiming.Phase.UPLOAD : RequestTiming.Phase.API;
+        try {
+            return call("sendMediaGroup", sendMediaGroup.getChatId(), sendMediaGroup::setChatId, medias.size(), bytes, phase, () -> execute(sendMediaGroup));
+        } catch (TelegramApiException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 发送图片
+     *
+     * @param photo   file_id、URL 或本地文件
+     * @param caption 说明文字，可为空
+     * @return 发送出的消息，可从中取得 file_id 供后续发送复用
+     */
+    public Message sendPhoto(Long chatId, InputFile photo, String caption) {
+        SendPhoto sendPhoto = new SendPhoto();
+        sendPhoto.setChatId(chatId.toString());
+        sendPhoto.setPhoto(photo);
+        sendPhoto.setCaption(caption);
+        long bytes = photo.isNew() && photo.getNewMediaFile() != null ? photo.getNewMediaFile().length() : 0L;
+        try {
+            return call("sendPhoto", sendPhoto.getChatId(), sendPhoto::setChatId, bytes, bytes > 0 ? RequestTiming.Phase.UPLOAD : RequestTiming.Phase.API, () -> execute(sendPhoto));
+        } catch (TelegramApiException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 发送视频
+     *
+     * @param video     file_id、URL 或本地文件
+     * @param caption   说明文字，可为空
+     * @param videoInfo 上传本地文件时附带的视频元数据，可为空
+     * @return 发送出的消息，可从中取得 file_id 供后续发送复用
+     */
+    public Message sendVideo(Long chatId, InputFile video, String caption, VideoInfo videoInfo) {
+        SendVideo sendVideo = new SendVideo();
+        sendVideo.setChatId(chatId.toString());
+        sendVideo.setVideo(video);
+        sendVideo.setCaption(caption);
+        long bytes = video.isNew() && video.getNewMediaFile() != null ? video.getNewMediaFile().length() : 0L;
+        if (bytes > 0 && videoInfo != null) {
+            applyVideoInfo(sendVideo, videoInfo);
+        }
+        try {
+            return call("sendVideo", sendVideo.getChatId(), sendVideo::setChatId, bytes, bytes > 0 ? RequestTiming.Phase.UPLOAD : RequestTiming.Phase.API, () -> execute(sendVideo));
+        } catch (TelegramApiException e) {
+            throw new RuntimeException(e);
+        } finally {
+            deleteThumb(sendVideo);
+        }
+    }
+
     /**
      * 发送本地视频和文字
      *
@@ -306,7 +547,19 @@ public class Bot extends TelegramLongPollingBot {
      * @param videoPath 视频路径
      * @param caption 视频说明文字
      */
-    public void sendVideoWithCaption(Long chatId, String videoPath, String caption) {
+    public Message sendVideoWithCaption(Long chatId, String videoPath, String caption) {
+        return sendVideoWithCaption(chatId, videoPath, caption, null);
+    }
+
+    /**
+     * 发送本地视频和文字，附带预先解析的视频元数据
+     *
+     * @param chatId  接收者聊天ID
+     * @param videoPath 视频路径
+     * @param caption 视频说明文字
+     * @param videoInfo 视频元数据，为null时对本地文件同步解析
+     */
+    public Message sendVideoWithCaption(Long chatId, String videoPath, String caption, VideoInfo videoInfo) {
         SendVideo sendVideo = new SendVideo();
         sendVideo.setChatId(chatId.toString());
         
@@ -316,15 +569,19 @@ public class Bot extends TelegramLongPollingBot {
             sendVideo.setVideo(new InputFile(videoPath));
         } else {
             // 本地文件路径，使用InputFile包装
-            sendVideo.setVideo(new InputFile(new File(videoPath), new File(videoPath).getName()));
+            File videoFile = new File(videoPath);
+            sendVideo.setVideo(new InputFile(videoFile, videoFile.getName()));
+            applyVideoInfo(sendVideo, videoInfo != null ? videoInfo : MediaProbe.probe(videoFile));
         }
         
         sendVideo.setCaption(caption);
         
         try {
-            execute(sendVideo);
+            return call("sendVideo", sendVideo.getChatId(), sendVideo::setChatId, sizeOf(videoPath), RequestTiming.Phase.UPLOAD, () -> execute(sendVideo));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
+        } finally {
+            deleteThumb(sendVideo);
         }
     }
     
@@ -335,7 +592,11 @@ public class Bot extends TelegramLongPollingBot {
      * @param videoUrl 视频URL
      * @param caption 视频说明文字
      */
-    public void sendVideoWithCaptionByUrl(Long chatId, String videoUrl, String caption) {
+    public Message sendVideoWithCaptionByUrl(Long chatId, String videoUrl, String caption) {
+        if (remoteMedia.handles(videoUrl)) {
+            return sendRemote(videoUrl, RemoteMediaCache.Kind.VIDEO, video -> sendVideo(chatId, video, caption,
+                    video.isNew() && video.getNewMediaFile() != null ? MediaProbe.probe(video.getNewMediaFile()) : null));
+        }
         SendVideo sendVideo = new SendVideo();
         sendVideo.setChatId(chatId.toString());
         // 根据Telegram Bot API要求，即使是URL也需要使用InputFile包装
@@ -343,7 +604,7 @@ public class Bot extends TelegramLongPollingBot {
         sendVideo.setCaption(caption);
         
         try {
-            execute(sendVideo);
+            return call("sendVideo", sendVideo.getChatId(), sendVideo::setChatId, 0L, RequestTiming.Phase.UPLOAD, () -> execute(sendVideo));
         } catch (TelegramApiException e) {
             throw new RuntimeException(e);
         }
@@ -356,26 +617,300 @@ public class Bot extends TelegramLongPollingBot {
      * @param videoBytes 视频字节数组
      * @param caption 视频说明文字
      */
-    public void sendVideoWithCaptionFromBytes(Long chatId, byte[] videoBytes, String caption) {
+    public Message sendVideoWithCaptionFromBytes(Long chatId, byte[] videoBytes, String caption) {
         SendVideo sendVideo = new SendVideo();
         sendVideo.setChatId(chatId.toString());
         
         // 创建临时文件来发送视频
         try {
-            File tempFile = File.createTempFile("temp_video_", ".mp4");
-            tempFile.deleteOnExit();
-            
-            // 写入字节数组到临时文件
-            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                fos.write(videoBytes);
-            }
+            File tempFile = spoolToTempFile(videoBytes, "temp_video_", ".mp4");
             
             sendVideo.setVideo(new InputFile(tempFile, tempFile.getName()));
+            applyVideoInfo(sendVideo, MediaProbe.probe(tempFile));
             sendVideo.setCaption(caption);
             
-            execute(sendVideo);
+            return call("sendVideo", sendVideo.getChatId(), sendVideo::setChatId, videoBytes.length, RequestTiming.Phase.UPLOAD, () -> execute(sendVideo));
         } catch (TelegramApiException | java.io.IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            deleteThumb(sendVideo);
+        }
+    }
+
+    /**
+     * 将字节数组写入临时文件（程序退出时自动删除）
+     */
+    private static File spoolToTempFile(byte[] bytes, String prefix, String suffix) throws java.io.IOException {
+        long start = RequestTiming.start();
+        try {
+            File tempFile = File.createTempFile(prefix, suffix);
+            tempFile.deleteOnExit();
+            
+            // 写入字节数组到临时文件
+            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+                fos.write(bytes);
+            }
+            return tempFile;
+        } finally {
+            RequestTiming.stop(RequestTiming.Phase.SPOOL, start);
+        }
+    }
+
+    /**
+     * 填充视频的宽高、时长、流式播放标记和缩略图，省去Telegram端的探测和转码
+     */
+    private static void applyVideoInfo(SendVideo sendVideo, VideoInfo videoInfo) {
+        if (videoInfo.getWidth() > 0 && videoInfo.getHeight() > 0) {
+            sendVideo.setWidth(videoInfo.getWidth());
+            sendVideo.setHeight(videoInfo.getHeight());
+        }
+        if (videoInfo.getDurationSeconds() > 0) {
+            sendVideo.setDuration(videoInfo.getDurationSeconds());
+        }
+        if (videoInfo.isSupportsStreaming()) {
+            sendVideo.setSupportsStreaming(true);
+        }
+        if (videoInfo.getThumbnailJpeg() != null) {
+            try {
+                File thumbFile = spoolToTempFile(videoInfo.getThumbnailJpeg(), "temp_thumb_", ".jpg");
+                sendVideo.setThumb(new InputFile(thumbFile, thumbFile.getName()));
+            } catch (java.io.IOException e) {
+                // 缩略图是可选的，写入失败时不影响视频发送
+            }
+        }
+    }
+
+    /**
+     * 删除 applyVideoInfo 写出的缩略图临时文件，发送完成（包括重试）后调用
+     */
+    private static void deleteThumb(SendVideo sendVideo) {
+        InputFile thumb = sendVideo.getThumb();
+        if (thumb != null && thumb.isNew() && thumb.getNewMediaFile() != null) {
+            thumb.getNewMediaFile().delete();
+        }
+    }
+
+    /**
+     * 经 {@link RemoteMediaCache} 发送外部图片或视频
+     *
+     * 依次尝试缓存的 file_id、（fallback 模式下）让 Telegram 直接获取 URL、上传本地缓存的文件。
+     * file_id 被拒绝时丢弃后改为上传；proxy 模式下本地下载失败时仍交给 Telegram 获取。
+     */
+    private Message sendRemote(String url, RemoteMediaCache.Kind kind, Function<InputFile, Message> send) {
+        boolean fallback = remoteMedia.getMode() == RemoteMediaCache.Mode.FALLBACK;
+        if (fallback) {
+            String fileId = remoteMedia.cachedFileId(url, kind);
+            try {
+                return send.apply(new InputFile(fileId != null ? fileId : url));
+            } catch (RuntimeException e) {
+                if (!isBadRequest(e)) {
+                    throw e;
+                }
+                if (fileId != null) {
+                    remoteMedia.forget(url, kind);
+                }
+            }
+        }
+        RemoteMediaCache.Lease lease;
+        try {
+            lease = remoteMedia.acquire(url, kind);
+        } catch (IOException e) {
+            if (fallback) {
+                throw new RuntimeException(e);
+            }
+            return send.apply(new InputFile(url));
+        }
+        try (lease) {
+            String fileId = lease.getFileId(kind);
+            if (fileId != null && !fallback) {
+                try {
+                    return send.apply(new InputFile(fileId));
+                } catch (RuntimeException e) {
+                    if (!isBadRequest(e)) {
+                        throw e;
+                    }
+                    remoteMedia.forget(url, kind);
+                }
+            }
+            Message message = send.apply(new InputFile(lease.getFile(), lease.getFile().getName()));
+            remoteMedia.remember(url, kind, message);
+            return message;
+        }
+    }
+
+    /**
+     * 外部图片经本地缓存以 file_id 或附件发送的媒体组，file_id 被拒绝时整组改为上传
+     */
+    private List<Message> sendRemoteMediaGroup(Long chatId, List<String> photoPaths, List<String> captions) throws IOException {
+        List<RemoteMediaCache.Lease> leases = new ArrayList<>();
+        try {
+            for (String path : photoPaths) {
+                leases.add(remoteMedia.handles(path) ? remoteMedia.acquire(path, RemoteMediaCache.Kind.PHOTO) : null);
+            }
+            for (boolean useFileIds = true; ; useFileIds = false) {
+                boolean usedFileId = false;
+                List<InputMedia> medias = new ArrayList<>(photoPaths.size());
+                for (int i = 0; i < photoPaths.size(); i++) {
+                    InputMediaPhoto media = new InputMediaPhoto();
+                    RemoteMediaCache.Lease lease = leases.get(i);
+                    String fileId = lease != null && useFileIds ? lease.getFileId(RemoteMediaCache.Kind.PHOTO) : null;
+                    if (lease == null) {
+                        media.setMedia(photoPaths.get(i));
+                    } else if (fileId != null) {
+                        media.setMedia(fileId);
+                        usedFileId = true;
+                    } else {
+                        media.setMedia(lease.getFile(), lease.getFile().getName());
+                    }
+                    medias.add(media);
+                }
+                if (captions != null && !captions.isEmpty()) {
+                    medias.get(0).setCaption(captions.get(0));
+                }
+                try {
+                    List<Message> messages = sendMediaGroup(chatId, medias);
+                    for (int i = 0; i < Math.min(messages.size(), photoPaths.size()); i++) {
+                        if (leases.get(i) != null) {
+                            remoteMedia.remember(photoPaths.get(i), RemoteMediaCache.Kind.PHOTO, messages.get(i));
+                        }
+                    }
+                    return messages;
+                } catch (RuntimeException e) {
+                    if (!usedFileId || !isBadRequest(e)) {
+                        throw e;
+                    }
+                    for (int i = 0; i < photoPaths.size(); i++) {
+                        if (leases.get(i) != null) {
+                            remoteMedia.forget(photoPaths.get(i), RemoteMediaCache.Kind.PHOTO);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (RemoteMediaCache.Lease lease : leases) {
+                if (lease != null) {
+                    lease.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Telegram 返回 400：无法获取 URL 或 file_id 无效
+     */
+    private static boolean isBadRequest(RuntimeException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof TelegramApiRequestException
+                && Integer.valueOf(400).equals(((TelegramApiRequestException) cause).getErrorCode());
+    }
+
+    /**
+     * 本地文件的大小，网络URL返回0
+     */
+    private static long sizeOf(String path) {
+        if (path == null || path.startsWith("http://") || path.startsWith("https://")) {
+            return 0L;
+        }
+        return new File(path).length();
+    }
+
+    /**
+     * 调用Telegram接口，把耗时计入当前请求的对应阶段，并记录结构化发送日志
+     *
+     * 调用前依次经过限流和自适应并发控制；返回 429 时按 retry_after 等待后重试，最多 {@code bot.send.max-retries} 次。
+     * 已知不可用的聊天（见 {@link ChatDirectory}）直接失败，不占用限流额度也不请求 Telegram；
+     * 已升级为超级群组的群组改发到新 ID，发送时才得知升级的，按新 ID 重发一次。
+     *
+     * @param method   接口名，用于日志
+     * @param retarget 修改请求中的聊天ID
+     * @param bytes    上传的字节数，没有上传时为0
+     */
+    private <T> T call(String method, String chatId, Consumer<String> retarget, long bytes, RequestTiming.Phase phase,
+                       TelegramCall<T> call) throws TelegramApiException {
+        return call(method, chatId, retarget, 1, bytes, phase, call);
+    }
+
+    /**
+     * @param messages 这次调用产生的消息条数（媒体组为元素个数），按条数扣除限流额度
+     */
+    private <T> T call(String method, String chatId, Consumer<String> retarget, int messages, long bytes,
+                       RequestTiming.Phase phase, TelegramCall<T> call) throws TelegramApiException {
+        SendPriority priority = SendPriority.current();
+        String current = chatDirectory.currentId(chatId);
+        if (current != null && !current.equals(chatId)) {
+            retarget.accept(current);
+            chatId = current;
         }
+        String rejection = chatDirectory.rejection(chatId);
+        if (rejection != null) {
+            TelegramApiException rejected = new TelegramApiException("Chat " + chatId + " is unavailable: " + rejection);
+            DeliveryLog.failed(method, chatId, 0L, bytes, rejected);
+            throw rejected;
+        }
+        // 排空期间等待已开始的发送（包括在限流器中排队的）完成
+        try (ShutdownCoordinator.Activity ignored = shutdownCoordinator.begin("send")) {
+            boolean migrated = false;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    rateLimiter.acquire(chatId, priority, messages);
+                    sendLimit.acquire(priority);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TelegramApiException("Interrupted while waiting for send rate limit", e);
+                }
+                long start = RequestTiming.start();
+                boolean success = false;
+                try {
+                    T result = call.execute();
+                    success = true;
+                    DeliveryLog.sent(method, chatId, result, System.nanoTime() - start, bytes);
+                    journal.record(method, chatId, result);
+                    return result;
+                } catch (TelegramApiException e) {
+                    DeliveryLog.failed(method, chatId, System.nanoTime() - start, bytes, e);
+                    Integer retryAfter = retryAfterOf(e);
+                    if (retryAfter == null) {
+                        chatDirectory.onSendFailed(chatId, e);
+                        Long migratedTo = ChatDirectory.migratedTo(e);
+                        if (migratedTo == null || migrated) {
+                            throw e;
+                        }
+                        log.info("event=chat_migrated from={} to={}", chatId, migratedTo);
+                        migrated = true;
+                        chatId = String.valueOf(migratedTo);
+                        retarget.accept(chatId);
+                        continue;
+                    }
+                    sendLimit.onThrottled(retryAfter);
+                    if (attempt >= maxRetries) {
+                        throw e;
+                    }
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    sendLimit.release(elapsed, bytes, success);
+                    RequestTiming.stop(phase, start);
+                }
+            }
+        }
+    }
+
+    /**
+     * 429 响应的 retry_after 秒数，其他错误返回 null
+     */
+    private static Integer retryAfterOf(TelegramApiException e) {
+        if (!(e instanceof TelegramApiRequestException)) {
+            return null;
+        }
+        TelegramApiRequestException requestException = (TelegramApiRequestException) e;
+        if (requestException.getErrorCode() == null || requestException.getErrorCode() != 429) {
+            return null;
+        }
+        ResponseParameters parameters = requestException.getParameters();
+        return parameters != null && parameters.getRetryAfter() != null ? parameters.getRetryAfter() : 1;
+    }
+
+    @FunctionalInterface
+    interface TelegramCall<T> {
+        T execute() throws TelegramApiException;
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.tutorial.telegrambot;
 
 import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Message;
 
 import java.util.ArrayList;
 
@@ -13,43 +14,47 @@ public class BotService {
         this.bot = bot;
     }
 
-    public void sendPhotoWithCaption(Long chatId, String photoPath, String caption) {
-        bot.sendPhotoWithCaption(chatId, photoPath, caption);
+    public Message sendPhotoWithCaption(Long chatId, String photoPath, String caption) {
+        return bot.sendPhotoWithCaption(chatId, photoPath, caption);
     }
 
-    public void sendPhotoWithCaptionByUrl(Long chatId, String imageUrl, String caption) {
-        bot.sendPhotoWithCaptionByUrl(chatId, imageUrl, caption);
+    public Message sendPhotoWithCaptionByUrl(Long chatId, String imageUrl, String caption) {
+        return bot.sendPhotoWithCaptionByUrl(chatId, imageUrl, caption);
     }
 
-    public void sendPhotoWithCaptionAndFormat(Long chatId, String photoPath, String caption, String parseMode) {
-        bot.sendPhotoWithCaptionAndFormat(chatId, photoPath, caption, parseMode);
+    public Message sendPhotoWithCaptionAndFormat(Long chatId, String photoPath, String caption, String parseMode) {
+        return bot.sendPhotoWithCaptionAndFormat(chatId, photoPath, caption, parseMode);
     }
 
-    public void sendPhotoWithCaptionFromBytes(Long chatId, byte[] photoBytes, String caption) {
-        bot.sendPhotoWithCaptionFromBytes(chatId, photoBytes, caption);
+    public Message sendPhotoWithCaptionFromBytes(Long chatId, byte[] photoBytes, String caption) {
+        return bot.sendPhotoWithCaptionFromBytes(chatId, photoBytes, caption);
     }
     
-    public void sendText(Long chatId, String text) {
-        bot.sendText(chatId, text);
+    public Message sendText(Long chatId, String text) {
+        return bot.sendText(chatId, text);
     }
     
-    public void sendVideoWithCaption(Long chatId, String videoPath, String caption) {
-        bot.sendVideoWithCaption(chatId, videoPath, caption);
+    public Message sendVideoWithCaption(Long chatId, String videoPath, String caption) {
+        return bot.sendVideoWithCaption(chatId, videoPath, caption);
     }
     
-    public void sendVideoWithCaptionByUrl(Long chatId, String videoUrl, String caption) {
-        bot.sendVideoWithCaptionByUrl(chatId, videoUrl, caption);
+    public Message sendVideoWithCaption(Long chatId, String videoPath, String caption, VideoInfo videoInfo) {
+        return bot.sendVideoWithCaption(chatId, videoPath, caption, videoInfo);
     }
     
-    public void sendVideoWithCaptionFromBytes(Long chatId, byte[] videoBytes, String caption) {
-        bot.sendVideoWithCaptionFromBytes(chatId, videoBytes, caption);
+    public Message sendVideoWithCaptionByUrl(Long chatId, String videoUrl, String caption) {
+        return bot.sendVideoWithCaptionByUrl(chatId, videoUrl, caption);
     }
     
-    public void sendMediaGroup(Long chatId, java.util.List<String> photoPaths, java.util.List<String> captions) {
-        bot.sendMediaGroup(chatId, photoPaths, captions);
+    public Message sendVideoWithCaptionFromBytes(Long chatId, byte[] videoBytes, String caption) {
+        return bot.sendVideoWithCaptionFromBytes(chatId, videoBytes, caption);
     }
     
-    public void sendMediaGroupFromBytes(Long chatId, java.util.List<byte[]> photoBytesList, java.util.List<String> captions) {
-        bot.sendMediaGroupFromBytes(chatId, photoBytesList, captions);
+    public java.util.List<Message> sendMediaGroup(Long chatId, java.util.List<String> photoPaths, java.util.List<String> captions) {
+        return bot.sendMediaGroup(chatId, photoPaths, captions);
+    }
+    
+    public java.util.List<Message> sendMediaGroupFromBytes(Long chatId, java.util.List<byte[]> photoBytesList, java.util.List<String> captions) {
+        return bot.sendMediaGroupFromBytes(chatId, photoBytesList, captions);
     }
 }
\ No newline at end of file
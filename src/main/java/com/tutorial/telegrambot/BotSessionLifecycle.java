@@ -0,0 +1,140 @@
+package com.tutorial.telegrambot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在后台注册 Bot 并启动长轮询，不阻塞应用启动
+ *
+ * 在 Web 服务器启动之后开始连接，HTTP 接口不必等待 Telegram；连接失败时按间隔重试。
+ * 连接状态由 {@link TelegramBotHealthIndicator} 单独报告，与 HTTP 的就绪状态分开。
+ * 停止服务时长轮询由 {@link ShutdownCoordinator} 先行停止。
+ */
+@Component
+public class BotSessionLifecycle implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(BotSessionLifecycle.class);
+
+    public enum State {
+        DISABLED, STOPPED, CONNECTING, CONNECTED, FAILED
+    }
+
+    private final Bot bot;
+    private final ShutdownCoordinator shutdownCoordinator;
+    private final boolean enabled;
+    private final long retryMillis;
+
+    private volatile boolean running;
+    private volatile State state = State.STOPPED;
+    private volatile String lastError;
+    private volatile long connectedAt;
+    private volatile BotSession session;
+    private volatile Thread connector;
+
+    public BotSessionLifecycle(Bot bot,
+                               ShutdownCoordinator shutdownCoordinator,
+                               @Value("${bot.session.enabled:true}") boolean enabled,
+                               @Value("${bot.session.retry-ms:5000}") long retryMillis) {
+        this.bot = bot;
+        this.shutdownCoordinator = shutdownCoordinator;
+        this.enabled = enabled;
+        this.retryMillis = Math.max(100, retryMillis);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            state = State.DISABLED;
+            return;
+        }
+        state = State.CONNECTING;
+        Thread thread = new Thread(this::connect, "bot-session-connect");
+        thread.setDaemon(true);
+        connector = thread;
+        thread.start();
+    }
+
+    private void connect() {
+        long start = System.nanoTime();
+        while (running) {
+            try {
+                BotSession registered = new TelegramBotsApi(DefaultBotSession.class).registerBot(bot);
+                session = registered;
+                shutdownCoordinator.setSession(registered);
+                if (!running) {
+                    // 注册期间已开始停止
+                    registered.stop();
+                    return;
+                }
+                state = State.CONNECTED;
+                connectedAt = System.currentTimeMillis();
+                lastError = null;
+                log.info("event=bot_session_connected elapsed_ms={}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return;
+            } catch (TelegramApiException | RuntimeException e) {
+                state = State.FAILED;
+                lastError = e.getMessage();
+                log.warn("event=bot_session_connect_failed retry_ms={} error=\"{}\"", retryMillis, e.getMessage());
+            }
+            try {
+                Thread.sleep(retryMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (running) {
+                state = State.CONNECTING;
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = connector;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        BotSession current = session;
+        if (current != null && current.isRunning()) {
+            current.stop();
+        }
+        if (state != State.DISABLED) {
+            state = State.STOPPED;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 在 Web 服务器（DEFAULT_PHASE - 2048）和优雅关闭（DEFAULT_PHASE - 1024）之后启动
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 512;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+}
@@ -0,0 +1,21 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.context.ApplicationEvent;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+/**
+ * 收到频道消息（channel_post）
+ */
+public class ChannelPostEvent extends ApplicationEvent {
+
+    private final Message post;
+
+    public ChannelPostEvent(Object source, Message post) {
+        super(source);
+        this.post = post;
+    }
+
+    public Message getPost() {
+        return post;
+    }
+}
@@ -0,0 +1,361 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaVideo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 频道转发：把源频道的新消息镜像到配置的目标聊天
+ *
+ * 单条消息使用 copyMessage，服务端复制，不下载也不重新上传媒体；
+ * 相册（相同 media_group_id）先在短时间窗口内收齐，再以 file_id 组成媒体组发送，保持相册形式。
+ * 每个目标聊天按顺序发送，不同目标之间并行，所有发送都以批量优先级经过 {@link SendRateLimiter}。
+ * 停止服务时立即发出收集中的相册，排队的转发在排空时间内完成；超时后仍未完成的在日志中逐条记录。
+ */
+@Component
+public class ChannelRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ChannelRelay.class);
+
+    private final Bot bot;
+    private final MeterRegistry meterRegistry;
+    private final Executor relayExecutor;
+    private final ScheduledExecutorService albumScheduler;
+    private final ShutdownCoordinator shutdownCoordinator;
+
+    private final boolean enabled;
+    private final long sourceChatId;
+    private final List<Long> targetChatIds;
+    private final long albumWindowMillis;
+
+    /** 正在收集中的相册，key 为 media_group_id */
+    private final Map<String, PendingAlbum> pendingAlbums = new ConcurrentHashMap<>();
+
+    /** 已排队、尚未完成的转发 */
+    private final Set<RelayJob> unfinished = ConcurrentHashMap.newKeySet();
+
+    /** 每个目标聊天一个串行队列，保证目标内的消息顺序 */
+    private final Map<Long, SerialExecutor> targetLanes = new LinkedHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public ChannelRelay(Bot bot,
+                        MeterRegistry meterRegistry,
+                        @Qualifier("relayExecutor") ExecutorService relayExecutor,
+                        @Qualifier("relayScheduler") ScheduledExecutorService albumScheduler,
+                        ShutdownCoordinator shutdownCoordinator,
+                        @Value("${bot.relay.enabled:false}") boolean enabled,
+                        @Value("${bot.relay.source-chat-id:0}") long sourceChatId,
+                        @Value("${bot.relay.target-chat-ids:}") String targetChatIds,
+                        @Value("${bot.relay.album-window-ms:1500}") long albumWindowMillis) {
+        this.bot = bot;
+        this.meterRegistry = meterRegistry;
+        this.relayExecutor = relayExecutor;
+        this.albumScheduler = albumScheduler;
+        this.shutdownCoordinator = shutdownCoordinator;
+        this.enabled = enabled;
+        this.sourceChatId = sourceChatId;
+        this.targetChatIds = parseChatIds(targetChatIds);
+        this.albumWindowMillis = albumWindowMillis;
+        for (Long target : this.targetChatIds) {
+            targetLanes.put(target, new SerialExecutor(relayExecutor, task -> rejected((RelayJob) task)));
+        }
+        meterRegistry.gauge("telegram.relay.queued", queued);
+        shutdownCoordinator.onDrain(this::flushAlbums);
+    }
+
+    @EventListener
+    public void onChannelPost(ChannelPostEvent event) {
+        Message post = event.getPost();
+        if (!enabled || targetChatIds.isEmpty() || post == null || post.getChatId() == null
+                || post.getChatId() != sourceChatId) {
+            return;
+        }
+
+        String mediaGroupId = post.getMediaGroupId();
+        if (mediaGroupId == null) {
+            fanOut(List.of(post));
+            return;
+        }
+
+        // 相册的各条消息分别到达，第一条到达时开始计时，窗口结束后整体转发；停止服务时等待窗口结束
+        boolean[] first = {false};
+        pendingAlbums.compute(mediaGroupId, (id, album) -> {
+            if (album == null) {
+                album = new PendingAlbum(shutdownCoordinator.begin("relay"));
+                first[0] = true;
+            }
+            album.items.add(post);
+            return album;
+        });
+        if (first[0]) {
+            albumScheduler.schedule(() -> flushAlbum(mediaGroupId), albumWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushAlbum(String mediaGroupId) {
+        PendingAlbum album = pendingAlbums.remove(mediaGroupId);
+        if (album == null) {
+            return;
+        }
+        try {
+            album.items.sort(Comparator.comparing(Message::getMessageId));
+            fanOut(album.items);
+        } finally {
+            album.activity.close();
+        }
+    }
+
+    /**
+     * 停止服务时不再等待相册的其余消息，立即转发已收到的部分
+     */
+    private void flushAlbums() {
+        for (String mediaGroupId : new ArrayList<>(pendingAlbums.keySet())) {
+            flushAlbum(mediaGroupId);
+        }
+    }
+
+    private void fanOut(List<Message> posts) {
+        for (Map.Entry<Long, SerialExecutor> lane : targetLanes.entrySet()) {
+            RelayJob job = new RelayJob(lane.getKey(), posts, shutdownCoordinator.begin("relay"));
+            unfinished.add(job);
+            queued.incrementAndGet();
+            lane.getValue().execute(job);
+        }
+    }
+
+    /**
+     * 转发线程池已关闭，排队的转发不会再发送
+     */
+    private void rejected(RelayJob job) {
+        log.warn("event=relay_not_sent source_chat_id={} target_chat_id={} message_ids={} reason=rejected",
+                sourceChatId, job.target, messageIds(job.posts));
+        finish(job);
+    }
+
+    private void finish(RelayJob job) {
+        if (unfinished.remove(job)) {
+            queued.decrementAndGet();
+            job.activity.close();
+        }
+    }
+
+    /**
+     * 在转发线程池关闭之前执行（本对象依赖线程池，先于它销毁）：排空超时后仍未完成的转发不会再发送，逐条记录
+     */
+    @PreDestroy
+    public void logUnrelayed() {
+        for (PendingAlbum album : pendingAlbums.values()) {
+            log.warn("event=relay_not_sent source_chat_id={} target_chat_id=all message_ids={} reason=album_pending",
+                    sourceChatId, messageIds(album.items));
+        }
+        for (RelayJob job : unfinished) {
+            log.warn("event=relay_not_sent source_chat_id={} target_chat_id={} message_ids={} reason=shutdown",
+                    sourceChatId, job.target, messageIds(job.posts));
+        }
+    }
+
+    private static List<Integer> messageIds(List<Message> posts) {
+        List<Integer> ids = new ArrayList<>(posts.size());
+        for (Message post : posts) {
+            ids.add(post.getMessageId());
+        }
+        return ids;
+    }
+
+    private void relay(Long target, List<Message> posts) {
+        try (SendPriority.Scope ignored = SendPriority.BULK.enter()) {
+            List<InputMedia> album = posts.size() > 1 ? toAlbum(posts) : null;
+            if (album != null) {
+                bot.sendMediaGroupByFileIds(target, album);
+            } else {
+                for (Message post : posts) {
+                    bot.copyMessage(sourceChatId, target, post.getMessageId());
+                }
+            }
+            recordLag(target, posts.get(0), "success");
+        } catch (RuntimeException e) {
+            recordLag(target, posts.get(0), "failure");
+            log.warn("event=relay source_chat_id={} target_chat_id={} message_id={} count={} error=\"{}\"",
+                    sourceChatId, target, posts.get(0).getMessageId(), posts.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 把相册消息转换为 file_id 媒体组；含有照片、视频以外的媒体时返回 null，改为逐条复制
+     */
+    private static List<InputMedia> toAlbum(List<Message> posts) {
+        List<InputMedia> medias = new ArrayList<>(posts.size());
+        for (Message post : posts) {
+            InputMedia media;
+            if (post.hasPhoto()) {
+                List<PhotoSize> sizes = post.getPhoto();
+                media = InputMediaPhoto.builder().media(sizes.get(sizes.size() - 1).getFileId()).build();
+            } else if (post.hasVideo()) {
+                media = InputMediaVideo.builder().media(post.getVideo().getFileId()).build();
+            } else {
+                return null;
+            }
+            if (post.getCaption() != null) {
+                media.setCaption(post.getCaption());
+                media.setCaptionEntities(post.getCaptionEntities());
+            }
+            medias.add(media);
+        }
+        return medias;
+    }
+
+    /**
+     * 记录从频道发布到目标聊天发送完成的延迟
+     */
+    private void recordLag(Long target, Message post, String outcome) {
+        if (post.getDate() == null) {
+            return;
+        }
+        long lagMillis = System.currentTimeMillis() - post.getDate() * 1000L;
+        Timer.builder("telegram.relay.lag")
+                .description("Delay between the channel post and its copy in the target chat")
+                .tag("target", target.toString())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(Math.max(0L, lagMillis), TimeUnit.MILLISECONDS);
+    }
+
+    private static List<Long> parseChatIds(String value) {
+        List<Long> ids = new ArrayList<>();
+        if (value == null) {
+            return ids;
+        }
+        for (String part : value.split(",")) {
+            String trimmed = part.trim();
+            if (!trimmed.isEmpty()) {
+                ids.add(Long.parseLong(trimmed));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 收集中的相册及其在排空时登记的工作
+     */
+    private static final class PendingAlbum {
+        final List<Message> items = new ArrayList<>();
+        final ShutdownCoordinator.Activity activity;
+
+        PendingAlbum(ShutdownCoordinator.Activity activity) {
+            this.activity = activity;
+        }
+    }
+
+    /**
+     * 发往一个目标聊天的一次转发
+     */
+    private final class RelayJob implements Runnable {
+        final Long target;
+        final List<Message> posts;
+        final ShutdownCoordinator.Activity activity;
+
+        RelayJob(Long target, List<Message> posts, ShutdownCoordinator.Activity activity) {
+            this.target = target;
+            this.posts = posts;
+            this.activity = activity;
+        }
+
+        @Override
+        public void run() {
+            try {
+                relay(target, posts);
+            } finally {
+                finish(this);
+            }
+        }
+    }
+
+    /**
+     * 在共享线程池上按提交顺序逐个执行任务
+     *
+     * 线程池拒绝执行时（已关闭），当前任务和排队中的任务都交给 onRejected，之后提交的任务会重新尝试。
+     */
+    static final class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final Executor executor;
+        private final Consumer<Runnable> onRejected;
+        private Runnable active;
+
+        SerialExecutor(Executor executor, Consumer<Runnable> onRejected) {
+            this.executor = executor;
+            this.onRejected = onRejected;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            List<Runnable> rejected;
+            synchronized (this) {
+                tasks.add(task);
+                rejected = active == null ? scheduleNext() : List.of();
+            }
+            rejected.forEach(onRejected);
+        }
+
+        private void runNext(Runnable task) {
+            try {
+                task.run();
+            } finally {
+                List<Runnable> rejected;
+                synchronized (this) {
+                    rejected = scheduleNext();
+                }
+                rejected.forEach(onRejected);
+            }
+        }
+
+        /**
+         * 提交下一个任务，返回被拒绝而不会再执行的任务
+         */
+        private List<Runnable> scheduleNext() {
+            Runnable next = tasks.poll();
+            active = next;
+            if (next == null) {
+                return List.of();
+            }
+            try {
+                executor.execute(() -> runNext(next));
+                return List.of();
+            } catch (RejectedExecutionException e) {
+                active = null;
+                List<Runnable> rejected = new ArrayList<>(tasks.size() + 1);
+                rejected.add(next);
+                rejected.addAll(tasks);
+                tasks.clear();
+                return rejected;
+            }
+        }
+    }
+}
@@ -0,0 +1,593 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChat;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.ChatPermissions;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 聊天信息缓存：getChat 的结果（ID、类型、慢速模式、权限），按数量上限和有效期保存
+ *
+ * 接口传入的 @用户名 在这里解析为数字 ID，同一用户名在有效期内只查询一次，并发查询合并为一次。
+ * 发送时 {@link SendRateLimiter} 通过 {@link #peek(String)} 按聊天类型和慢速模式选择速率，不等待网络
+ * （开启了慢速模式的群组同时查询 Bot 是否为管理员，管理员不受慢速模式限制）：
+ * 没有缓存时先按 ID 推断类型，群组和频道在后台查询。
+ * Bot 被屏蔽、被移出（403）或“chat not found”的聊天在一段时间内记为不可用，之后的发送直接拒绝，不再请求 Telegram；
+ * 其他 403（例如没有发送图片的权限）只影响这一次发送；
+ * 群组升级为超级群组时记下新 ID，之后发往旧 ID 的消息（包括频道转发目标、保存的推送任务等未经
+ * {@link #resolveId(String)} 的发送）由 {@link Bot} 通过 {@link #currentId(String)} 改发到新 ID。
+ */
+@Service
+public class ChatDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatDirectory.class);
+
+    /** Telegram 用户名：5-32 位字母、数字和下划线，以字母开头 */
+    private static final Pattern USERNAME = Pattern.compile("@[A-Za-z][A-Za-z0-9_]{3,31}");
+
+    /** 后台查询失败后再次查询的间隔 */
+    private static final long RETRY_AFTER_FAILURE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 表示 Bot 已无法向该聊天发送任何消息的 403 描述（小写），其他 403 只是缺少某项权限
+     */
+    private static final String[] UNREACHABLE_FORBIDDEN = {
+            "bot was blocked", "bot was kicked", "user is deactivated", "bot is not a member"
+    };
+
+    /** 升级为超级群组的记录最多跟随的次数 */
+    private static final int MAX_MIGRATIONS = 2;
+
+    public enum ChatType {
+        PRIVATE, GROUP, SUPERGROUP, CHANNEL, UNKNOWN;
+
+        static ChatType parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return UNKNOWN;
+            }
+        }
+    }
+
+    private final ObjectProvider<Bot> bot;
+    private final ExecutorService executor;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long unavailableTtlMillis;
+
+    /** 按数字 ID 和小写的 @用户名 保存，按访问顺序淘汰 */
+    private final Map<String, Entry> entries;
+
+    /** 正在查询的聊天，同一聊天的其他请求等待同一次查询 */
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter fetched;
+    private final Counter failures;
+    private final Counter rejected;
+
+    public ChatDirectory(ObjectProvider<Bot> bot,
+                         @Qualifier("chatLookupExecutor") ExecutorService executor,
+                         MeterRegistry meterRegistry,
+                         @Value("${bot.chat.max-entries:10000}") int maxEntries,
+                         @Value("${bot.chat.ttl-s:3600}") long ttlSeconds,
+                         @Value("${bot.chat.unavailable-ttl-s:600}") long unavailableTtlSeconds) {
+        this.bot = bot;
+        this.executor = executor;
+        this.maxEntries = Math.max(16, maxEntries);
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1, ttlSeconds));
+        this.unavailableTtlMillis = TimeUnit.SECONDS.toMillis(Math.max(1, unavailableTtlSeconds));
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ChatDirectory.this.maxEntries;
+            }
+        };
+
+        Gauge.builder("telegram.chat.cache.size", this, ChatDirectory::size)
+                .description("Chats held in the chat metadata cache")
+                .register(meterRegistry);
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.fetched = lookupCounter(meterRegistry, "fetched");
+        this.failures = lookupCounter(meterRegistry, "failed");
+        this.rejected = Counter.builder("telegram.chat.rejected")
+                .description("Sends rejected without a request because the chat is known to be unavailable")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telegram.chat.lookups")
+                .description("Chat metadata lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 把接口传入的聊天（数字 ID 或 @用户名）解析为数字 ID
+     *
+     * 用户名没有缓存时查询一次 getChat；已知升级为超级群组的群组返回新 ID。
+     *
+     * @throws IllegalArgumentException 格式无效，或聊天已知不可用
+     * @throws IllegalStateException    查询 Telegram 失败
+     */
+    public Long resolveId(String chatId) {
+        String key = normalize(chatId);
+        Entry entry;
+        if (key.startsWith("@")) {
+            entry = fresh(key);
+            if (entry == null) {
+                entry = await(load(key, false));
+            } else {
+                hits.increment();
+            }
+        } else {
+            entry = fresh(key);
+        }
+        for (int i = 0; entry != null && entry.migratedTo != null && i < MAX_MIGRATIONS; i++) {
+            key = String.valueOf(entry.migratedTo);
+            entry = fresh(key);
+        }
+        if (entry != null && entry.unavailable != null) {
+            rejected.increment();
+            throw new IllegalArgumentException("聊天不可用: " + chatId + "（" + entry.unavailable + "）");
+        }
+        return entry != null && entry.info != null ? entry.info.getId() : Long.valueOf(key);
+    }
+
+    /**
+     * 查询聊天信息，有效期内使用缓存
+     *
+     * @throws IllegalArgumentException 格式无效，或聊天不存在、Bot 无权访问
+     * @throws IllegalStateException    查询 Telegram 失败
+     */
+    public ChatInfo get(String chatId) {
+        String key = normalize(chatId);
+        Entry entry = fresh(key);
+        if (entry == null) {
+            entry = await(load(key, false));
+        } else {
+            hits.increment();
+        }
+        if (entry.info == null) {
+            throw new IllegalArgumentException("聊天不可用: " + chatId + "（" + entry.describe() + "）");
+        }
+        return entry.info;
+    }
+
+    /**
+     * 发送路径使用的聊天信息，不等待网络
+     *
+     * 没有缓存或已过期时按 ID 推断类型（正数为私聊，-100 开头为超级群组或频道，其他负数为群组），
+     * 群组和频道同时在后台查询，之后的发送使用准确的类型和慢速模式。
+     */
+    public ChatInfo peek(String chatId) {
+        if (chatId == null) {
+            return ChatInfo.inferred(null);
+        }
+        Entry entry = fresh(chatId);
+        if (entry != null && entry.info != null) {
+            return entry.info;
+        }
+        if (entry == null && chatId.startsWith("-")) {
+            load(chatId, true);
+        }
+        return ChatInfo.inferred(chatId);
+    }
+
+    /**
+     * 已知升级为超级群组的群组返回新 ID，其他原样返回；只读缓存
+     */
+    public String currentId(String chatId) {
+        if (chatId == null) {
+            return null;
+        }
+        String current = chatId;
+        Entry entry = fresh(current);
+        for (int i = 0; entry != null && entry.migratedTo != null && i < MAX_MIGRATIONS; i++) {
+            current = String.valueOf(entry.migratedTo);
+            entry = fresh(current);
+        }
+        return current;
+    }
+
+    /**
+     * 已知会失败的发送返回原因，其他返回 null；只读缓存，升级为超级群组的群组先用 {@link #currentId(String)} 换成新 ID
+     */
+    public String rejection(String chatId) {
+        if (chatId == null) {
+            return null;
+        }
+        Entry entry = fresh(chatId);
+        if (entry == null || entry.unavailable == null) {
+            return null;
+        }
+        rejected.increment();
+        return entry.describe();
+    }
+
+    /**
+     * 发送失败的响应中携带的新超级群组 ID，没有时返回 null
+     */
+    public static Long migratedTo(TelegramApiException e) {
+        if (!(e instanceof TelegramApiRequestException)) {
+            return null;
+        }
+        ResponseParameters parameters = ((TelegramApiRequestException) e).getParameters();
+        return parameters != null ? parameters.getMigrateToChatId() : null;
+    }
+
+    /**
+     * 根据发送失败的响应更新缓存：Bot 被屏蔽或移出、chat not found 记为不可用，升级为超级群组时记下新 ID
+     */
+    public void onSendFailed(String chatId, TelegramApiException e) {
+        if (chatId == null || !(e instanceof TelegramApiRequestException)) {
+            return;
+        }
+        Entry entry = unavailableEntry((TelegramApiRequestException) e);
+        if (entry != null) {
+            put(chatId, entry);
+            log.info("event=chat_unavailable chat_id={} reason=\"{}\"", chatId, entry.describe());
+        }
+    }
+
+    /**
+     * 移除缓存，下一次使用时重新查询
+     */
+    public void forget(String chatId) {
+        String key = normalize(chatId);
+        synchronized (entries) {
+            Entry entry = entries.remove(key);
+            if (entry != null && entry.info != null) {
+                entries.remove(String.valueOf(entry.info.getId()));
+                if (entry.info.getUsername() != null) {
+                    entries.remove("@" + entry.info.getUsername().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 缓存中使用的聊天键：数字 ID 去掉前导零和正号，@用户名转为小写（Telegram 用户名不区分大小写）
+     *
+     * @throws IllegalArgumentException 聊天ID为空或格式无效
+     */
+    static String normalize(String chatId) {
+        String value = chatId == null ? "" : chatId.trim();
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("聊天ID不能为空");
+        }
+        if (value.startsWith("@")) {
+            if (!USERNAME.matcher(value).matches()) {
+                throw new IllegalArgumentException("无效的聊天用户名: " + value);
+            }
+            return value.toLowerCase(Locale.ROOT);
+        }
+        try {
+            return String.valueOf(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的聊天ID: " + value);
+        }
+    }
+
+    private Entry fresh(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - System.currentTimeMillis() < 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 查询一个聊天；同一聊天已在查询时返回同一个结果
+     *
+     * @param async 在后台线程池查询，否则在调用线程查询
+     */
+    private CompletableFuture<Entry> load(String key, boolean async) {
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loading.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        Runnable task = () -> {
+            try {
+                created.complete(fetch(key));
+            } catch (Throwable t) {
+                if (async) {
+                    // 后台查询失败时暂按推断的类型发送，一段时间后再查询，避免每次发送都请求
+                    put(key, new Entry(ChatInfo.inferred(key), null, null, System.currentTimeMillis() + RETRY_AFTER_FAILURE_MILLIS));
+                }
+                created.completeExceptionally(t);
+            } finally {
+                loading.remove(key, created);
+            }
+        };
+        if (!async) {
+            task.run();
+            return created;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            loading.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private Entry fetch(String key) {
+        Chat chat;
+        try {
+            chat = bot.getObject().execute(GetChat.builder().chatId(key).build());
+        } catch (TelegramApiRequestException e) {
+            Entry entry = unavailableEntry(e);
+            if (entry == null) {
+                failures.increment();
+                log.warn("event=chat_lookup_failed chat={} error=\"{}\"", key, e.getMessage());
+                throw new IllegalStateException("获取聊天信息失败: " + e.getMessage(), e);
+            }
+            fetched.increment();
+            put(key, entry);
+            return entry;
+        } catch (TelegramApiException e) {
+            failures.increment();
+            log.warn("event=chat_lookup_failed chat={} error=\"{}\"", key, e.getMessage());
+            throw new IllegalStateException("获取聊天信息失败: " + e.getMessage(), e);
+        }
+        fetched.increment();
+        ChatInfo info = ChatInfo.of(chat, chat.getSlowModeDelay() != null && chat.getSlowModeDelay() > 0 && isAdmin(chat.getId()));
+        Entry entry = new Entry(info, null, null, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            // 查询期间发送得知群组已升级时，保留升级记录
+            Entry current = entries.get(key);
+            if (current != null && current.migratedTo != null) {
+                return current;
+            }
+            entries.put(key, entry);
+            entries.put(String.valueOf(info.getId()), entry);
+            if (info.getUsername() != null) {
+                entries.put("@" + info.getUsername().toLowerCase(Locale.ROOT), entry);
+            }
+        }
+        log.debug("event=chat_resolved chat={} chat_id={} type={} slow_mode_s={} admin={}",
+                key, info.getId(), info.getType(), info.getSlowModeDelay(), info.isAdmin());
+        return entry;
+    }
+
+    /**
+     * Bot 是否为该聊天的管理员；查询失败时按非管理员处理
+     */
+    private boolean isAdmin(Long chatId) {
+        Long botId = botUserId();
+        if (botId == null) {
+            return false;
+        }
+        try {
+            ChatMember member = bot.getObject().execute(GetChatMember.builder().chatId(String.valueOf(chatId)).userId(botId).build());
+            String status = member != null ? member.getStatus() : null;
+            return "administrator".equals(status) || "creator".equals(status);
+        } catch (TelegramApiException e) {
+            log.warn("event=chat_member_lookup_failed chat_id={} error=\"{}\"", chatId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Bot 自己的用户 ID，即 token 中冒号前的部分
+     */
+    private Long botUserId() {
+        String token = bot.getObject().getBotToken();
+        int colon = token != null ? token.indexOf(':') : -1;
+        try {
+            return colon > 0 ? Long.valueOf(token.substring(0, colon)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Entry unavailableEntry(TelegramApiRequestException e) {
+        Long migratedTo = migratedTo(e);
+        if (migratedTo != null) {
+            // 升级不会撤销，按普通缓存的有效期保存
+            return new Entry(null, null, migratedTo, System.currentTimeMillis() + ttlMillis);
+        }
+        long expiresAt = System.currentTimeMillis() + unavailableTtlMillis;
+        Integer code = e.getErrorCode();
+        String description = e.getApiResponse() != null ? e.getApiResponse() : e.getMessage();
+        String lower = description != null ? description.toLowerCase(Locale.ROOT) : "";
+        if ((Integer.valueOf(403).equals(code) && isUnreachable(lower))
+                || (Integer.valueOf(400).equals(code) && lower.contains("chat not found"))) {
+            return new Entry(null, description, null, expiresAt);
+        }
+        return null;
+    }
+
+    private static boolean isUnreachable(String description) {
+        for (String reason : UNREACHABLE_FORBIDDEN) {
+            if (description.contains(reason)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 缓存项：聊天信息、不可用原因或升级后的新 ID 三者之一
+     */
+    private static final class Entry {
+        final ChatInfo info;
+        final String unavailable;
+        final Long migratedTo;
+        final long expiresAt;
+
+        Entry(ChatInfo info, String unavailable, Long migratedTo, long expiresAt) {
+            this.info = info;
+            this.unavailable = unavailable;
+            this.migratedTo = migratedTo;
+            this.expiresAt = expiresAt;
+        }
+
+        String describe() {
+            return migratedTo != null ? "群组已升级为超级群组，新ID: " + migratedTo : unavailable;
+        }
+    }
+
+    /**
+     * getChat 结果中与发送有关的部分
+     */
+    public static final class ChatInfo {
+        private final Long id;
+        private final ChatType type;
+        private final String username;
+        private final String title;
+        private final int slowModeDelay;
+        private final Boolean canSendMessages;
+        private final Boolean canSendMediaMessages;
+        private final boolean admin;
+        private final boolean inferred;
+
+        private ChatInfo(Long id, ChatType type, String username, String title, int slowModeDelay,
+                         Boolean canSendMessages, Boolean canSendMediaMessages, boolean admin, boolean inferred) {
+            this.id = id;
+            this.type = type;
+            this.username = username;
+            this.title = title;
+            this.slowModeDelay = slowModeDelay;
+            this.canSendMessages = canSendMessages;
+            this.canSendMediaMessages = canSendMediaMessages;
+            this.admin = admin;
+            this.inferred = inferred;
+        }
+
+        static ChatInfo of(Chat chat, boolean admin) {
+            ChatPermissions permissions = chat.getPermissions();
+            return new ChatInfo(chat.getId(), ChatType.parse(chat.getType()), chat.getUserName(), chat.getTitle(),
+                    chat.getSlowModeDelay() != null ? chat.getSlowModeDelay() : 0,
+                    permissions != null ? permissions.getCanSendMessages() : null,
+                    permissions != null ? permissions.getCanSendMediaMessages() : null,
+                    admin, false);
+        }
+
+        /**
+         * 没有查询结果时按 ID 推断的信息
+         */
+        static ChatInfo inferred(String chatId) {
+            ChatType type;
+            Long id = null;
+            if (chatId == null || chatId.startsWith("@")) {
+                type = ChatType.UNKNOWN;
+            } else {
+                try {
+                    id = Long.parseLong(chatId);
+                } catch (NumberFormatException e) {
+                    id = null;
+                }
+                type = id == null ? ChatType.UNKNOWN
+                        : id > 0 ? ChatType.PRIVATE
+                        : chatId.startsWith("-100") ? ChatType.SUPERGROUP : ChatType.GROUP;
+            }
+            return new ChatInfo(id, type, null, null, 0, null, null, false, true);
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public ChatType getType() {
+            return type;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * 慢速模式下成员两次发言的最小间隔（秒），0 表示未开启
+         */
+        public int getSlowModeDelay() {
+            return slowModeDelay;
+        }
+
+        /**
+         * 群组成员的默认权限，私聊和频道为 null
+         */
+        public Boolean getCanSendMessages() {
+            return canSendMessages;
+        }
+
+        public Boolean getCanSendMediaMessages() {
+            return canSendMediaMessages;
+        }
+
+        /**
+         * Bot 是否为管理员，只在开启了慢速模式的群组中查询，其他聊天为 false
+         */
+        public boolean isAdmin() {
+            return admin;
+        }
+
+        /**
+         * 是否只是按 ID 推断、尚未查询
+         */
+        public boolean isInferred() {
+            return inferred;
+        }
+    }
+}
@@ -17,6 +17,7 @@ public class CorsConfig {
                         .allowedOriginPatterns("*")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders(RequestTimingAdvice.SERVER_TIMING_HEADER)
                         .allowCredentials(true);
             }
         };
@@ -0,0 +1,258 @@
+package com.tutorial.telegrambot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * 单遍、宽松的 Data URL 解码器
+ *
+ * 一次扫描完成头部解析、跳过空白/非法字符、校验和Base64解码，
+ * 解码结果直接写入输出数组或通道，不再生成清理后的字符串副本，也不需要先解码一遍做校验。
+ */
+public final class DataUrlDecoder {
+
+    private static final String BASE64_MARKER = ";base64,";
+
+    /** 非Base64字符（跳过） */
+    private static final byte SKIP = -1;
+    /** 填充字符 '=' */
+    private static final byte PAD = -2;
+
+    private static final byte[] DECODE_TABLE = new byte[256];
+
+    static {
+        Arrays.fill(DECODE_TABLE, SKIP);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+        }
+        // 兼容URL安全的Base64字母表
+        DECODE_TABLE['-'] = 62;
+        DECODE_TABLE['_'] = 63;
+        DECODE_TABLE['='] = PAD;
+    }
+
+    /** 写入通道时的缓冲区大小 */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private DataUrlDecoder() {
+    }
+
+    /**
+     * Data URL 头部信息
+     */
+    public static final class Header {
+        private final String mimeType;
+        private final int payloadOffset;
+
+        Header(String mimeType, int payloadOffset) {
+            this.mimeType = mimeType;
+            this.payloadOffset = payloadOffset;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public int getPayloadOffset() {
+            return payloadOffset;
+        }
+    }
+
+    /**
+     * 解析 {@code data:<mime>;base64,} 头部，只扫描头部字符
+     */
+    public static Header parseHeader(String dataUrl) {
+        if (dataUrl == null) {
+            throw new IllegalArgumentException("Data URL cannot be null");
+        }
+        int start = 0;
+        int length = dataUrl.length();
+        while (start < length && Character.isWhitespace(dataUrl.charAt(start))) {
+            start++;
+        }
+        if (start == length) {
+            throw new IllegalArgumentException("Data URL cannot be empty");
+        }
+        if (!dataUrl.startsWith("data:", start)) {
+            throw new IllegalArgumentException("Data URL must start with 'data:'");
+        }
+        int mimeStart = start + 5;
+        int markerIndex = dataUrl.indexOf(BASE64_MARKER, mimeStart);
+        if (markerIndex == -1) {
+            throw new IllegalArgumentException("Data URL must contain ';base64,'");
+        }
+        // MIME类型形如 type/subtype，只允许字母、数字和 -+./
+        int slashCount = 0;
+        for (int i = mimeStart; i < markerIndex; i++) {
+            char c = dataUrl.charAt(i);
+            if (c == '/') {
+                slashCount++;
+            } else if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || c == '-' || c == '+' || c == '.')) {
+                throw new IllegalArgumentException("Invalid MIME type in Data URL");
+            }
+        }
+        if (slashCount != 1 || dataUrl.charAt(mimeStart) == '/' || dataUrl.charAt(markerIndex - 1) == '/') {
+            throw new IllegalArgumentException("Invalid MIME type in Data URL");
+        }
+        return new Header(dataUrl.substring(mimeStart, markerIndex), markerIndex + BASE64_MARKER.length());
+    }
+
+    /**
+     * 解码为字节数组，输出数组按负载长度精确预估，只在含有跳过字符时才截断复制
+     */
+    public static byte[] decodeToBytes(String dataUrl, Header header) {
+        int payloadLength = dataUrl.length() - header.getPayloadOffset();
+        int padding = 0;
+        for (int i = dataUrl.length() - 1; i >= header.getPayloadOffset() && padding < 2; i--) {
+            char c = dataUrl.charAt(i);
+            if (c == '=') {
+                padding++;
+            } else if (!Character.isWhitespace(c)) {
+                break;
+            }
+        }
+        byte[] out = new byte[(int) (((payloadLength - padding) * 3L) / 4L)];
+        int written = decode(dataUrl, header.getPayloadOffset(), out, null);
+        if (written == 0) {
+            throw new IllegalArgumentException("Invalid Base64 data: empty payload");
+        }
+        return written == out.length ? out : Arrays.copyOf(out, written);
+    }
+
+    /**
+     * 解码并直接写入通道，只占用一个固定大小的缓冲区
+     *
+     * @return 写入的字节数
+     */
+    public static long decodeTo(String dataUrl, Header header, WritableByteChannel channel) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        ChannelSink sink = new ChannelSink(channel, chunk);
+        try {
+            decode(dataUrl, header.getPayloadOffset(), chunk, sink);
+        } catch (UncheckedChannelException e) {
+            throw e.getCause();
+        }
+        if (sink.total == 0) {
+            throw new IllegalArgumentException("Invalid Base64 data: empty payload");
+        }
+        return sink.total;
+    }
+
+    /**
+     * 核心解码循环
+     *
+     * @param out  输出缓冲区
+     * @param sink 为 null 时 out 必须足够大；否则 out 写满后交给 sink 清空
+     * @return sink 为 null 时返回写入 out 的字节数
+     */
+    private static int decode(String src, int offset, byte[] out, ChannelSink sink) {
+        int length = src.length();
+        int pos = 0;
+        int bits = 0;
+        int sextets = 0;
+        boolean padded = false;
+        // 留出一组输出（3字节）的余量，保证每次写入前无需逐字节检查
+        int limit = out.length - 3;
+
+        for (int i = offset; i < length; i++) {
+            char c = src.charAt(i);
+            byte value = c < 256 ? DECODE_TABLE[c] : SKIP;
+            if (value == SKIP) {
+                continue;
+            }
+            if (value == PAD) {
+                padded = true;
+                continue;
+            }
+            if (padded) {
+                throw new IllegalArgumentException("Invalid Base64 data: data after padding");
+            }
+            bits = (bits << 6) | value;
+            if (++sextets == 4) {
+                if (pos > limit) {
+                    if (sink == null) {
+                        throw new IllegalStateException("Output buffer too small");
+                    }
+                    sink.flush(pos);
+                    pos = 0;
+                }
+                out[pos++] = (byte) (bits >> 16);
+                out[pos++] = (byte) (bits >> 8);
+                out[pos++] = (byte) bits;
+                bits = 0;
+                sextets = 0;
+            }
+        }
+
+        if (pos > limit && sextets > 1 && sink != null) {
+            sink.flush(pos);
+            pos = 0;
+        }
+        switch (sextets) {
+            case 0:
+                break;
+            case 1:
+                throw new IllegalArgumentException("Invalid Base64 data: truncated input");
+            case 2:
+                out[pos++] = (byte) (bits >> 4);
+                break;
+            case 3:
+                out[pos++] = (byte) (bits >> 10);
+                out[pos++] = (byte) (bits >> 2);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+        if (sink != null) {
+            sink.flush(pos);
+        }
+        return pos;
+    }
+
+    /**
+     * 把解码缓冲区写入通道，写入耗时计入 SPOOL 阶段
+     */
+    private static final class ChannelSink {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+        private long total;
+
+        ChannelSink(WritableByteChannel channel, byte[] chunk) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.wrap(chunk);
+        }
+
+        void flush(int count) {
+            if (count == 0) {
+                return;
+            }
+            long start = RequestTiming.start();
+            try {
+                buffer.clear().limit(count);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                total += count;
+            } catch (IOException e) {
+                throw new UncheckedChannelException(e);
+            } finally {
+                RequestTiming.stop(RequestTiming.Phase.SPOOL, start);
+            }
+        }
+    }
+
+    private static final class UncheckedChannelException extends RuntimeException {
+        UncheckedChannelException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.MessageId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * 发送记录：每条发出的消息一条定长记录，追加写入二进制文件，可按聊天、时间范围和内容摘要查询
+ *
+ * 记录 64 字节：时间（毫秒）、聊天ID、消息ID、所在媒体组第一条消息的ID、接口、file_id 在字符串文件中的位置和长度、
+ * 文字（text 或 caption）SHA-256 的前 16 字节、CRC32C 校验。file_id 长度不固定，另存在字符串文件中。
+ * 发送线程只把记录放入队列，由单独的线程成批编码后用 FileChannel 一次写入；队列满时丢弃并计数，不阻塞发送。
+ * 每个聊天在内存中保留最近的记录位置，按聊天查询时不扫描文件；其他查询从文件末尾向前扫描。
+ * 启动时在后台校验文件末尾（丢弃写了一半的记录）并重建索引。
+ */
+@Service
+public class DeliveryJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliveryJournal.class);
+
+    static final int RECORD_BYTES = 64;
+    static final int DIGEST_BYTES = 16;
+
+    private static final String RECORDS_FILE = "deliveries.bin";
+    private static final String FILE_IDS_FILE = "file-ids.bin";
+
+    /** 接口编码，下标即记录中的编码 */
+    private static final String[] METHODS = {"other", "sendMessage", "sendPhoto", "sendVideo", "sendMediaGroup", "copyMessage"};
+
+    /** 一次写入的最大记录数 */
+    private static final int MAX_BATCH = 4096;
+
+    /** 一次向前扫描读取的记录数 */
+    private static final int SCAN_CHUNK = 4096;
+
+    /** 记录按写入顺序排列，时间可能因排队略有先后，扫描时按此宽限判断是否已早于查询范围 */
+    private static final long TIME_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long flushIntervalMillis;
+    private final int indexPerChat;
+    private final boolean fsync;
+    private final BlockingQueue<Pending> queue;
+
+    private FileChannel records;
+    private FileChannel fileIds;
+
+    /** 已写入的记录数，只由写入线程修改 */
+    private volatile long recordCount;
+    private volatile long fileIdsSize;
+
+    /** 每个聊天最近的记录，按写入顺序 */
+    private final Map<Long, ChatIndex> index = new HashMap<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Timer flushTimer;
+
+    public DeliveryJournal(MeterRegistry meterRegistry,
+                           @Value("${bot.journal.enabled:true}") boolean enabled,
+                           @Value("${bot.journal.dir:delivery-journal}") String dir,
+                           @Value("${bot.journal.queue-size:65536}") int queueSize,
+                           @Value("${bot.journal.flush-interval-ms:50}") long flushIntervalMillis,
+                           @Value("${bot.journal.index-per-chat:10000}") int indexPerChat,
+                           @Value("${bot.journal.fsync:false}") boolean fsync) {
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.indexPerChat = Math.max(16, indexPerChat);
+        this.fsync = fsync;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1024, queueSize));
+
+        Gauge.builder("telegram.journal.queue", queue, BlockingQueue::size)
+                .description("Delivery records waiting to be written")
+                .register(meterRegistry);
+        this.written = recordCounter(meterRegistry, "written");
+        this.dropped = recordCounter(meterRegistry, "dropped");
+        this.flushTimer = Timer.builder("telegram.journal.flush")
+                .description("Time to encode and append one batch of delivery records")
+                .register(meterRegistry);
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telegram.journal.records")
+                .description("Delivery records by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        records = FileChannel.open(dir.resolve(RECORDS_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileIds = FileChannel.open(dir.resolve(FILE_IDS_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        running = true;
+        writer = new Thread(this::run, "delivery-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 写完队列中的记录后关闭文件，在发送排空（{@link ShutdownCoordinator}）之后执行
+     */
+    @PreDestroy
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            records.force(false);
+            fileIds.force(false);
+            records.close();
+            fileIds.close();
+        } catch (IOException e) {
+            log.warn("event=journal_close_failed error=\"{}\"", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录一次发送的结果：Message、媒体组的 List&lt;Message&gt; 或 copyMessage 的 MessageId，其他结果忽略
+     *
+     * @param chatId 发送时的聊天ID，结果中没有聊天时使用
+     */
+    public void record(String method, String chatId, Object result) {
+        if (!running || result == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int code = methodCode(method);
+        if (result instanceof Message) {
+            Message message = (Message) result;
+            offer(new Pending(now, message.getChatId(), message.getMessageId(), message.getMessageId(), code, message));
+        } else if (result instanceof List) {
+            List<?> messages = (List<?>) result;
+            Integer first = null;
+            for (Object item : messages) {
+                if (!(item instanceof Message)) {
+                    continue;
+                }
+                Message message = (Message) item;
+                if (first == null) {
+                    first = message.getMessageId();
+                }
+                offer(new Pending(now, message.getChatId(), message.getMessageId(), first, code, message));
+            }
+        } else if (result instanceof MessageId) {
+            Long chat = parseChatId(chatId);
+            Integer messageId = ((MessageId) result).getMessageId() != null ? ((MessageId) result).getMessageId().intValue() : null;
+            if (chat != null && messageId != null) {
+                offer(new Pending(now, chat, messageId, messageId, code, null));
+            }
+        }
+    }
+
+    private void offer(Pending pending) {
+        if (pending.chatId == null || pending.messageId == null || !queue.offer(pending)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 查询发送记录，按时间从新到旧返回
+     *
+     * @param chatId 聊天ID，为 null 时查询全部聊天
+     * @param from   起始时间（毫秒，含），可为 null
+     * @param to     结束时间（毫秒，含），可为 null
+     * @param digest 文字摘要（{@link #digestOf(String)}），可为 null
+     * @param limit  最多返回的条数
+     */
+    public List<Delivery> query(Long chatId, Long from, Long to, String digest, int limit) throws IOException {
+        List<Delivery> result = new ArrayList<>();
+        if (!enabled) {
+            return result;
+        }
+        byte[] digestBytes = digest != null && !digest.isBlank() ? parseDigest(digest) : null;
+        long fromMillis = from != null ? from : Long.MIN_VALUE;
+        long toMillis = to != null ? to : Long.MAX_VALUE;
+        Filter filter = new Filter(chatId, fromMillis, toMillis, digestBytes, Math.max(1, limit));
+
+        long scanFrom = recordCount - 1;
+        if (chatId != null) {
+            long[] positions;
+            boolean complete;
+            synchronized (index) {
+                ChatIndex chat = index.get(chatId);
+                positions = chat != null ? chat.positionsBetween(fromMillis, toMillis) : new long[0];
+                complete = chat == null || !chat.truncated || chat.oldestTimestamp() <= fromMillis;
+                scanFrom = chat != null && chat.size > 0 ? chat.positions[0] - 1 : -1;
+            }
+            readPositions(positions, filter, result);
+            if (complete || result.size() >= filter.limit) {
+                return result;
+            }
+        }
+        scanBackward(scanFrom, filter, result);
+        return result;
+    }
+
+    /**
+     * 文字摘要：UTF-8 编码的 SHA-256 的前 16 字节，十六进制小写；没有文字时按空字符串计算
+     */
+    public static String digestOf(String text) {
+        return toHex(digestBytes(sha256(), text));
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private void run() {
+        try {
+            recover();
+        } catch (IOException e) {
+            log.error("event=journal_recover_failed error=\"{}\"", e.getMessage(), e);
+            running = false;
+            return;
+        }
+        MessageDigest sha256 = sha256();
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer recordBuffer = ByteBuffer.allocate(MAX_BATCH * RECORD_BYTES);
+        CRC32C crc = new CRC32C();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                long start = System.nanoTime();
+                append(batch, recordBuffer, sha256, crc);
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                written.increment(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                dropped.increment(batch.size());
+                log.warn("event=journal_write_failed records={} error=\"{}\"", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 编码一批记录并追加：先写 file_id，再写引用它们的记录，记录写入后更新索引
+     */
+    private void append(List<Pending> batch, ByteBuffer recordBuffer, MessageDigest sha256, CRC32C crc) throws IOException {
+        recordBuffer.clear();
+        List<byte[]> strings = new ArrayList<>();
+        long stringsStart = fileIdsSize;
+        long stringsEnd = stringsStart;
+        byte[] record = recordBuffer.array();
+        for (Pending pending : batch) {
+            byte[] fileId = pending.fileId != null ? pending.fileId.getBytes(StandardCharsets.UTF_8) : null;
+            long fileIdOffset = -1L;
+            int fileIdLength = 0;
+            if (fileId != null && fileId.length <= 0xFFFF) {
+                fileIdOffset = stringsEnd;
+                fileIdLength = fileId.length;
+                strings.add(fileId);
+                stringsEnd += fileId.length;
+            }
+            int offset = recordBuffer.position();
+            recordBuffer.putLong(pending.timestamp)
+                    .putLong(pending.chatId)
+                    .putInt(pending.messageId)
+                    .putInt(pending.groupId)
+                    .put((byte) pending.method)
+                    .put((byte) 0)
+                    .putShort((short) fileIdLength)
+                    .putLong(fileIdOffset)
+                    .put(digestBytes(sha256, pending.text))
+                    .putLong(0L);
+            crc.reset();
+            crc.update(record, offset, RECORD_BYTES - 4);
+            recordBuffer.putInt((int) crc.getValue());
+        }
+        if (!strings.isEmpty()) {
+            ByteBuffer stringBuffer = ByteBuffer.allocate((int) (stringsEnd - stringsStart));
+            for (byte[] bytes : strings) {
+                stringBuffer.put(bytes);
+            }
+            stringBuffer.flip();
+            writeFully(fileIds, stringBuffer, stringsStart);
+            fileIdsSize = stringsEnd;
+        }
+        recordBuffer.flip();
+        long firstPosition = recordCount;
+        writeFully(records, recordBuffer, firstPosition * RECORD_BYTES);
+        if (fsync) {
+            fileIds.force(false);
+            records.force(false);
+        }
+        synchronized (index) {
+            for (int i = 0; i < batch.size(); i++) {
+                Pending pending = batch.get(i);
+                index.computeIfAbsent(pending.chatId, id -> new ChatIndex())
+                        .add(pending.timestamp, firstPosition + i, indexPerChat);
+            }
+        }
+        recordCount = firstPosition + batch.size();
+    }
+
+    /**
+     * 丢弃文件末尾不完整或校验失败的记录，并按文件内容重建每个聊天的索引
+     */
+    private void recover() throws IOException {
+        long size = records.size();
+        long count = size / RECORD_BYTES;
+        CRC32C crc = new CRC32C();
+        byte[] last = new byte[RECORD_BYTES];
+        while (count > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(last);
+            readFully(records, buffer, (count - 1) * RECORD_BYTES);
+            crc.reset();
+            crc.update(last, 0, RECORD_BYTES - 4);
+            if ((int) crc.getValue() == ByteBuffer.wrap(last).getInt(RECORD_BYTES - 4)) {
+                break;
+            }
+            count--;
+        }
+        if (count * RECORD_BYTES != size) {
+            log.warn("event=journal_truncated bytes={}", size - count * RECORD_BYTES);
+            records.truncate(count * RECORD_BYTES);
+        }
+        fileIdsSize = fileIds.size();
+
+        ByteBuffer chunk = ByteBuffer.allocate(SCAN_CHUNK * RECORD_BYTES);
+        for (long position = 0; position < count; position += SCAN_CHUNK) {
+            int n = (int) Math.min(SCAN_CHUNK, count - position);
+            chunk.clear().limit(n * RECORD_BYTES);
+            readFully(records, chunk, position * RECORD_BYTES);
+            synchronized (index) {
+                for (int i = 0; i < n; i++) {
+                    int base = i * RECORD_BYTES;
+                    index.computeIfAbsent(chunk.getLong(base + 8), id -> new ChatIndex())
+                            .add(chunk.getLong(base), position + i, indexPerChat);
+                }
+            }
+        }
+        recordCount = count;
+        log.info("event=journal_opened records={} chats={}", count, index.size());
+    }
+
+    private void readPositions(long[] positions, Filter filter, List<Delivery> result) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+        for (int i = positions.length - 1; i >= 0 && result.size() < filter.limit; i--) {
+            buffer.clear();
+            readFully(records, buffer, positions[i] * RECORD_BYTES);
+            Delivery delivery = filter.match(buffer, 0) ? decode(buffer, 0) : null;
+            if (delivery != null) {
+                result.add(delivery);
+            }
+        }
+    }
+
+    /**
+     * 从指定记录开始向前扫描文件，直到满足条数或记录早于查询范围
+     */
+    private void scanBackward(long fromPosition, Filter filter, List<Delivery> result) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(SCAN_CHUNK * RECORD_BYTES);
+        long end = fromPosition + 1;
+        while (end > 0 && result.size() < filter.limit) {
+            long start = Math.max(0, end - SCAN_CHUNK);
+            int n = (int) (end - start);
+            chunk.clear().limit(n * RECORD_BYTES);
+            readFully(records, chunk, start * RECORD_BYTES);
+            for (int i = n - 1; i >= 0 && result.size() < filter.limit; i--) {
+                int base = i * RECORD_BYTES;
+                if (filter.from != Long.MIN_VALUE && chunk.getLong(base) < filter.from - TIME_SKEW_MILLIS) {
+                    return;
+                }
+                if (filter.match(chunk, base)) {
+                    result.add(decode(chunk, base));
+                }
+            }
+            end = start;
+        }
+    }
+
+    private Delivery decode(ByteBuffer buffer, int base) throws IOException {
+        int method = buffer.get(base + 24) & 0xFF;
+        int fileIdLength = buffer.getShort(base + 26) & 0xFFFF;
+        long fileIdOffset = buffer.getLong(base + 28);
+        String fileId = null;
+        if (fileIdOffset >= 0 && fileIdLength > 0 && fileIdOffset + fileIdLength <= fileIdsSize) {
+            ByteBuffer bytes = ByteBuffer.allocate(fileIdLength);
+            readFully(fileIds, bytes, fileIdOffset);
+            fileId = new String(bytes.array(), StandardCharsets.UTF_8);
+        }
+        byte[] digest = new byte[DIGEST_BYTES];
+        buffer.get(base + 36, digest);
+        return new Delivery(buffer.getLong(base), buffer.getLong(base + 8), buffer.getInt(base + 16), buffer.getInt(base + 20),
+                method < METHODS.length ? METHODS[method] : METHODS[0], toHex(digest), fileId);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static int methodCode(String method) {
+        for (int i = 1; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static Long parseChatId(String chatId) {
+        try {
+            return chatId != null ? Long.valueOf(chatId) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] digestBytes(MessageDigest sha256, String text) {
+        sha256.reset();
+        return Arrays.copyOf(sha256.digest((text != null ? text : "").getBytes(StandardCharsets.UTF_8)), DIGEST_BYTES);
+    }
+
+    private static byte[] parseDigest(String hex) {
+        String value = hex.trim().toLowerCase(Locale.ROOT);
+        if (value.length() != DIGEST_BYTES * 2 || !value.matches("[0-9a-f]+")) {
+            throw new IllegalArgumentException("摘要应为 " + DIGEST_BYTES * 2 + " 位十六进制: " + hex);
+        }
+        byte[] bytes = new byte[DIGEST_BYTES];
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            bytes[i] = (byte) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 等待写入的记录，文字的摘要在写入线程中计算
+     */
+    private static final class Pending {
+        final long timestamp;
+        final Long chatId;
+        final Integer messageId;
+        final Integer groupId;
+        final int method;
+        final String text;
+        final String fileId;
+
+        Pending(long timestamp, Long chatId, Integer messageId, Integer groupId, int method, Message message) {
+            this.timestamp = timestamp;
+            this.chatId = chatId;
+            this.messageId = messageId;
+            this.groupId = groupId;
+            this.method = method;
+            this.text = message == null ? null : message.getText() != null ? message.getText() : message.getCaption();
+            this.fileId = message == null ? null
+                    : message.getVideo() != null ? RemoteMediaCache.fileIdOf(message, RemoteMediaCache.Kind.VIDEO)
+                    : RemoteMediaCache.fileIdOf(message, RemoteMediaCache.Kind.PHOTO);
+        }
+    }
+
+    private static final class Filter {
+        final Long chatId;
+        final long from;
+        final long to;
+        final byte[] digest;
+        final int limit;
+
+        Filter(Long chatId, long from, long to, byte[] digest, int limit) {
+            this.chatId = chatId;
+            this.from = from;
+            this.to = to;
+            this.digest = digest;
+            this.limit = limit;
+        }
+
+        boolean match(ByteBuffer buffer, int base) {
+            long timestamp = buffer.getLong(base);
+            if (timestamp < from || timestamp > to) {
+                return false;
+            }
+            if (chatId != null && buffer.getLong(base + 8) != chatId) {
+                return false;
+            }
+            if (digest != null) {
+                for (int i = 0; i < DIGEST_BYTES; i++) {
+                    if (buffer.get(base + 36 + i) != digest[i]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 一个聊天最近的记录位置和时间，超过上限时丢弃较早的一半
+     */
+    private static final class ChatIndex {
+        long[] timestamps = new long[4];
+        long[] positions = new long[4];
+        int size;
+        /** 是否丢弃过较早的记录 */
+        boolean truncated;
+
+        void add(long timestamp, long position, int max) {
+            if (size == max) {
+                int keep = max / 2;
+                System.arraycopy(timestamps, size - keep, timestamps, 0, keep);
+                System.arraycopy(positions, size - keep, positions, 0, keep);
+                size = keep;
+                truncated = true;
+            }
+            if (size == positions.length) {
+                int capacity = Math.min(max, size * 2);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+            }
+            timestamps[size] = timestamp;
+            positions[size] = position;
+            size++;
+        }
+
+        long oldestTimestamp() {
+            return size > 0 ? timestamps[0] : Long.MAX_VALUE;
+        }
+
+        /**
+         * 时间在范围内的记录位置，按写入顺序
+         */
+        long[] positionsBetween(long from, long to) {
+            long[] result = new long[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] >= from && timestamps[i] <= to) {
+                    result[n++] = positions[i];
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+    }
+
+    /**
+     * 一条发送记录
+     */
+    public static final class Delivery {
+        private final long timestamp;
+        private final long chatId;
+        private final int messageId;
+        private final int groupId;
+        private final String method;
+        private final String digest;
+        private final String fileId;
+
+        Delivery(long timestamp, long chatId, int messageId, int groupId, String method, String digest, String fileId) {
+            this.timestamp = timestamp;
+            this.chatId = chatId;
+            this.messageId = messageId;
+            this.groupId = groupId;
+            this.method = method;
+            this.digest = digest;
+            this.fileId = fileId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getChatId() {
+            return chatId;
+        }
+
+        public int getMessageId() {
+            return messageId;
+        }
+
+        /**
+         * 所在媒体组第一条消息的ID，单条消息与 messageId 相同
+         */
+        public int getGroupId() {
+            return groupId;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public String getFileId() {
+            return fileId;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.tutorial.telegrambot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.MessageId;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.List;
+
+/**
+ * 收到的更新和发送结果的结构化日志（key=value 格式）
+ *
+ * 日志经 logback-spring.xml 中的异步appender写出，调用方只做入队，过载时丢弃而不是阻塞。
+ */
+public final class DeliveryLog {
+
+    private static final Logger log = LoggerFactory.getLogger("delivery");
+
+    private DeliveryLog() {
+    }
+
+    /**
+     * 记录收到的更新
+     */
+    public static void inbound(Update update) {
+        if (update == null || !log.isInfoEnabled()) {
+            return;
+        }
+        Message msg = update.hasMessage() ? update.getMessage()
+                : update.hasChannelPost() ? update.getChannelPost() : null;
+        if (msg == null) {
+            log.info("event=update update_id={} type=other", update.getUpdateId());
+            return;
+        }
+        log.info("event=update update_id={} type={} chat_id={} message_id={} from_id={} text_len={} media_group_id={}",
+                update.getUpdateId(),
+                update.hasMessage() ? "message" : "channel_post",
+                msg.getChatId(),
+                msg.getMessageId(),
+                msg.getFrom() != null ? msg.getFrom().getId() : null,
+                msg.getText() != null ? msg.getText().length() : 0,
+                msg.getMediaGroupId());
+    }
+
+    /**
+     * 记录发送成功
+     */
+    public static void sent(String method, String chatId, Object result, long latencyNanos, long bytes) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        log.info("event=send method={} chat_id={} message_id={} latency_ms={} bytes={} error_code=",
+                method, chatId, messageIdOf(result), latencyNanos / 1_000_000L, bytes);
+    }
+
+    /**
+     * 记录发送失败
+     */
+    public static void failed(String method, String chatId, long latencyNanos, long bytes, TelegramApiException e) {
+        Integer errorCode = e instanceof TelegramApiRequestException
+                ? ((TelegramApiRequestException) e).getErrorCode() : null;
+        log.warn("event=send method={} chat_id={} message_id= latency_ms={} bytes={} error_code={} error=\"{}\"",
+                method, chatId, latencyNanos / 1_000_000L, bytes, errorCode, e.getMessage());
+    }
+
+    private static Object messageIdOf(Object result) {
+        if (result instanceof Message) {
+            return ((Message) result).getMessageId();
+        }
+        if (result instanceof MessageId) {
+            return ((MessageId) result).getMessageId();
+        }
+        if (result instanceof List && !((List<?>) result).isEmpty() && ((List<?>) result).get(0) instanceof Message) {
+            return ((Message) ((List<?>) result).get(0)).getMessageId();
+        }
+        return null;
+    }
+}
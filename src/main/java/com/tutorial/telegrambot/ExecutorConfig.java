@@ -0,0 +1,129 @@
+package com.tutorial.telegrambot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台线程池配置
+ *
+ * spring.threads.virtual.enabled 开启时（需要 Java 21+），除了 Spring Boot 让 Tomcat 用虚拟线程处理请求外，
+ * 主要在等待 Telegram 上传的线程池也改用虚拟线程；做解码、缩放等计算的线程池仍使用平台线程。
+ */
+@Configuration
+public class ExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    private final boolean virtualThreads;
+
+    public ExecutorConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreads = virtualThreads && VirtualThreads.isSupported();
+        if (virtualThreads && !this.virtualThreads) {
+            log.warn("event=virtual_threads_unavailable java_version={}", System.getProperty("java.version"));
+        }
+    }
+
+    /**
+     * 视频预处理线程池（解码、写临时文件），与上传并行执行
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService videoPrepareExecutor(@Value("${bot.video.prepare-threads:2}") int threads) {
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("video-prepare-"));
+    }
+
+    /**
+     * 视频元数据解析线程池
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService mediaProbeExecutor(@Value("${bot.video.probe-threads:2}") int threads) {
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("media-probe-"));
+    }
+
+    /**
+     * 频道转发线程池，不同目标聊天并行发送
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService relayExecutor(@Value("${bot.relay.threads:4}") int threads) {
+        if (virtualThreads) {
+            // 每个目标聊天的顺序由 SerialExecutor 保证，并发由发送限流控制
+            return VirtualThreads.newThreadPerTaskExecutor("relay-");
+        }
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("relay-"));
+    }
+
+    /**
+     * 相册收集窗口的定时器
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService relayScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(namedThreadFactory("relay-album-"));
+    }
+
+    /**
+     * 媒体目录的后台任务：建立索引、计算图片宽高和哈希、定期重新扫描
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService catalogExecutor(@Value("${bot.catalog.threads:1}") int threads) {
+        return Executors.newScheduledThreadPool(threads, namedThreadFactory("catalog-"));
+    }
+
+    /**
+     * 文件夹推送任务线程池，每个任务占用一个线程顺序发送；线程数即同时运行的任务数
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService folderPushExecutor(@Value("${bot.push.jobs:2}") int threads) {
+        return Executors.newFixedThreadPool(threads, sendThreadFactory("folder-push-"));
+    }
+
+    /**
+     * 文件夹推送的图片预处理线程池（读取、缩放），与上传并行执行
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService folderPrepareExecutor(@Value("${bot.push.prepare-threads:2}") int threads) {
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("folder-prepare-"));
+    }
+
+    /**
+     * 模板批量发送线程池，收件人之间并行发送
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService templateSendExecutor(@Value("${bot.template.send-threads:4}") int threads) {
+        if (virtualThreads) {
+            return VirtualThreads.newThreadPerTaskExecutor("template-send-");
+        }
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("template-send-"));
+    }
+
+    /**
+     * 聊天信息的后台查询（getChat）线程池
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService chatLookupExecutor(@Value("${bot.chat.lookup-threads:2}") int threads) {
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("chat-lookup-"));
+    }
+
+    /**
+     * 主要等待 Telegram 上传的线程
+     */
+    private ThreadFactory sendThreadFactory(String prefix) {
+        return virtualThreads ? VirtualThreads.threadFactory(prefix) : namedThreadFactory(prefix);
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
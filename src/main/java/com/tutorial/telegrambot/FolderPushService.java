@@ -0,0 +1,554 @@
+package com.tutorial.telegrambot;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文件夹推送：把整个文件夹的图片按媒体组（每组最多10张）发送到指定聊天
+ *
+ * 每个任务在后台线程中以批量优先级发送，经过 {@link SendRateLimiter} 的限流；
+ * 当前媒体组上传的同时，在线程池中读取并处理后续几组图片（超出尺寸或大小限制的缩放为 JPEG）。
+ * 任务进度在每组发送后写入状态文件，进程中断后可以从下一组继续；停止服务时发送完当前组即保存进度并标记为中断。
+ */
+@Service
+public class FolderPushService {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderPushService.class);
+
+    /** 每组图片数的配置范围；下限为 3，最后一组只有一张时从前一组借一张，两组仍都不少于 2 张 */
+    private static final int MIN_GROUP_SIZE = 3;
+    private static final int MAX_GROUP_SIZE = 10;
+
+    /** Telegram 图片的上传大小上限 */
+    private static final long MAX_PHOTO_BYTES = 10L * 1024 * 1024;
+
+    /** 不需要转换即可作为图片发送的格式 */
+    private static final List<String> DIRECT_EXTENSIONS = List.of("jpg", "jpeg", "png", "webp");
+
+    /** 任务状态 */
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED, INTERRUPTED
+    }
+
+    /** 可以继续的任务状态 */
+    private static final Set<Status> RESUMABLE = EnumSet.of(Status.INTERRUPTED, Status.FAILED, Status.CANCELLED);
+
+    private final Bot bot;
+    private final MediaCatalog mediaCatalog;
+    private final ShutdownCoordinator shutdownCoordinator;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService prepareExecutor;
+    private final int groupSize;
+    private final int prefetch;
+    private final int maxDimension;
+    private final Path stateDir;
+    private final boolean resumeOnStartup;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public FolderPushService(Bot bot,
+                             MediaCatalog mediaCatalog,
+                             ShutdownCoordinator shutdownCoordinator,
+                             @Qualifier("folderPushExecutor") ExecutorService jobExecutor,
+                             @Qualifier("folderPrepareExecutor") ExecutorService prepareExecutor,
+                             @Value("${bot.push.group-size:10}") int groupSize,
+                             @Value("${bot.push.prefetch:2}") int prefetch,
+                             @Value("${bot.push.max-dimension:2560}") int maxDimension,
+                             @Value("${bot.push.state-dir:push-jobs}") String stateDir,
+                             @Value("${bot.push.resume-on-startup:false}") boolean resumeOnStartup) {
+        this.bot = bot;
+        this.mediaCatalog = mediaCatalog;
+        this.shutdownCoordinator = shutdownCoordinator;
+        this.jobExecutor = jobExecutor;
+        this.prepareExecutor = prepareExecutor;
+        this.groupSize = Math.max(MIN_GROUP_SIZE, Math.min(MAX_GROUP_SIZE, groupSize));
+        this.prefetch = Math.max(1, prefetch);
+        this.maxDimension = Math.max(320, maxDimension);
+        this.stateDir = Paths.get(stateDir);
+        this.resumeOnStartup = resumeOnStartup;
+    }
+
+    /**
+     * 加载上次运行留下的任务，未完成的标记为中断，按配置自动继续
+     */
+    @PostConstruct
+    public void loadJobs() {
+        if (!Files.isDirectory(stateDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(stateDir, "*.properties")) {
+            for (Path file : stream) {
+                try {
+                    Job job = Job.load(file);
+                    if (job.status == Status.QUEUED || job.status == Status.RUNNING) {
+                        job.status = Status.INTERRUPTED;
+                    }
+                    jobs.put(job.id, job);
+                    if (job.status == Status.INTERRUPTED && resumeOnStartup) {
+                        resume(job.id);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("event=push_job_load_failed file=\"{}\" error=\"{}\"", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("event=push_job_load_failed dir=\"{}\" error=\"{}\"", stateDir, e.getMessage());
+        }
+    }
+
+    /**
+     * 创建并开始一个推送任务，文件按名称排序
+     *
+     * @param caption 说明文字（富文本HTML，发送前转换为纯文本），设置在第一组的第一张图片上，可为空
+     * @throws IllegalArgumentException 文件夹不存在或没有图片
+     */
+    public Job start(String folderPath, Long chatId, String caption) {
+        List<String> files = mediaCatalog.names(folderPath);
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("文件夹不存在或没有图片: " + folderPath);
+        }
+        Job job = new Job(UUID.randomUUID().toString().replace("-", "").substring(0, 12),
+                Paths.get(folderPath).toAbsolutePath().normalize().toString(), chatId, caption, files);
+        jobs.put(job.id, job);
+        submit(job);
+        return job;
+    }
+
+    /**
+     * 从上次发送成功的位置继续一个中断、失败或取消的任务；同一任务同时多次继续时只提交一次
+     */
+    public Job resume(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+        if (job.transition(RESUMABLE, Status.QUEUED)) {
+            job.cancelled = false;
+            job.error = null;
+            submit(job);
+        }
+        return job;
+    }
+
+    /**
+     * 取消任务，正在上传的一组发送完后停止
+     */
+    public Job cancel(String id) {
+        Job job = jobs.get(id);
+        if (job != null) {
+            job.cancelled = true;
+        }
+        return job;
+    }
+
+    public Job get(String id) {
+        return jobs.get(id);
+    }
+
+    public Collection<Job> list() {
+        return jobs.values();
+    }
+
+    /**
+     * 提交状态为 QUEUED 的任务
+     */
+    private void submit(Job job) {
+        saveQuietly(job);
+        jobExecutor.execute(() -> run(job));
+    }
+
+    private void run(Job job) {
+        if (job.cancelled) {
+            job.status = Status.CANCELLED;
+            saveQuietly(job);
+            return;
+        }
+        if (shutdownCoordinator.isDraining()) {
+            job.status = Status.INTERRUPTED;
+            saveQuietly(job);
+            return;
+        }
+        job.status = Status.RUNNING;
+        saveQuietly(job);
+        try (ShutdownCoordinator.Activity ignored = shutdownCoordinator.begin("push")) {
+            push(job);
+        }
+    }
+
+    private void push(Job job) {
+        log.info("event=push_start job={} folder=\"{}\" chat_id={} next={} total={}",
+                job.id, job.folder, job.chatId, job.next, job.files.size());
+
+        List<int[]> groups = partition(job.next, job.files.size());
+        Deque<Future<PreparedGroup>> pending = new ArrayDeque<>();
+        int submitted = 0;
+        try (SendPriority.Scope ignored = SendPriority.BULK.enter()) {
+            for (; submitted < Math.min(prefetch, groups.size()); submitted++) {
+                pending.add(submitPrepare(job, groups.get(submitted)));
+            }
+            for (int[] range : groups) {
+                if (job.cancelled) {
+                    job.status = Status.CANCELLED;
+                    break;
+                }
+                // 停止服务：当前组已发送完，保存进度，下次启动后可继续
+                if (shutdownCoordinator.isDraining()) {
+                    job.status = Status.INTERRUPTED;
+                    break;
+                }
+                PreparedGroup group = pending.poll().get();
+                // 当前组上传前，提交后续组的预处理
+                if (submitted < groups.size()) {
+                    pending.add(submitPrepare(job, groups.get(submitted++)));
+                }
+                try {
+                    send(job, group);
+                } finally {
+                    group.cleanup();
+                }
+                job.next = range[1];
+                job.sent += group.files.size();
+                job.skipped += group.skipped;
+                saveQuietly(job);
+            }
+            if (job.status == Status.RUNNING) {
+                job.status = Status.COMPLETED;
+            }
+        } catch (RuntimeException | ExecutionException e) {
+            // 停止服务时线程被中断，发送失败，记为中断以便继续
+            job.status = Thread.currentThread().isInterrupted() ? Status.INTERRUPTED : Status.FAILED;
+            job.error = e instanceof ExecutionException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            log.warn("event=push_failed job={} next={} error=\"{}\"", job.id, job.next, job.error);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.status = Status.INTERRUPTED;
+        } finally {
+            for (Future<PreparedGroup> future : pending) {
+                discard(future);
+            }
+            saveQuietly(job);
+            log.info("event=push_end job={} status={} sent={} skipped={} total={}",
+                    job.id, job.status, job.sent, job.skipped, job.files.size());
+        }
+    }
+
+    private void send(Job job, PreparedGroup group) {
+        if (group.files.isEmpty()) {
+            return;
+        }
+        // 说明文字只放在任务的第一组
+        String caption = job.sent == 0 && job.caption != null && !job.caption.isEmpty()
+                ? HtmlUtils.convertForTelegram(job.caption) : null;
+        if (group.files.size() == 1) {
+            bot.sendPhotoWithCaption(job.chatId, group.files.get(0).getAbsolutePath(), caption != null ? caption : "");
+        } else {
+            bot.sendMediaGroupFromFiles(job.chatId, group.files, caption);
+        }
+    }
+
+    /**
+     * 把剩余文件分成若干组，每组最多 groupSize 个；避免最后一组只有一个文件
+     *
+     * @return 每组在文件列表中的 [起始, 结束) 下标
+     */
+    List<int[]> partition(int from, int to) {
+        List<int[]> groups = new ArrayList<>();
+        for (int start = from; start < to; start += groupSize) {
+            groups.add(new int[]{start, Math.min(to, start + groupSize)});
+        }
+        int last = groups.size() - 1;
+        if (last > 0 && groups.get(last)[1] - groups.get(last)[0] == 1) {
+            // 从前一组借一个文件，前一组至少 3 个，两组都满足 2 到 10 个
+            groups.get(last - 1)[1]--;
+            groups.get(last)[0]--;
+        }
+        return groups;
+    }
+
+    private Future<PreparedGroup> submitPrepare(Job job, int[] range) {
+        List<String> names = new ArrayList<>(job.files.subList(range[0], range[1]));
+        Path folder = Paths.get(job.folder);
+        return prepareExecutor.submit(() -> prepare(folder, names));
+    }
+
+    /**
+     * 读取并处理一组图片；无法读取的文件跳过
+     */
+    private PreparedGroup prepare(Path folder, List<String> names) {
+        PreparedGroup group = new PreparedGroup();
+        for (String name : names) {
+            Path path = folder.resolve(name);
+            try {
+                File prepared = preparePhoto(path);
+                if (prepared != null) {
+                    group.files.add(prepared);
+                    if (!prepared.toPath().equals(path)) {
+                        group.temporary.add(prepared);
+                    }
+                } else {
+                    group.skipped++;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("event=push_prepare_failed file=\"{}\" error=\"{}\"", path, e.getMessage());
+                group.skipped++;
+            }
+        }
+        return group;
+    }
+
+    /**
+     * 尺寸和大小都在限制内的 JPEG/PNG/WebP 原样发送，只读取头部；其他情况解码后缩放为 JPEG 临时文件
+     *
+     * @return 要上传的文件，无法处理时返回 null
+     */
+    File preparePhoto(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (DIRECT_EXTENSIONS.contains(extension) && size <= MAX_PHOTO_BYTES) {
+                int[] dimensions = MediaCatalog.readDimensions(path);
+                boolean unknown = dimensions[0] < 0;
+                if (unknown ? extension.equals("webp") : Math.max(dimensions[0], dimensions[1]) <= maxDimension) {
+                    return path.toFile();
+                }
+            }
+            BufferedImage source;
+            try (InputStream in = Channels.newInputStream(channel)) {
+                source = ImageIO.read(in);
+            }
+            if (source == null) {
+                return null;
+            }
+            BufferedImage scaled = MediaProbe.scaleToFit(source, maxDimension);
+            File temp = File.createTempFile("push_photo_", ".jpg");
+            try {
+                Files.write(temp.toPath(), MediaProbe.writeJpeg(scaled, 0.9f));
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                throw e;
+            }
+            return temp;
+        }
+    }
+
+    private static void discard(Future<PreparedGroup> future) {
+        if (future.cancel(true)) {
+            return;
+        }
+        try {
+            future.get().cleanup();
+        } catch (Exception ignored) {
+            // 预处理本身失败，没有需要清理的文件
+        }
+    }
+
+    private void saveQuietly(Job job) {
+        try {
+            job.save(stateDir);
+        } catch (IOException e) {
+            log.warn("event=push_job_save_failed job={} error=\"{}\"", job.id, e.getMessage());
+        }
+    }
+
+    /**
+     * 预处理完成的一组图片
+     */
+    private static final class PreparedGroup {
+        final List<File> files = new ArrayList<>();
+        final List<File> temporary = new ArrayList<>();
+        int skipped;
+
+        void cleanup() {
+            for (File file : temporary) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * 推送任务及其进度
+     */
+    public static final class Job {
+        private static final AtomicReferenceFieldUpdater<Job, Status> STATUS =
+                AtomicReferenceFieldUpdater.newUpdater(Job.class, Status.class, "status");
+
+        private final String id;
+        private final String folder;
+        private final Long chatId;
+        private final String caption;
+        private final List<String> files;
+        private final long createdAt;
+        private volatile Status status = Status.QUEUED;
+        /** 下一个要发送的文件在列表中的下标 */
+        private volatile int next;
+        private volatile int sent;
+        private volatile int skipped;
+        private volatile String error;
+        private volatile boolean cancelled;
+        private final ReentrantLock saveLock = new ReentrantLock();
+
+        Job(String id, String folder, Long chatId, String caption, List<String> files) {
+            this(id, folder, chatId, caption, files, System.currentTimeMillis());
+        }
+
+        private Job(String id, String folder, Long chatId, String caption, List<String> files, long createdAt) {
+            this.id = id;
+            this.folder = folder;
+            this.chatId = chatId;
+            this.caption = caption;
+            this.files = files;
+            this.createdAt = createdAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFolder() {
+            return folder;
+        }
+
+        public Long getChatId() {
+            return chatId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getTotal() {
+            return files.size();
+        }
+
+        public int getNext() {
+            return next;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * 状态属于 from 时原子地改为 to
+         *
+         * @return 是否修改成功
+         */
+        boolean transition(Set<Status> from, Status to) {
+            while (true) {
+                Status current = status;
+                if (!from.contains(current)) {
+                    return false;
+                }
+                if (STATUS.compareAndSet(this, current, to)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 先写临时文件再替换，中断时不会留下不完整的状态文件
+         */
+        void save(Path dir) throws IOException {
+            // 文件写入期间不使用 synchronized，避免虚拟线程固定在载体线程上
+            saveLock.lock();
+            try {
+                Files.createDirectories(dir);
+                Properties properties = new Properties();
+                properties.setProperty("folder", folder);
+                properties.setProperty("chatId", chatId.toString());
+                if (caption != null) {
+                    properties.setProperty("caption", caption);
+                }
+                // 文件名不能包含 "/"，用它分隔文件列表
+                properties.setProperty("files", String.join("/", files));
+                properties.setProperty("createdAt", Long.toString(createdAt));
+                properties.setProperty("status", status.name());
+                properties.setProperty("next", Integer.toString(next));
+                properties.setProperty("sent", Integer.toString(sent));
+                properties.setProperty("skipped", Integer.toString(skipped));
+                if (error != null) {
+                    properties.setProperty("error", error);
+                }
+                Path temp = dir.resolve(id + ".properties.tmp");
+                try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    properties.store(writer, null);
+                }
+                Files.move(temp, dir.resolve(id + ".properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                saveLock.unlock();
+            }
+        }
+
+        static Job load(Path file) throws IOException {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            String fileName = file.getFileName().toString();
+            Job job = new Job(fileName.substring(0, fileName.length() - ".properties".length()),
+                    properties.getProperty("folder"),
+                    Long.valueOf(properties.getProperty("chatId")),
+                    properties.getProperty("caption"),
+                    Arrays.asList(properties.getProperty("files", "").split("/")),
+                    Long.parseLong(properties.getProperty("createdAt", "0")));
+            job.status = Status.valueOf(properties.getProperty("status", Status.INTERRUPTED.name()));
+            job.next = Integer.parseInt(properties.getProperty("next", "0"));
+            job.sent = Integer.parseInt(properties.getProperty("sent", "0"));
+            job.skipped = Integer.parseInt(properties.getProperty("skipped", "0"));
+            job.error = properties.getProperty("error");
+            return job;
+        }
+    }
+}
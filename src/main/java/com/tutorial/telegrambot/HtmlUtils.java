@@ -26,6 +26,15 @@ public class HtmlUtils {
      * 将HTML转换为适合Telegram的格式
      */
     public static String convertForTelegram(String html) {
+        long start = RequestTiming.start();
+        try {
+            return doConvertForTelegram(html);
+        } finally {
+            RequestTiming.stop(RequestTiming.Phase.CONVERT, start);
+        }
+    }
+
+    private static String doConvertForTelegram(String html) {
         // 替换HTML标签为Telegram支持的格式
         String converted = html
             .replaceAll("<b>|<strong>", "*")      // 粗体标记
@@ -53,6 +62,15 @@ public class HtmlUtils {
      * 提取HTML中的图片URL
      */
     public static List<String> extractImageUrls(String html) {
+        long start = RequestTiming.start();
+        try {
+            return doExtractImageUrls(html);
+        } finally {
+            RequestTiming.stop(RequestTiming.Phase.PARSE, start);
+        }
+    }
+
+    private static List<String> doExtractImageUrls(String html) {
         // 更宽容的正则表达式，处理可能的属性顺序变化和空白符
         Pattern imgPattern = Pattern.compile("<img[^>]*?\\s+src\\s*=\\s*[\"']([^\"']*)[\"'][^>]*>", Pattern.CASE_INSENSITIVE);
         Matcher imgMatcher = imgPattern.matcher(html);
@@ -72,6 +90,15 @@ public class HtmlUtils {
      * 提取HTML中的视频URL
      */
     public static List<String> extractVideoUrls(String html) {
+        long start = RequestTiming.start();
+        try {
+            return doExtractVideoUrls(html);
+        } finally {
+            RequestTiming.stop(RequestTiming.Phase.PARSE, start);
+        }
+    }
+
+    private static List<String> doExtractVideoUrls(String html) {
         List<String> videoUrls = new ArrayList<>();
         
         // 匹配video标签的src属性，更宽容地处理标签内的属性顺序
@@ -0,0 +1,738 @@
+package com.tutorial.telegrambot;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 媒体文件夹目录：在内存中维护文件夹内图片的索引，列表请求只按页读取，不再扫描目录
+ *
+ * 配置的根目录在启动时建立索引，根目录下的其他文件夹在第一次请求时建立索引，根目录以外的路径（包括经符号链接指向外部的）
+ * 不建立索引；未配置根目录时不限制。之后通过 WatchService 跟踪增删改，
+ * 并定期重新扫描作为补充（NAS 等网络文件系统上目录监听不一定可靠）。
+ * 每个文件记录大小、修改时间、宽高和内容哈希（SHA-256），宽高和哈希在后台计算，
+ * 结果保存在索引文件中，重启后文件大小和修改时间不变的就不再重新读取；文件夹因数量上限被移除时一并丢弃其中文件的记录。
+ */
+@Service
+public class MediaCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaCatalog.class);
+
+    static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp", "webp");
+
+    /** 排序方式 */
+    public enum Sort {
+        NAME(Comparator.comparing((Entry e) -> e.name, String.CASE_INSENSITIVE_ORDER).thenComparing(e -> e.name)),
+        MODIFIED(Comparator.comparingLong((Entry e) -> e.modified).thenComparing(e -> e.name)),
+        SIZE(Comparator.comparingLong((Entry e) -> e.size).thenComparing(e -> e.name));
+
+        private final Comparator<Entry> comparator;
+
+        Sort(Comparator<Entry> comparator) {
+            this.comparator = comparator;
+        }
+
+        public static Sort parse(String value) {
+            return value == null || value.isBlank() ? NAME : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final ScheduledExecutorService executor;
+    private final List<Path> roots;
+    /** 根目录解析符号链接后的实际路径，用于判断请求的文件夹是否在根目录下 */
+    private final List<Path> realRoots = new ArrayList<>();
+    private final int maxFolders;
+    private final long rescanSeconds;
+    private final Path indexFile;
+
+    /** 区分不同进程生成的 ETag */
+    private final String generation = Long.toHexString(System.currentTimeMillis());
+
+    private final Map<Path, Folder> folders = new ConcurrentHashMap<>();
+
+    /** 已计算过的宽高和哈希，key 为文件绝对路径 */
+    private final Map<String, Metadata> metadataIndex = new ConcurrentHashMap<>();
+    private volatile boolean indexDirty;
+
+    private WatchService watchService;
+
+    public MediaCatalog(@Qualifier("catalogExecutor") ScheduledExecutorService executor,
+                        @Value("${bot.catalog.roots:}") String roots,
+                        @Value("${bot.catalog.max-folders:64}") int maxFolders,
+                        @Value("${bot.catalog.rescan-interval-s:300}") long rescanSeconds,
+                        @Value("${bot.catalog.index-file:catalog-index.tsv}") String indexFile) {
+        this.executor = executor;
+        this.roots = new ArrayList<>();
+        for (String root : roots.split(",")) {
+            if (!root.isBlank()) {
+                this.roots.add(Paths.get(root.trim()).toAbsolutePath().normalize());
+            }
+        }
+        for (Path root : this.roots) {
+            try {
+                realRoots.add(root.toRealPath());
+            } catch (IOException e) {
+                realRoots.add(root);
+            }
+        }
+        this.maxFolders = Math.max(1, maxFolders);
+        this.rescanSeconds = rescanSeconds;
+        this.indexFile = indexFile.isBlank() ? null : Paths.get(indexFile);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (roots.isEmpty()) {
+            log.warn("event=catalog_unrestricted message=\"bot.catalog.roots is empty, any folder can be indexed on request\"");
+        }
+        loadIndex();
+        try {
+            watchService = Paths.get(".").getFileSystem().newWatchService();
+            Thread watcher = ExecutorConfig.namedThreadFactory("catalog-watch-").newThread(this::watchLoop);
+            watcher.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("event=catalog_watch_unavailable error=\"{}\"", e.getMessage());
+        }
+        // 根目录在后台建立索引，不阻塞启动
+        for (Path root : roots) {
+            Folder folder = new Folder(root, true);
+            if (folders.putIfAbsent(root, folder) == null) {
+                executor.execute(() -> index(folder));
+            }
+        }
+        if (rescanSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::rescanAll, rescanSeconds, rescanSeconds, TimeUnit.SECONDS);
+        }
+        executor.scheduleWithFixedDelay(this::saveIndex, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // 关闭时的错误不影响退出
+            }
+        }
+        saveIndex();
+    }
+
+    /**
+     * 文件夹内所有图片的文件名，按名称排序
+     */
+    public List<String> names(String folderPath) {
+        Folder folder = folder(folderPath);
+        if (folder == null) {
+            return Collections.emptyList();
+        }
+        Entry[] view = folder.view(Sort.NAME);
+        List<String> names = new ArrayList<>(view.length);
+        for (Entry entry : view) {
+            names.add(entry.name);
+        }
+        return names;
+    }
+
+    /**
+     * 分页列出文件夹内的图片
+     *
+     * @param page       页码，从0开始
+     * @param size       每页数量
+     * @param query      文件名包含的文字，不区分大小写，可为空
+     * @param type       扩展名，可为空
+     */
+    public Page list(String folderPath, int page, int size, Sort sort, boolean descending, String query, String type) {
+        page = Math.max(0, page);
+        size = Math.max(1, size);
+        Folder folder = folder(folderPath);
+        if (folder == null) {
+            return new Page(folderPath, null, 0, page, size, Collections.emptyList());
+        }
+        long version = folder.version.get();
+        Entry[] view = folder.view(sort);
+        String needle = query == null || query.isBlank() ? null : query.toLowerCase(Locale.ROOT);
+        String extension = type == null || type.isBlank() ? null : type.toLowerCase(Locale.ROOT);
+
+        long from = (long) page * size;
+        List<Entry> items = new ArrayList<>(Math.min(size, view.length));
+        int total;
+        if (needle == null && extension == null) {
+            // 无过滤条件时直接按下标取一页
+            total = view.length;
+            for (long i = from; i < Math.min(total, from + size); i++) {
+                items.add(view[descending ? total - 1 - (int) i : (int) i]);
+            }
+        } else {
+            total = 0;
+            for (int i = 0; i < view.length; i++) {
+                Entry entry = view[descending ? view.length - 1 - i : i];
+                if ((needle != null && !entry.lowerName.contains(needle))
+                        || (extension != null && !entry.extension.equals(extension))) {
+                    continue;
+                }
+                if (total >= from && total < from + size) {
+                    items.add(entry);
+                }
+                total++;
+            }
+        }
+        return new Page(folder.dir.toString(), etag(folder, version), total, page, size, items);
+    }
+
+    /**
+     * 文件夹当前内容的 ETag，内容（包括后台计算的宽高和哈希）变化时改变；文件夹不存在时返回 null
+     */
+    public String etag(String folderPath) {
+        Folder folder = folder(folderPath);
+        return folder == null ? null : etag(folder, folder.version.get());
+    }
+
+    private String etag(Folder folder, long version) {
+        return "\"" + generation + "-" + Integer.toHexString(folder.dir.hashCode()) + "-" + version + "\"";
+    }
+
+    /**
+     * 取得文件夹的索引，不存在时建立；路径不是目录或不在根目录下时返回 null
+     */
+    private Folder folder(String folderPath) {
+        if (folderPath == null || folderPath.isBlank()) {
+            return null;
+        }
+        Path dir = Paths.get(folderPath).toAbsolutePath().normalize();
+        Folder folder = folders.get(dir);
+        if (folder == null) {
+            if (!Files.isDirectory(dir)) {
+                return null;
+            }
+            if (!isUnderRoots(dir)) {
+                log.warn("event=catalog_folder_rejected folder=\"{}\"", dir);
+                return null;
+            }
+            Folder created = new Folder(dir, false);
+            folder = folders.putIfAbsent(dir, created);
+            if (folder == null) {
+                folder = created;
+                evictIfNeeded();
+                index(folder);
+            }
+        }
+        folder.lastAccess = System.nanoTime();
+        try {
+            folder.ready.join();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return folder;
+    }
+
+    /**
+     * 按解析符号链接后的实际路径判断，防止通过 .. 或链接访问根目录以外的文件夹
+     */
+    private boolean isUnderRoots(Path dir) {
+        if (realRoots.isEmpty()) {
+            return true;
+        }
+        Path real;
+        try {
+            real = dir.toRealPath();
+        } catch (IOException e) {
+            return false;
+        }
+        for (Path root : realRoots) {
+            if (real.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void index(Folder folder) {
+        try {
+            scan(folder);
+            if (watchService != null) {
+                folder.watchKey = folder.dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            folder.ready.complete(null);
+            log.info("event=catalog_indexed folder=\"{}\" files={}", folder.dir, folder.entries.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("event=catalog_index_failed folder=\"{}\" error=\"{}\"", folder.dir, e.getMessage());
+            folders.remove(folder.dir, folder);
+            folder.ready.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 扫描整个文件夹，与现有索引比较，只更新有变化的文件
+     */
+    private void scan(Folder folder) throws IOException {
+        Set<String> seen = new HashSet<>();
+        boolean changed = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (!isImage(name)) {
+                    continue;
+                }
+                seen.add(name);
+                changed |= refresh(folder, name, path);
+            }
+        }
+        for (Iterator<String> it = folder.entries.keySet().iterator(); it.hasNext(); ) {
+            String name = it.next();
+            if (!seen.contains(name)) {
+                it.remove();
+                forgetMetadata(folder, name);
+                changed = true;
+            }
+        }
+        if (changed) {
+            folder.structureChanged();
+        }
+    }
+
+    /**
+     * 重新读取单个文件的属性
+     *
+     * @return 索引是否有变化
+     */
+    private boolean refresh(Folder folder, String name, Path path) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return remove(folder, name);
+        } catch (IOException e) {
+            log.warn("event=catalog_stat_failed file=\"{}\" error=\"{}\"", path, e.getMessage());
+            return false;
+        }
+        if (!attributes.isRegularFile()) {
+            return remove(folder, name);
+        }
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        Entry existing = folder.entries.get(name);
+        if (existing != null && existing.size == size && existing.modified == modified) {
+            return false;
+        }
+        Entry entry = new Entry(name, size, modified);
+        Metadata metadata = metadataIndex.get(path.toString());
+        boolean cached = metadata != null && metadata.size == size && metadata.modified == modified;
+        if (cached) {
+            entry.apply(metadata);
+        }
+        // 先放入索引再提交计算，计算任务据此判断文件是否仍是这个版本
+        folder.entries.put(name, entry);
+        if (!cached) {
+            executor.execute(() -> computeMetadata(folder, entry));
+        }
+        return true;
+    }
+
+    private boolean remove(Folder folder, String name) {
+        forgetMetadata(folder, name);
+        return folder.entries.remove(name) != null;
+    }
+
+    private void forgetMetadata(Folder folder, String name) {
+        if (metadataIndex.remove(folder.dir.resolve(name).toString()) != null) {
+            indexDirty = true;
+        }
+    }
+
+    /**
+     * 文件夹不再被索引时丢弃其中所有文件的元数据，元数据记录的数量随文件夹数量上限受限
+     */
+    private void forgetFolder(Folder folder) {
+        if (folder.watchKey != null) {
+            folder.watchKey.cancel();
+        }
+        for (String name : folder.entries.keySet()) {
+            forgetMetadata(folder, name);
+        }
+    }
+
+    /**
+     * 后台计算宽高和内容哈希
+     */
+    private void computeMetadata(Folder folder, Entry entry) {
+        if (folder.entries.get(entry.name) != entry) {
+            // 文件已被删除或再次修改
+            return;
+        }
+        Path path = folder.dir.resolve(entry.name);
+        try {
+            int[] dimensions = readDimensions(path);
+            Metadata metadata = new Metadata(entry.size, entry.modified, dimensions[0], dimensions[1], sha256(path));
+            entry.apply(metadata);
+            if (folders.get(folder.dir) != folder) {
+                // 计算期间文件夹已被移除
+                return;
+            }
+            metadataIndex.put(path.toString(), metadata);
+            indexDirty = true;
+            folder.version.incrementAndGet();
+        } catch (IOException e) {
+            log.debug("event=catalog_metadata_failed file=\"{}\" error=\"{}\"", path, e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Folder folder = folders.get((Path) key.watchable());
+            if (folder == null) {
+                key.cancel();
+                continue;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    executor.execute(() -> rescan(folder));
+                    continue;
+                }
+                String name = event.context().toString();
+                if (isImage(name)) {
+                    changed |= refresh(folder, name, folder.dir.resolve(name));
+                }
+            }
+            if (changed) {
+                folder.structureChanged();
+            }
+            if (!key.reset() && folders.remove(folder.dir, folder)) {
+                // 目录已被删除
+                forgetFolder(folder);
+            }
+        }
+    }
+
+    private void rescanAll() {
+        for (Folder folder : folders.values()) {
+            if (folder.ready.isDone() && !folder.ready.isCompletedExceptionally()) {
+                rescan(folder);
+            }
+        }
+    }
+
+    private void rescan(Folder folder) {
+        try {
+            scan(folder);
+        } catch (IOException e) {
+            log.warn("event=catalog_rescan_failed folder=\"{}\" error=\"{}\"", folder.dir, e.getMessage());
+        }
+    }
+
+    /**
+     * 按需建立的文件夹超过上限时，移除最久未访问的一个
+     */
+    private void evictIfNeeded() {
+        while (folders.size() > maxFolders) {
+            Folder eldest = null;
+            for (Folder folder : folders.values()) {
+                if (!folder.pinned && (eldest == null || folder.lastAccess - eldest.lastAccess < 0)) {
+                    eldest = folder;
+                }
+            }
+            if (eldest == null || !folders.remove(eldest.dir, eldest)) {
+                return;
+            }
+            forgetFolder(eldest);
+        }
+    }
+
+    private void loadIndex() {
+        if (indexFile == null || !Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                if (fields.length == 6) {
+                    metadataIndex.put(fields[0], new Metadata(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), fields[5]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("event=catalog_index_load_failed file=\"{}\" error=\"{}\"", indexFile, e.getMessage());
+        }
+    }
+
+    private void saveIndex() {
+        if (indexFile == null || !indexDirty) {
+            return;
+        }
+        indexDirty = false;
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Metadata> item : metadataIndex.entrySet()) {
+                Metadata m = item.getValue();
+                writer.write(item.getKey() + "\t" + m.size + "\t" + m.modified + "\t" + m.width + "\t" + m.height + "\t" + m.hash);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            indexDirty = true;
+            log.warn("event=catalog_index_save_failed file=\"{}\" error=\"{}\"", indexFile, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            indexDirty = true;
+            log.warn("event=catalog_index_save_failed file=\"{}\" error=\"{}\"", indexFile, e.getMessage());
+        }
+    }
+
+    static boolean isImage(String name) {
+        return IMAGE_EXTENSIONS.contains(extensionOf(name));
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 只读取图片头部获取宽高，不解码像素；不支持的格式返回 -1
+     */
+    static int[] readDimensions(Path path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            if (input == null) {
+                return new int[]{-1, -1};
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return new int[]{-1, -1};
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 一个文件夹的索引
+     */
+    private static final class Folder {
+        final Path dir;
+        final boolean pinned;
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        final CompletableFuture<Void> ready = new CompletableFuture<>();
+        /** 任何变化（包括宽高、哈希计算完成）都会增加，用于 ETag */
+        final AtomicLong version = new AtomicLong();
+        /** 各排序方式的有序视图，文件增删改时清空 */
+        volatile Map<Sort, Entry[]> views = new ConcurrentHashMap<>();
+        volatile long lastAccess = System.nanoTime();
+        volatile WatchKey watchKey;
+
+        Folder(Path dir, boolean pinned) {
+            this.dir = dir;
+            this.pinned = pinned;
+        }
+
+        void structureChanged() {
+            views = new ConcurrentHashMap<>();
+            version.incrementAndGet();
+        }
+
+        Entry[] view(Sort sort) {
+            Map<Sort, Entry[]> current = views;
+            return current.computeIfAbsent(sort, s -> {
+                Entry[] sorted = entries.values().toArray(new Entry[0]);
+                Arrays.sort(sorted, s.comparator);
+                return sorted;
+            });
+        }
+    }
+
+    /**
+     * 后台计算的文件元数据
+     */
+    private static final class Metadata {
+        final long size;
+        final long modified;
+        final int width;
+        final int height;
+        final String hash;
+
+        Metadata(long size, long modified, int width, int height, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.width = width;
+            this.height = height;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * 目录中的一个图片文件
+     */
+    public static final class Entry {
+        private final String name;
+        private final String lowerName;
+        private final String extension;
+        private final long size;
+        private final long modified;
+        private volatile int width = -1;
+        private volatile int height = -1;
+        private volatile String hash;
+
+        Entry(String name, long size, long modified) {
+            this.name = name;
+            this.lowerName = name.toLowerCase(Locale.ROOT);
+            this.extension = extensionOf(name);
+            this.size = size;
+            this.modified = modified;
+        }
+
+        void apply(Metadata metadata) {
+            this.width = metadata.width;
+            this.height = metadata.height;
+            this.hash = metadata.hash;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /** 修改时间，毫秒时间戳 */
+        public long getModified() {
+            return modified;
+        }
+
+        /** 宽度，未计算或无法识别时为 -1 */
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /** 内容的 SHA-256，未计算时为 null */
+        public String getHash() {
+            return hash;
+        }
+    }
+
+    /**
+     * 一页列表结果
+     */
+    public static final class Page {
+        private final String folder;
+        private final String etag;
+        private final int total;
+        private final int page;
+        private final int size;
+        private final List<Entry> items;
+
+        Page(String folder, String etag, int total, int page, int size, List<Entry> items) {
+            this.folder = folder;
+            this.etag = etag;
+            this.total = total;
+            this.page = page;
+            this.size = size;
+            this.items = items;
+        }
+
+        public String getFolder() {
+            return folder;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public List<Entry> getItems() {
+            return items;
+        }
+
+        /** 生成这一页时的 ETag，不输出到响应体 */
+        String etag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.tutorial.telegrambot;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * 视频容器头部解析（MP4/MOV、WebM/MKV），只读取元数据，不解码视频帧
+ *
+ * 读取宽高、时长，判断MP4的moov是否位于mdat之前（可边下边播）；
+ * MP4中内嵌的封面图（udta/meta/ilst/covr）会缩放为Telegram要求的缩略图。
+ */
+public class MediaProbe {
+
+    /** moov 读入内存的上限 */
+    private static final int MAX_MOOV_SIZE = 32 * 1024 * 1024;
+    /** WebM 头部读入内存的上限，Info 和 Tracks 通常位于开头 */
+    private static final int WEBM_HEAD_SIZE = 2 * 1024 * 1024;
+
+    /** Telegram 缩略图要求：JPEG，不超过320x320，小于200KB */
+    private static final int THUMB_MAX_SIDE = 320;
+    private static final int THUMB_MAX_BYTES = 200 * 1024;
+
+    /**
+     * 解析视频文件，无法识别或解析失败时返回 {@link VideoInfo#UNKNOWN}
+     */
+    public static VideoInfo probe(File file) {
+        long start = RequestTiming.start();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] magic = new byte[8];
+            if (raf.length() < 8) {
+                return VideoInfo.UNKNOWN;
+            }
+            raf.readFully(magic);
+            if ((magic[0] & 0xFF) == 0x1A && (magic[1] & 0xFF) == 0x45 && (magic[2] & 0xFF) == 0xDF && (magic[3] & 0xFF) == 0xA3) {
+                return probeWebm(raf);
+            }
+            return probeMp4(raf);
+        } catch (IOException | RuntimeException e) {
+            return VideoInfo.UNKNOWN;
+        } finally {
+            RequestTiming.stop(RequestTiming.Phase.PROBE, start);
+        }
+    }
+
+    // ---------------------------------------------------------------- MP4
+
+    private static VideoInfo probeMp4(RandomAccessFile raf) throws IOException {
+        long length = raf.length();
+        long pos = 0;
+        long moovPos = -1;
+        long moovSize = 0;
+        long mdatPos = -1;
+        byte[] header = new byte[16];
+
+        // 遍历顶层box，只记录位置，不读取内容
+        while (pos + 8 <= length && (moovPos < 0 || mdatPos < 0)) {
+            raf.seek(pos);
+            raf.readFully(header, 0, 8);
+            long size = readUInt32(header, 0);
+            int headerSize = 8;
+            if (size == 1) {
+                raf.readFully(header, 8, 8);
+                size = ByteBuffer.wrap(header, 8, 8).getLong();
+                headerSize = 16;
+            } else if (size == 0) {
+                size = length - pos;
+            }
+            if (size < headerSize) {
+                break;
+            }
+            String type = new String(header, 4, 4, java.nio.charset.StandardCharsets.ISO_8859_1);
+            if ("moov".equals(type)) {
+                moovPos = pos + headerSize;
+                moovSize = size - headerSize;
+            } else if ("mdat".equals(type)) {
+                mdatPos = pos;
+            } else if (pos == 0 && !isMp4LeadingBox(type)) {
+                return VideoInfo.UNKNOWN;
+            }
+            pos += size;
+        }
+        if (moovPos < 0 || moovSize > MAX_MOOV_SIZE) {
+            return VideoInfo.UNKNOWN;
+        }
+
+        byte[] moov = new byte[(int) moovSize];
+        raf.seek(moovPos);
+        raf.readFully(moov);
+
+        Mp4Info info = new Mp4Info();
+        parseMp4Boxes(ByteBuffer.wrap(moov), 0, moov.length, info, null);
+
+        int duration = info.timescale > 0 ? (int) Math.round((double) info.duration / info.timescale) : 0;
+        boolean streaming = mdatPos < 0 || moovPos < mdatPos;
+        return new VideoInfo(info.width, info.height, duration, streaming, toThumbnail(info.cover));
+    }
+
+    private static boolean isMp4LeadingBox(String type) {
+        switch (type) {
+            case "ftyp":
+            case "moov":
+            case "mdat":
+            case "wide":
+            case "free":
+            case "skip":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static final class Mp4Info {
+        long timescale;
+        long duration;
+        int width;
+        int height;
+        byte[] cover;
+    }
+
+    /** 当前 trak 的临时状态 */
+    private static final class Mp4Track {
+        String handler;
+        int width;
+        int height;
+    }
+
+    private static void parseMp4Boxes(ByteBuffer buf, int start, int end, Mp4Info info, Mp4Track track) {
+        int pos = start;
+        while (pos + 8 <= end) {
+            long size = buf.getInt(pos) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (size == 1) {
+                size = buf.getLong(pos + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerSize || pos + size > end) {
+                return;
+            }
+            String type = fourCc(buf, pos + 4);
+            int body = pos + headerSize;
+            int boxEnd = (int) (pos + size);
+
+            switch (type) {
+                case "mvhd":
+                    parseMvhd(buf, body, info);
+                    break;
+                case "trak": {
+                    Mp4Track child = new Mp4Track();
+                    parseMp4Boxes(buf, body, boxEnd, info, child);
+                    if ("vide".equals(child.handler) && info.width == 0) {
+                        info.width = child.width;
+                        info.height = child.height;
+                    }
+                    break;
+                }
+                case "tkhd":
+                    if (track != null) {
+                        parseTkhd(buf, body, track);
+                    }
+                    break;
+                case "hdlr":
+                    if (track != null) {
+                        track.handler = fourCc(buf, body + 8);
+                    }
+                    break;
+                case "mdia":
+                case "udta":
+                case "ilst":
+                case "covr":
+                    parseMp4Boxes(buf, body, boxEnd, info, track);
+                    break;
+                case "meta":
+                    // meta 是 full box，子box前有4字节 version/flags
+                    parseMp4Boxes(buf, body + 4, boxEnd, info, track);
+                    break;
+                case "data":
+                    // covr/data：4字节类型（13=JPEG，14=PNG）+ 4字节locale，之后为图片数据
+                    if (info.cover == null && boxEnd - body > 8) {
+                        int dataType = buf.getInt(body) & 0x00FFFFFF;
+                        if (dataType == 13 || dataType == 14) {
+                            byte[] image = new byte[boxEnd - body - 8];
+                            buf.get(body + 8, image);
+                            info.cover = image;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            pos = boxEnd;
+        }
+    }
+
+    private static void parseMvhd(ByteBuffer buf, int body, Mp4Info info) {
+        int version = buf.get(body) & 0xFF;
+        if (version == 1) {
+            info.timescale = buf.getInt(body + 20) & 0xFFFFFFFFL;
+            info.duration = buf.getLong(body + 24);
+        } else {
+            info.timescale = buf.getInt(body + 12) & 0xFFFFFFFFL;
+            info.duration = buf.getInt(body + 16) & 0xFFFFFFFFL;
+        }
+    }
+
+    private static void parseTkhd(ByteBuffer buf, int body, Mp4Track track) {
+        int version = buf.get(body) & 0xFF;
+        // version/flags(4) + 时间与ID字段(v0: 20, v1: 32) + reserved(8) + layer/group/volume/reserved(8)
+        int matrix = body + 4 + (version == 1 ? 32 : 20) + 16;
+        int a = buf.getInt(matrix);
+        int d = buf.getInt(matrix + 16);
+        int width = buf.getInt(matrix + 36) >>> 16;
+        int height = buf.getInt(matrix + 40) >>> 16;
+        // 旋转90/270度时交换宽高
+        if (a == 0 && d == 0) {
+            track.width = height;
+            track.height = width;
+        } else {
+            track.width = width;
+            track.height = height;
+        }
+    }
+
+    private static String fourCc(ByteBuffer buf, int pos) {
+        return new String(new byte[]{buf.get(pos), buf.get(pos + 1), buf.get(pos + 2), buf.get(pos + 3)},
+                java.nio.charset.StandardCharsets.ISO_8859_1);
+    }
+
+    private static long readUInt32(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFFL) << 24) | ((bytes[offset + 1] & 0xFFL) << 16)
+                | ((bytes[offset + 2] & 0xFFL) << 8) | (bytes[offset + 3] & 0xFFL);
+    }
+
+    // ---------------------------------------------------------------- WebM
+
+    private static final int EBML_SEGMENT = 0x18538067;
+    private static final int EBML_INFO = 0x1549A966;
+    private static final int EBML_TRACKS = 0x1654AE6B;
+    private static final int EBML_TRACK_ENTRY = 0xAE;
+    private static final int EBML_VIDEO = 0xE0;
+    private static final int EBML_CLUSTER = 0x1F43B675;
+    private static final int EBML_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int EBML_DURATION = 0x4489;
+    private static final int EBML_PIXEL_WIDTH = 0xB0;
+    private static final int EBML_PIXEL_HEIGHT = 0xBA;
+
+    private static final class WebmInfo {
+        long timecodeScale = 1_000_000L;
+        double duration;
+        int width;
+        int height;
+        boolean reachedCluster;
+    }
+
+    private static VideoInfo probeWebm(RandomAccessFile raf) throws IOException {
+        int headSize = (int) Math.min(raf.length(), WEBM_HEAD_SIZE);
+        byte[] head = new byte[headSize];
+        raf.seek(0);
+        raf.readFully(head);
+
+        WebmInfo info = new WebmInfo();
+        parseEbml(ByteBuffer.wrap(head), 0, headSize, info);
+
+        int duration = (int) Math.round(info.duration * info.timecodeScale / 1_000_000_000d);
+        // WebM 的元数据位于开头，可以边下边播，但Telegram只对MP4启用流式播放
+        return new VideoInfo(info.width, info.height, duration, false, null);
+    }
+
+    private static void parseEbml(ByteBuffer buf, int start, int end, WebmInfo info) {
+        int pos = start;
+        while (pos < end && !info.reachedCluster) {
+            int idLength = vintLength(buf.get(pos));
+            if (idLength == 0 || idLength > 4 || pos + idLength > end) {
+                return;
+            }
+            int id = 0;
+            for (int i = 0; i < idLength; i++) {
+                id = (id << 8) | (buf.get(pos + i) & 0xFF);
+            }
+            pos += idLength;
+            if (pos >= end) {
+                return;
+            }
+            int sizeLength = vintLength(buf.get(pos));
+            if (sizeLength == 0 || pos + sizeLength > end) {
+                return;
+            }
+            long size = buf.get(pos) & (0xFF >> sizeLength);
+            boolean unknownSize = size == (0xFF >> sizeLength);
+            for (int i = 1; i < sizeLength; i++) {
+                int b = buf.get(pos + i) & 0xFF;
+                unknownSize &= b == 0xFF;
+                size = (size << 8) | b;
+            }
+            pos += sizeLength;
+            int elementEnd = unknownSize || pos + size > end ? end : (int) (pos + size);
+
+            switch (id) {
+                case EBML_CLUSTER:
+                    info.reachedCluster = true;
+                    return;
+                case EBML_SEGMENT:
+                case EBML_INFO:
+                case EBML_TRACKS:
+                case EBML_TRACK_ENTRY:
+                case EBML_VIDEO:
+                    parseEbml(buf, pos, elementEnd, info);
+                    break;
+                case EBML_TIMECODE_SCALE:
+                    info.timecodeScale = readUInt(buf, pos, elementEnd - pos);
+                    break;
+                case EBML_DURATION:
+                    info.duration = elementEnd - pos == 4 ? buf.getFloat(pos) : buf.getDouble(pos);
+                    break;
+                case EBML_PIXEL_WIDTH:
+                    if (info.width == 0) {
+                        info.width = (int) readUInt(buf, pos, elementEnd - pos);
+                    }
+                    break;
+                case EBML_PIXEL_HEIGHT:
+                    if (info.height == 0) {
+                        info.height = (int) readUInt(buf, pos, elementEnd - pos);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            pos = elementEnd;
+        }
+    }
+
+    private static int vintLength(byte first) {
+        int b = first & 0xFF;
+        return b == 0 ? 0 : Integer.numberOfLeadingZeros(b) - 23;
+    }
+
+    private static long readUInt(ByteBuffer buf, int pos, int length) {
+        long value = 0;
+        for (int i = 0; i < length && i < 8; i++) {
+            value = (value << 8) | (buf.get(pos + i) & 0xFF);
+        }
+        return value;
+    }
+
+    // ---------------------------------------------------------------- 缩略图
+
+    /**
+     * 把封面图缩放为不超过320x320、200KB的JPEG；无法处理时返回null
+     */
+    static byte[] toThumbnail(byte[] image) {
+        if (image == null) {
+            return null;
+        }
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+            if (source == null) {
+                return null;
+            }
+            BufferedImage thumb = scaleToFit(source, THUMB_MAX_SIDE);
+            for (float quality = 0.85f; quality > 0.3f; quality -= 0.15f) {
+                byte[] jpeg = writeJpeg(thumb, quality);
+                if (jpeg.length <= THUMB_MAX_BYTES) {
+                    return jpeg;
+                }
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 等比缩放到最长边不超过 maxSide（不放大），输出不带透明通道的 RGB 图像
+     */
+    static BufferedImage scaleToFit(BufferedImage source, int maxSide) {
+        double scale = Math.min(1d, (double) maxSide / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            // 透明区域填充为白色，JPEG 不支持透明
+            g.setColor(java.awt.Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    static byte[] writeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
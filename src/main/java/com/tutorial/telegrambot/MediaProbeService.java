@@ -0,0 +1,56 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 在线程池中解析视频元数据，与说明文字的转换等工作并行进行
+ *
+ * 解析耗时在工作线程上测得，由 {@link #await} 在请求线程上计入 PROBE 阶段。
+ */
+@Service
+public class MediaProbeService {
+
+    private final ExecutorService probeExecutor;
+
+    public MediaProbeService(@Qualifier("mediaProbeExecutor") ExecutorService probeExecutor) {
+        this.probeExecutor = probeExecutor;
+    }
+
+    public CompletableFuture<Probed> probeAsync(File videoFile) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            VideoInfo info = MediaProbe.probe(videoFile);
+            return new Probed(info, System.nanoTime() - start);
+        }, probeExecutor).exceptionally(e -> new Probed(VideoInfo.UNKNOWN, 0L));
+    }
+
+    /**
+     * 等待解析完成，并把解析耗时计入当前请求的 PROBE 阶段；结果为 null（未解析）时返回 null
+     */
+    public static VideoInfo await(CompletableFuture<Probed> future) {
+        Probed probed = future.join();
+        if (probed == null) {
+            return null;
+        }
+        RequestTiming.add(RequestTiming.Phase.PROBE, probed.nanos);
+        return probed.info;
+    }
+
+    /**
+     * 解析结果及在工作线程上的耗时
+     */
+    public static final class Probed {
+        private final VideoInfo info;
+        private final long nanos;
+
+        Probed(VideoInfo info, long nanos) {
+            this.info = info;
+            this.nanos = nanos;
+        }
+    }
+}
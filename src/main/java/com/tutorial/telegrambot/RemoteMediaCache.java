@@ -0,0 +1,760 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 外部图片和视频的本地缓存
+ *
+ * 默认（direct）仍把 URL 交给 Telegram 获取。proxy 模式下由本服务下载一次，存入按总大小限制的 LRU 磁盘缓存，
+ * 再作为附件上传；发送成功后记下 file_id，之后同一 URL 直接使用 file_id，不再下载也不再上传。
+ * fallback 模式先交给 Telegram 获取，Telegram 无法获取（400）时改为下载后上传。
+ * 超过 max-age 的缓存用 ETag / Last-Modified 条件请求重新验证，源站不可用时继续使用旧的缓存。
+ * 同一 URL 的并发请求只下载一次。
+ * 只下载公网地址（包括重定向的每一跳），回环、链路本地、私有网段的主机需在 allowed-hosts 中列出，
+ * 配置了 allowed-hosts 时只允许其中的主机。
+ */
+@Service
+public class RemoteMediaCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteMediaCache.class);
+
+    private static final String INDEX_FILE = "index.tsv";
+    private static final String NONE = "-";
+    private static final int MAX_REDIRECTS = 5;
+
+    public enum Mode {
+        DIRECT, FALLBACK, PROXY;
+
+        static Mode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return DIRECT;
+            }
+        }
+    }
+
+    /** file_id 按媒体类型分开记录，图片的 file_id 不能用于发送视频 */
+    public enum Kind {
+        PHOTO, VIDEO
+    }
+
+    private final Mode mode;
+    private final Path dir;
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final long maxAgeMillis;
+    private final Duration readTimeout;
+    private final Set<String> allowedHosts = new HashSet<>();
+    private final HttpClient client;
+
+    /** 访问顺序的 LRU，只在持有锁时访问 */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long totalBytes;
+    private boolean indexDirty;
+    private long lastIndexSave;
+    /** 写索引文件时持有，保证写入顺序与快照顺序一致；不在持有 lock 时获取 */
+    private final ReentrantLock indexWriteLock = new ReentrantLock();
+
+    /** 正在下载的 URL，同一 URL 的其他请求等待同一次下载 */
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter fileIdHits;
+    private final Counter revalidated;
+    private final Counter misses;
+    private final Counter stale;
+
+    public RemoteMediaCache(MeterRegistry meterRegistry,
+                            @Value("${bot.remote.mode:direct}") String mode,
+                            @Value("${bot.remote.cache-dir:remote-cache}") String dir,
+                            @Value("${bot.remote.max-bytes:1073741824}") long maxBytes,
+                            @Value("${bot.remote.max-file-bytes:52428800}") long maxFileBytes,
+                            @Value("${bot.remote.max-age-s:300}") long maxAgeSeconds,
+                            @Value("${bot.remote.connect-timeout-ms:5000}") long connectTimeoutMillis,
+                            @Value("${bot.remote.read-timeout-ms:30000}") long readTimeoutMillis,
+                            @Value("${bot.remote.allowed-hosts:}") String allowedHosts) {
+        this.mode = Mode.parse(mode);
+        this.dir = Paths.get(dir);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.maxFileBytes = Math.max(1, maxFileBytes);
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(Math.max(0, maxAgeSeconds));
+        this.readTimeout = Duration.ofMillis(readTimeoutMillis);
+        for (String host : allowedHosts.split(",")) {
+            if (!host.isBlank()) {
+                this.allowedHosts.add(host.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        // 重定向由 load 逐跳检查地址后再跟随
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        Gauge.builder("telegram.remote.cache.bytes", this, RemoteMediaCache::getTotalBytes)
+                .description("Bytes of remote media held in the local cache")
+                .register(meterRegistry);
+        this.hits = cacheCounter(meterRegistry, "hit");
+        this.fileIdHits = cacheCounter(meterRegistry, "file_id");
+        this.revalidated = cacheCounter(meterRegistry, "revalidated");
+        this.misses = cacheCounter(meterRegistry, "miss");
+        this.stale = cacheCounter(meterRegistry, "stale");
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telegram.remote.cache")
+                .description("Remote media cache lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 是否由本服务处理这个 URL；direct 模式或非 http(s) 地址返回 false
+     */
+    public boolean handles(String url) {
+        return mode != Mode.DIRECT && url != null && (url.startsWith("http://") || url.startsWith("https://"));
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (mode == Mode.DIRECT) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            log.warn("event=remote_cache_dir_failed dir=\"{}\" error=\"{}\"", dir, e.getMessage());
+            return;
+        }
+        loadIndex();
+    }
+
+    @PreDestroy
+    public void stop() {
+        saveIndex();
+    }
+
+    /**
+     * 取得 URL 对应的缓存，必要时下载或重新验证；返回的租约关闭前文件不会被淘汰
+     *
+     * 已有 file_id 且未过期时不访问源站。
+     *
+     * @throws IOException 下载失败且没有旧的缓存，文件超过大小上限，或地址不允许访问
+     */
+    public Lease acquire(String url, Kind kind) throws IOException {
+        Entry entry = lookup(url);
+        if (entry != null && entry.fileId(kind) != null && isFresh(entry)) {
+            fileIdHits.increment();
+            return lease(entry, url);
+        }
+        if (entry != null && isFresh(entry) && Files.isRegularFile(entry.path)) {
+            hits.increment();
+            return lease(entry, url);
+        }
+
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loading.putIfAbsent(url, mine);
+        if (existing != null) {
+            return lease(join(existing), url);
+        }
+        try {
+            Entry loaded = load(url, entry);
+            mine.complete(loaded);
+            return lease(loaded, url);
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(url, mine);
+        }
+    }
+
+    private static Entry join(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Entry load(String url, Entry cached) throws IOException {
+        boolean conditional = cached != null && Files.isRegularFile(cached.path);
+        long start = System.nanoTime();
+        Path temp = null;
+        try {
+            HttpResponse<InputStream> response = fetch(URI.create(url), conditional ? cached : null);
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 304 && conditional) {
+                    revalidated.increment();
+                    return validated(cached);
+                }
+                if (response.statusCode() != 200) {
+                    throw new IOException("HTTP " + response.statusCode());
+                }
+                long declared = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+                if (declared > maxFileBytes) {
+                    throw new IOException("文件过大: " + declared + " 字节");
+                }
+                temp = Files.createTempFile(dir, "download_", ".tmp");
+                long size = copyLimited(body, temp);
+                String contentType = response.headers().firstValue("Content-Type").orElse(null);
+                Entry entry = new Entry(url, dir.resolve(fileName(url, contentType)), size,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null),
+                        contentType, System.currentTimeMillis());
+                Files.move(temp, entry.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                temp = null;
+                misses.increment();
+                log.info("event=remote_media_fetched url=\"{}\" bytes={} duration_ms={}",
+                        url, size, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return store(entry);
+            }
+        } catch (IOException e) {
+            if (cached != null && Files.isRegularFile(cached.path)) {
+                // 源站不可用时继续使用旧的缓存，下次请求再验证
+                stale.increment();
+                log.warn("event=remote_media_stale url=\"{}\" error=\"{}\"", url, e.getMessage());
+                return cached;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("下载被中断: " + url, e);
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * 检查地址后发出请求，重定向时检查新地址再跟随
+     *
+     * @param cached 不为 null 时带上条件请求头
+     */
+    private HttpResponse<InputStream> fetch(URI uri, Entry cached) throws IOException, InterruptedException {
+        for (int redirects = 0; ; redirects++) {
+            checkAllowed(uri);
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(readTimeout).GET();
+            if (cached != null && cached.etag != null) {
+                request.header("If-None-Match", cached.etag);
+            }
+            if (cached != null && cached.lastModified != null) {
+                request.header("If-Modified-Since", cached.lastModified);
+            }
+            HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            int status = response.statusCode();
+            String location = response.headers().firstValue("Location").orElse(null);
+            if (status < 300 || status >= 400 || status == 304 || location == null) {
+                return response;
+            }
+            response.body().close();
+            if (redirects >= MAX_REDIRECTS) {
+                throw new IOException("重定向次数过多: " + uri);
+            }
+            try {
+                uri = uri.resolve(location);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("重定向地址无效: " + location, e);
+            }
+        }
+    }
+
+    /**
+     * 防止借助本服务访问内网（SSRF）：主机解析出的地址必须都是公网地址，除非主机列在 allowed-hosts 中。
+     * 检查和连接之间 DNS 结果可能变化，需要严格限制时配置 allowed-hosts
+     */
+    private void checkAllowed(URI uri) throws IOException {
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+        String host = uri.getHost();
+        if (!scheme.equals("http") && !scheme.equals("https") || host == null) {
+            throw new IOException("不支持的地址: " + uri);
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        if (allowedHosts.contains(host)) {
+            return;
+        }
+        if (!allowedHosts.isEmpty()) {
+            throw new IOException("主机不在 bot.remote.allowed-hosts 中: " + host);
+        }
+        for (InetAddress address : InetAddress.getAllByName(host)) {
+            if (!isPublic(address)) {
+                throw new IOException("不允许访问内网地址: " + host + " (" + address.getHostAddress() + ")");
+            }
+        }
+    }
+
+    /**
+     * 排除本机、回环、链路本地（含云服务的元数据地址 169.254.169.254）、私有网段、运营商级 NAT、组播和 IPv6 唯一本地地址
+     */
+    static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            int first = bytes[0] & 0xFF;
+            int second = bytes[1] & 0xFF;
+            return first != 0 && !(first == 100 && (second & 0xC0) == 64);
+        }
+        return (bytes[0] & 0xFE) != 0xFC;
+    }
+
+    private long copyLimited(InputStream in, Path target) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                total += read;
+                if (total > maxFileBytes) {
+                    throw new IOException("文件超过 " + maxFileBytes + " 字节");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return total;
+    }
+
+    private Entry lookup(String url) {
+        lock.lock();
+        try {
+            return entries.get(url);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.validatedAt < maxAgeMillis;
+    }
+
+    private Entry validated(Entry entry) {
+        lock.lock();
+        try {
+            entry.validatedAt = System.currentTimeMillis();
+            indexDirty = true;
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 加入新下载的文件；内容变化后原来的 file_id 不再有效，随旧记录一起丢弃
+     */
+    private Entry store(Entry entry) {
+        lock.lock();
+        try {
+            Entry previous = entries.put(entry.url, entry);
+            if (previous != null) {
+                totalBytes -= previous.size;
+                // 文件名随内容类型变化时删除旧文件；仍在使用的由租约关闭时删除
+                if (previous.pins == 0 && !previous.path.equals(entry.path)) {
+                    previous.path.toFile().delete();
+                }
+            }
+            totalBytes += entry.size;
+            indexDirty = true;
+            evict(entry);
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从最久未使用的开始删除，直到总大小不超过上限；正在发送的文件不删除
+     */
+    private void evict(Entry keep) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            if (eldest == keep || eldest.pins > 0) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.size;
+            try {
+                Files.deleteIfExists(eldest.path);
+            } catch (IOException e) {
+                log.warn("event=remote_cache_evict_failed file=\"{}\" error=\"{}\"", eldest.path, e.getMessage());
+            }
+        }
+    }
+
+    private Lease lease(Entry entry, String url) {
+        lock.lock();
+        try {
+            entry.pins++;
+            return new Lease(entry, url);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 未过期的缓存中记录的 file_id，不访问源站
+     */
+    String cachedFileId(String url, Kind kind) {
+        Entry entry = lookup(url);
+        return entry != null && isFresh(entry) ? entry.fileId(kind) : null;
+    }
+
+    /**
+     * 发送后记下 file_id
+     */
+    void remember(String url, Kind kind, Message message) {
+        String fileId = fileIdOf(message, kind);
+        if (fileId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry entry = entries.get(url);
+            if (entry != null && !fileId.equals(entry.fileId(kind))) {
+                entry.setFileId(kind, fileId);
+                indexDirty = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * file_id 被 Telegram 拒绝时丢弃，下次重新上传文件
+     */
+    void forget(String url, Kind kind) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(url);
+            if (entry != null) {
+                entry.setFileId(kind, null);
+                indexDirty = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static String fileIdOf(Message message, Kind kind) {
+        if (message == null) {
+            return null;
+        }
+        if (kind == Kind.VIDEO) {
+            return message.getVideo() != null ? message.getVideo().getFileId() : null;
+        }
+        if (!message.hasPhoto()) {
+            return null;
+        }
+        List<PhotoSize> sizes = message.getPhoto();
+        return sizes.get(sizes.size() - 1).getFileId();
+    }
+
+    private static String fileName(String url, String contentType) {
+        return sha256(url) + extensionOf(url, contentType);
+    }
+
+    private static String extensionOf(String url, String contentType) {
+        if (contentType != null) {
+            String type = contentType.toLowerCase(Locale.ROOT);
+            if (type.startsWith("image/jpeg")) return ".jpg";
+            if (type.startsWith("image/png")) return ".png";
+            if (type.startsWith("image/gif")) return ".gif";
+            if (type.startsWith("image/webp")) return ".webp";
+            if (type.startsWith("video/mp4")) return ".mp4";
+            if (type.startsWith("video/webm")) return ".webm";
+            if (type.startsWith("video/quicktime")) return ".mov";
+        }
+        String path = URI.create(url).getPath();
+        int dot = path != null ? path.lastIndexOf('.') : -1;
+        if (dot >= 0 && path.length() - dot <= 5 && path.indexOf('/', dot) < 0) {
+            return path.substring(dot).toLowerCase(Locale.ROOT);
+        }
+        return ".bin";
+    }
+
+    private static String sha256(String value) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private void loadIndex() {
+        Path indexFile = dir.resolve(INDEX_FILE);
+        Set<Path> known = new HashSet<>();
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+                lock.lock();
+                try {
+                    for (String line : lines) {
+                        String[] f = line.split("\t");
+                        if (f.length != 9) {
+                            continue;
+                        }
+                        Entry entry = new Entry(f[0], dir.resolve(f[1]), Long.parseLong(f[2]), field(f[3]), field(f[4]),
+                                field(f[5]), Long.parseLong(f[6]));
+                        entry.photoFileId = field(f[7]);
+                        entry.videoFileId = field(f[8]);
+                        if (Files.isRegularFile(entry.path)) {
+                            entries.put(entry.url, entry);
+                            totalBytes += entry.size;
+                            known.add(entry.path);
+                        }
+                    }
+                    evict(null);
+                } finally {
+                    lock.unlock();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("event=remote_cache_index_load_failed file=\"{}\" error=\"{}\"", indexFile, e.getMessage());
+            }
+        }
+        // 删除索引中没有记录的文件（上次下载到一半或未保存索引）
+        List<Path> orphans = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                if (!file.getFileName().toString().equals(INDEX_FILE) && !known.contains(file)) {
+                    orphans.add(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("event=remote_cache_scan_failed dir=\"{}\" error=\"{}\"", dir, e.getMessage());
+        }
+        for (Path orphan : orphans) {
+            orphan.toFile().delete();
+        }
+        log.info("event=remote_cache_loaded mode={} entries={} bytes={}", mode, entries.size(), totalBytes);
+    }
+
+    /**
+     * 在锁内取得索引的快照，在锁外写文件，写磁盘时不阻塞其他请求；调用方不能持有 lock
+     */
+    private void saveIndex() {
+        indexWriteLock.lock();
+        try {
+            List<String> lines;
+            lock.lock();
+            try {
+                if (!indexDirty || !Files.isDirectory(dir)) {
+                    return;
+                }
+                lines = new ArrayList<>(entries.size());
+                for (Entry e : entries.values()) {
+                    lines.add(e.url + "\t" + e.path.getFileName() + "\t" + e.size + "\t" + text(e.etag) + "\t"
+                            + text(e.lastModified) + "\t" + text(e.contentType) + "\t" + e.validatedAt + "\t"
+                            + text(e.photoFileId) + "\t" + text(e.videoFileId));
+                }
+                indexDirty = false;
+            } finally {
+                lock.unlock();
+            }
+            if (!writeIndex(lines)) {
+                lock.lock();
+                try {
+                    indexDirty = true;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            indexWriteLock.unlock();
+        }
+    }
+
+    private boolean writeIndex(List<String> lines) {
+        Path indexFile = dir.resolve(INDEX_FILE);
+        Path temp = dir.resolve(INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            log.warn("event=remote_cache_index_save_failed file=\"{}\" error=\"{}\"", indexFile, e.getMessage());
+            return false;
+        }
+        try {
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            log.warn("event=remote_cache_index_save_failed file=\"{}\" error=\"{}\"", indexFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private static String text(String value) {
+        return value == null || value.isEmpty() ? NONE : value.replace('\t', ' ');
+    }
+
+    private static String field(String value) {
+        return NONE.equals(value) ? null : value;
+    }
+
+    /**
+     * 缓存的一个 URL
+     */
+    private static final class Entry {
+        final String url;
+        final Path path;
+        final long size;
+        final String etag;
+        final String lastModified;
+        final String contentType;
+        volatile long validatedAt;
+        volatile String photoFileId;
+        volatile String videoFileId;
+        /** 正在使用的租约数，只在持有锁时修改 */
+        int pins;
+
+        Entry(String url, Path path, long size, String etag, String lastModified, String contentType, long validatedAt) {
+            this.url = url;
+            this.path = path;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.validatedAt = validatedAt;
+        }
+
+        String fileId(Kind kind) {
+            return kind == Kind.VIDEO ? videoFileId : photoFileId;
+        }
+
+        void setFileId(Kind kind, String fileId) {
+            if (kind == Kind.VIDEO) {
+                videoFileId = fileId;
+            } else {
+                photoFileId = fileId;
+            }
+        }
+    }
+
+    /**
+     * 一次发送对缓存文件的使用，关闭前文件不会被淘汰
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final String url;
+        private boolean closed;
+
+        private Lease(Entry entry, String url) {
+            this.entry = entry;
+            this.url = url;
+        }
+
+        public File getFile() {
+            return entry.path.toFile();
+        }
+
+        public String getFileId(Kind kind) {
+            return entry.fileId(kind);
+        }
+
+        @Override
+        public void close() {
+            boolean save;
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                entry.pins--;
+                Entry current = entries.get(url);
+                if (current != entry && entry.pins == 0 && (current == null || !current.path.equals(entry.path))) {
+                    // 使用期间已被淘汰或被新下载的内容替换
+                    entry.path.toFile().delete();
+                }
+                evict(null);
+                save = indexSaveDue();
+            } finally {
+                lock.unlock();
+            }
+            if (save) {
+                saveIndex();
+            }
+        }
+    }
+
+    /**
+     * 索引最多每分钟写一次，停止服务时再写一次；调用方需持有锁，到期时由调用方在释放锁后调用 saveIndex
+     */
+    private boolean indexSaveDue() {
+        long now = System.currentTimeMillis();
+        if (indexDirty && now - lastIndexSave >= TimeUnit.MINUTES.toMillis(1)) {
+            lastIndexSave = now;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,427 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 解压带 Content-Encoding 的请求体（gzip、deflate，classpath 上有 zstd-jni 时也支持 zstd）
+ *
+ * 请求体在控制器读取时边读边解压，不会先把解压后的内容整体放进内存；
+ * 解压后超过 bot.ingest.max-inflated-bytes 时停止读取并返回 413，防止压缩炸弹。
+ * 表单和 multipart 请求由容器直接解析原始请求体，带 Content-Encoding 时返回 415。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestDecompressionFilter.class);
+
+    private static final String ZSTD_INPUT_STREAM = "com.github.luben.zstd.ZstdInputStream";
+
+    private final boolean enabled;
+    private final long maxInflatedBytes;
+    private final MeterRegistry meterRegistry;
+
+    /** 支持的编码及对应的解码流，按 Accept-Encoding 响应头的顺序 */
+    private final Map<String, Decoder> decoders = new LinkedHashMap<>();
+    private final String acceptEncoding;
+
+    private final Counter rejected;
+    private final Counter oversized;
+
+    public RequestDecompressionFilter(MeterRegistry meterRegistry,
+                                      @Value("${bot.ingest.enabled:true}") boolean enabled,
+                                      @Value("${bot.ingest.max-inflated-bytes:52428800}") long maxInflatedBytes) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxInflatedBytes = Math.max(1, maxInflatedBytes);
+
+        decoders.put("gzip", in -> new GZIPInputStream(in, 8192));
+        decoders.put("x-gzip", decoders.get("gzip"));
+        decoders.put("deflate", in -> new InflaterInputStream(in));
+        Decoder zstd = zstdDecoder();
+        if (zstd != null) {
+            decoders.put("zstd", zstd);
+        }
+        this.acceptEncoding = String.join(", ", decoders.keySet());
+
+        this.rejected = Counter.builder("telegram.ingest.rejected")
+                .description("Compressed request bodies rejected because the encoding or content type is unsupported")
+                .register(meterRegistry);
+        this.oversized = Counter.builder("telegram.ingest.oversized")
+                .description("Compressed request bodies that exceeded the inflated size limit")
+                .register(meterRegistry);
+        log.info("event=ingest_decompression enabled={} encodings=\"{}\" maxInflatedBytes={}",
+                enabled, acceptEncoding, this.maxInflatedBytes);
+    }
+
+    /**
+     * zstd 没有 JDK 实现，只在 classpath 上有 zstd-jni 时启用
+     */
+    private static Decoder zstdDecoder() {
+        try {
+            Constructor<?> constructor = Class.forName(ZSTD_INPUT_STREAM).getConstructor(InputStream.class);
+            return in -> {
+                try {
+                    return (InputStream) constructor.newInstance(in);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("zstd 解码器初始化失败", e.getCause());
+                } catch (ReflectiveOperationException e) {
+                    throw new IOException("zstd 解码器初始化失败", e);
+                }
+            };
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || request.getHeader(HttpHeaders.CONTENT_ENCODING) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING).trim().toLowerCase(Locale.ROOT);
+        if (encoding.isEmpty() || "identity".equals(encoding)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Decoder decoder = decoders.get(encoding);
+        if (decoder == null || isParsedByContainer(request.getContentType())) {
+            rejected.increment();
+            log.warn("event=ingest_rejected uri={} encoding=\"{}\" contentType=\"{}\"",
+                    request.getRequestURI(), encoding, request.getContentType());
+            response.setHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                    decoder == null ? "不支持的 Content-Encoding: " + encoding : "表单和 multipart 请求不支持 Content-Encoding");
+            return;
+        }
+
+        DecompressingRequest wrapped = new DecompressingRequest(request, encoding, decoder);
+        try {
+            chain.doFilter(wrapped, response);
+        } catch (InflatedSizeExceededException e) {
+            // 控制器以外读取请求体时异常直接抛到这里
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            }
+        } finally {
+            wrapped.finish();
+        }
+    }
+
+    /**
+     * 表单和 multipart 由容器从原始输入流解析参数，包装后的输入流对它们无效
+     */
+    private static boolean isParsedByContainer(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)
+                || type.startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+    }
+
+    @FunctionalInterface
+    private interface Decoder {
+        InputStream open(InputStream in) throws IOException;
+    }
+
+    /**
+     * 解压后的大小超过上限
+     *
+     * 控制器读取请求体时会被包装成 HttpMessageNotReadableException，
+     * ResponseStatusExceptionResolver 沿 cause 找到这里的注解返回 413。
+     */
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    static class InflatedSizeExceededException extends IOException {
+        InflatedSizeExceededException(long limit) {
+            super("解压后的请求体超过 " + limit + " 字节");
+        }
+    }
+
+    /**
+     * 隐藏 Content-Encoding 和 Content-Length，输入流替换为解压流
+     */
+    private class DecompressingRequest extends HttpServletRequestWrapper {
+
+        private final String encoding;
+        private final Decoder decoder;
+        private InflatingInputStream stream;
+
+        DecompressingRequest(HttpServletRequest request, String encoding, Decoder decoder) {
+            super(request);
+            this.encoding = encoding;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                stream = new InflatingInputStream(super.getInputStream(), decoder, maxInflatedBytes);
+            }
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String charset = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    charset != null ? charset : StandardCharsets.UTF_8.name()));
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isHidden(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = new ArrayList<>();
+            for (Enumeration<String> e = super.getHeaderNames(); e.hasMoreElements(); ) {
+                String name = e.nextElement();
+                if (!isHidden(name)) {
+                    names.add(name);
+                }
+            }
+            return Collections.enumeration(names);
+        }
+
+        @Override
+        public int getIntHeader(String name) {
+            return isHidden(name) ? -1 : super.getIntHeader(name);
+        }
+
+        private boolean isHidden(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+
+        /**
+         * 请求结束时记录压缩前后的字节数、压缩比和解压耗时
+         */
+        void finish() {
+            if (stream == null || stream.raw.bytes == 0) {
+                return;
+            }
+            long compressed = stream.raw.bytes;
+            long inflated = stream.inflated;
+            // 总读取时间减去从网络读取原始数据的时间，只剩解压本身
+            long inflateNanos = Math.max(0, stream.nanos - stream.raw.nanos);
+
+            Counter.builder("telegram.ingest.bytes")
+                    .description("Request body bytes received compressed and after inflation")
+                    .tags("encoding", encoding, "stage", "compressed")
+                    .register(meterRegistry)
+                    .increment(compressed);
+            Counter.builder("telegram.ingest.bytes")
+                    .description("Request body bytes received compressed and after inflation")
+                    .tags("encoding", encoding, "stage", "inflated")
+                    .register(meterRegistry)
+                    .increment(inflated);
+            if (stream.isFinished()) {
+                // 只统计完整读完的请求体，中途失败的请求压缩比没有意义
+                DistributionSummary.builder("telegram.ingest.ratio")
+                        .description("Inflated size divided by compressed size per request")
+                        .tag("encoding", encoding)
+                        .register(meterRegistry)
+                        .record((double) inflated / compressed);
+            }
+            Timer.builder("telegram.ingest.inflate")
+                    .description("Time spent inflating request bodies, excluding network reads")
+                    .tag("encoding", encoding)
+                    .register(meterRegistry)
+                    .record(inflateNanos, TimeUnit.NANOSECONDS);
+            if (stream.exceeded) {
+                oversized.increment();
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("event=ingest_inflated uri={} encoding={} compressedBytes={} inflatedBytes={} inflateMs={}",
+                        getRequestURI(), encoding, compressed, inflated, TimeUnit.NANOSECONDS.toMillis(inflateNanos));
+            }
+        }
+    }
+
+    /**
+     * 统计从容器读取的原始字节数和耗时
+     */
+    private static final class RawInputStream extends InputStream {
+
+        private final ServletInputStream in;
+        long bytes;
+        long nanos;
+
+        RawInputStream(ServletInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) {
+                bytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(buf, off, len);
+            nanos += System.nanoTime() - start;
+            if (n > 0) {
+                bytes += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+    }
+
+    /**
+     * 边读边解压，解码器在第一次读取时创建，gzip 头的读取和校验也计入解压耗时
+     */
+    private static final class InflatingInputStream extends ServletInputStream {
+
+        private final RawInputStream raw;
+        private final Decoder decoder;
+        private final long limit;
+        private final byte[] single = new byte[1];
+        private InputStream decoded;
+        private boolean finished;
+        boolean exceeded;
+        long inflated;
+        long nanos;
+
+        InflatingInputStream(ServletInputStream in, Decoder decoder, long limit) {
+            this.raw = new RawInputStream(in);
+            this.decoder = decoder;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (exceeded) {
+                throw new InflatedSizeExceededException(limit);
+            }
+            if (finished) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            long start = System.nanoTime();
+            try {
+                if (decoded == null) {
+                    decoded = decoder.open(raw);
+                }
+                // 多读一个字节也能发现超限，不必等到下一次读取
+                int n = decoded.read(buf, off, (int) Math.min(len, limit - inflated + 1));
+                if (n < 0) {
+                    finished = true;
+                    return -1;
+                }
+                inflated += n;
+                if (inflated > limit) {
+                    exceeded = true;
+                    throw new InflatedSizeExceededException(limit);
+                }
+                return n;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            // 与 Servlet 规范中非异步请求调用 setReadListener 的行为一致
+            throw new IllegalStateException("压缩的请求体不支持异步读取");
+        }
+
+        @Override
+        public void close() throws IOException {
+            // 只关闭解码器，容器的输入流由容器负责关闭
+            if (decoded != null) {
+                decoded.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.tutorial.telegrambot;
+
+/**
+ * 单个请求的分阶段耗时统计
+ *
+ * 每个线程复用一个实例（ThreadLocal），统计数组和输出缓冲区都预先分配，
+ * 稳态下计时本身不产生对象分配，可以在生产环境常开。
+ * 用法：
+ * <pre>
+ * long start = RequestTiming.start();
+ * try { ... } finally { RequestTiming.stop(RequestTiming.Phase.DECODE, start); }
+ * </pre>
+ */
+public final class RequestTiming {
+
+    /**
+     * 计时阶段
+     */
+    public enum Phase {
+        /** 正则扫描HTML，提取图片/视频地址 */
+        PARSE("parse"),
+        /** HTML转换为Telegram格式 */
+        CONVERT("convert"),
+        /** Base64解码 */
+        DECODE("decode"),
+        /** 写临时文件 */
+        SPOOL("spool"),
+        /** 解析视频容器头部 */
+        PROBE("probe"),
+        /** 上传媒体（multipart请求） */
+        UPLOAD("upload"),
+        /** 普通API调用（JSON请求）及响应 */
+        API("api");
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final ThreadLocal<RequestTiming> CURRENT = ThreadLocal.withInitial(RequestTiming::new);
+
+    private final long[] nanos = new long[PHASES.length];
+    private final int[] counts = new int[PHASES.length];
+    private final StringBuilder buffer = new StringBuilder(256);
+    private boolean active;
+    private long beginNanos;
+
+    private RequestTiming() {
+    }
+
+    /**
+     * 开始统计当前线程上的请求
+     */
+    public static RequestTiming begin() {
+        RequestTiming timing = CURRENT.get();
+        java.util.Arrays.fill(timing.nanos, 0L);
+        java.util.Arrays.fill(timing.counts, 0);
+        timing.active = true;
+        timing.beginNanos = System.nanoTime();
+        return timing;
+    }
+
+    /**
+     * 结束统计，之后的 stop 调用不再记录
+     */
+    public static void end() {
+        CURRENT.get().active = false;
+    }
+
+    /**
+     * 当前线程的统计实例
+     */
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 记录阶段开始时间
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * 累加阶段耗时；当前线程没有进行中的请求时忽略
+     */
+    public static void stop(Phase phase, long startNanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing.active) {
+            timing.nanos[phase.ordinal()] += System.nanoTime() - startNanos;
+            timing.counts[phase.ordinal()]++;
+        }
+    }
+
+    /**
+     * 直接累加一段已测得的耗时
+     */
+    public static void add(Phase phase, long elapsedNanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing.active) {
+            timing.nanos[phase.ordinal()] += elapsedNanos;
+            timing.counts[phase.ordinal()]++;
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public int getCount(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return System.nanoTime() - beginNanos;
+    }
+
+    /**
+     * 生成 Server-Timing 响应头，例如 {@code decode;dur=12.345, upload;dur=830.100, total;dur=850.002}
+     */
+    public String toServerTiming() {
+        StringBuilder sb = buffer;
+        sb.setLength(0);
+        for (Phase phase : PHASES) {
+            if (counts[phase.ordinal()] == 0) {
+                continue;
+            }
+            sb.append(phase.getMetricName()).append(";dur=");
+            appendMillis(sb, nanos[phase.ordinal()]);
+            sb.append(", ");
+        }
+        sb.append("total;dur=");
+        appendMillis(sb, getTotalNanos());
+        return sb.toString();
+    }
+
+    /**
+     * 生成单行结构化日志，例如 {@code method=POST path=/sendTextOnly status=200 total_ms=850.002 decode_ms=12.345 decode_n=1}
+     */
+    public String toLogLine(String method, String path, int status) {
+        StringBuilder sb = buffer;
+        sb.setLength(0);
+        sb.append("method=").append(method)
+          .append(" path=").append(path)
+          .append(" status=").append(status)
+          .append(" total_ms=");
+        appendMillis(sb, getTotalNanos());
+        for (Phase phase : PHASES) {
+            if (counts[phase.ordinal()] == 0) {
+                continue;
+            }
+            sb.append(' ').append(phase.getMetricName()).append("_ms=");
+            appendMillis(sb, nanos[phase.ordinal()]);
+            sb.append(' ').append(phase.getMetricName()).append("_n=").append(counts[phase.ordinal()]);
+        }
+        return sb.toString();
+    }
+
+    // 以毫秒为单位输出，保留三位小数，避免 String.format 的开销
+    private static void appendMillis(StringBuilder sb, long nanos) {
+        long micros = Math.max(0L, nanos) / 1_000L;
+        sb.append(micros / 1_000L).append('.');
+        long fraction = micros % 1_000L;
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
@@ -0,0 +1,36 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 在 @ResponseBody 响应写出前附加 Server-Timing 响应头
+ *
+ * 响应体写出后响应即已提交，拦截器的 postHandle 来不及设置响应头，所以放在这里。
+ */
+@ControllerAdvice
+public class RequestTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTiming timing = RequestTiming.current();
+        if (timing.isActive()) {
+            response.getHeaders().set(SERVER_TIMING_HEADER, timing.toServerTiming());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,36 @@
+package com.tutorial.telegrambot;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 为每个请求开启分阶段计时，请求结束时输出一行结构化日志
+ */
+public class RequestTimingInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger("request.timing");
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestTiming.begin();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestTiming timing = RequestTiming.current();
+        if (!timing.isActive()) {
+            return;
+        }
+        try {
+            if (log.isInfoEnabled()) {
+                log.info(timing.toLogLine(request.getMethod(), request.getRequestURI(), response.getStatus()));
+            }
+        } finally {
+            RequestTiming.end();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * multipart 富文本发送：HTML 中的图片和视频以 {@code cid:部件名}（或直接写部件名）引用二进制部件
+ *
+ * 媒体不再以 Base64 Data URL 嵌在 HTML 中，请求体更小，也省去了大字符串的正则匹配和解码。
+ * 部件由 Servlet 容器写入磁盘，转存为临时文件时通常只是移动文件，之后直接作为上传附件发送。
+ * 发送方式与 /sendTextOnly 一致：有视频时逐个发送视频，否则发送图片（多张为媒体组），都没有时发送文字。
+ * 仍然接受外部 URL 和 Data URL 形式的引用。
+ */
+@Component
+public class RichContentDelivery {
+
+    /** 媒体组的元素个数上限 */
+    private static final int MAX_GROUP_SIZE = 10;
+
+    private static final String CID_PREFIX = "cid:";
+
+    private final Bot bot;
+    private final MediaProbeService mediaProbeService;
+
+    public RichContentDelivery(Bot bot, MediaProbeService mediaProbeService) {
+        this.bot = bot;
+        this.mediaProbeService = mediaProbeService;
+    }
+
+    /**
+     * 发送富文本，所有引用在发送前解析，缺少部件时不发送任何内容
+     *
+     * @param parts 按部件名索引的附件
+     * @return 发送结果说明
+     * @throws IllegalArgumentException 引用的部件不存在
+     * @throws IOException              部件或 Data URL 无法写入临时文件
+     */
+    public String deliver(Long chatId, String html, Map<String, MultipartFile> parts) throws IOException {
+        String text = HtmlUtils.convertForTelegram(html);
+        List<String> videoUrls = HtmlUtils.extractVideoUrls(html);
+        List<String> imageUrls = HtmlUtils.extractImageUrls(html);
+
+        List<File> temporary = new ArrayList<>();
+        try {
+            if (!videoUrls.isEmpty()) {
+                List<Source> videos = resolve(videoUrls, parts, true, temporary);
+                // 所有本地视频的元数据解析同时开始，与前面视频的上传并行
+                List<CompletableFuture<MediaProbeService.Probed>> infos = new ArrayList<>(videos.size());
+                for (Source video : videos) {
+                    infos.add(video.file != null ? mediaProbeService.probeAsync(video.file) : CompletableFuture.completedFuture(null));
+                }
+                for (int i = 0; i < videos.size(); i++) {
+                    bot.sendVideo(chatId, videos.get(i).inputFile(), text, MediaProbeService.await(infos.get(i)));
+                }
+                return "富文本中的视频及文字发送成功！共发送 " + videos.size() + " 个视频";
+            }
+            if (!imageUrls.isEmpty()) {
+                List<Source> images = resolve(imageUrls, parts, false, temporary);
+                for (int start = 0; start < images.size(); start += MAX_GROUP_SIZE) {
+                    List<Source> group = images.subList(start, Math.min(images.size(), start + MAX_GROUP_SIZE));
+                    sendImages(chatId, group, start == 0 ? text : null);
+                }
+                return "富文本中的图片及文字发送成功！共发送 " + images.size() + " 张图片";
+            }
+            bot.sendText(chatId, text);
+            return "文本发送成功！";
+        } finally {
+            for (File file : temporary) {
+                file.delete();
+            }
+        }
+    }
+
+    private void sendImages(Long chatId, List<Source> group, String caption) {
+        if (group.size() == 1) {
+            bot.sendPhoto(chatId, group.get(0).inputFile(), caption);
+            return;
+        }
+        List<InputMedia> medias = new ArrayList<>(group.size());
+        for (Source image : group) {
+            InputMediaPhoto media = new InputMediaPhoto();
+            if (image.file != null) {
+                media.setMedia(image.file, image.file.getName());
+            } else {
+                media.setMedia(image.url);
+            }
+            medias.add(media);
+        }
+        if (caption != null && !caption.isEmpty()) {
+            medias.get(0).setCaption(caption);
+        }
+        bot.sendMediaGroup(chatId, medias);
+    }
+
+    private static List<Source> resolve(List<String> urls, Map<String, MultipartFile> parts, boolean video,
+                                        List<File> temporary) throws IOException {
+        List<Source> sources = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            MultipartFile part = parts.get(partName(url));
+            if (part != null && !part.isEmpty()) {
+                File file = spool(part, video ? "rich_video_" : "rich_image_");
+                temporary.add(file);
+                sources.add(new Source(file, null));
+            } else if (url.regionMatches(true, 0, CID_PREFIX, 0, CID_PREFIX.length())) {
+                throw new IllegalArgumentException("找不到引用的附件: " + url);
+            } else if (url.startsWith("data:")) {
+                File file = video ? DataUrlUtils.saveVideoDataUrlAsTempFile(url) : DataUrlUtils.saveDataUrlAsTempFile(url);
+                temporary.add(file);
+                sources.add(new Source(file, null));
+            } else {
+                sources.add(new Source(null, url));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * {@code cid:name} 或 {@code cid:<name>} 对应的部件名；没有前缀时按原样作为部件名
+     */
+    static String partName(String url) {
+        String name = url.regionMatches(true, 0, CID_PREFIX, 0, CID_PREFIX.length())
+                ? url.substring(CID_PREFIX.length()) : url;
+        if (name.length() > 1 && name.startsWith("<") && name.endsWith(">")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.trim();
+    }
+
+    private static File spool(MultipartFile part, String prefix) throws IOException {
+        long start = RequestTiming.start();
+        try {
+            String original = part.getOriginalFilename();
+            String suffix = original != null && original.lastIndexOf('.') >= 0
+                    ? original.substring(original.lastIndexOf('.')) : "";
+            File file = File.createTempFile(prefix, suffix);
+            try {
+                // 容器已写入磁盘的部件在这里只是移动文件
+                part.transferTo(file);
+            } catch (IOException | RuntimeException e) {
+                file.delete();
+                throw e;
+            }
+            return file;
+        } finally {
+            RequestTiming.stop(RequestTiming.Phase.SPOOL, start);
+        }
+    }
+
+    /**
+     * 解析后的媒体：本地文件或外部 URL
+     */
+    private static final class Source {
+        final File file;
+        final String url;
+
+        Source(File file, String url) {
+            this.file = file;
+            this.url = url;
+        }
+
+        InputFile inputFile() {
+            return file != null ? new InputFile(file, file.getName()) : new InputFile(url);
+        }
+    }
+}
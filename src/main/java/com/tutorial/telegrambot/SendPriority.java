@@ -0,0 +1,63 @@
+package com.tutorial.telegrambot;
+
+/**
+ * 发送优先级
+ *
+ * 当前线程的优先级保存在 ThreadLocal 中，{@link Bot} 发送时由 {@link SendRateLimiter} 读取；
+ * 未设置时为 {@link #NORMAL}。
+ */
+public enum SendPriority {
+
+    /** 机器人对用户的回复、编辑器触发的单条发送 */
+    INTERACTIVE,
+
+    /** 普通推送 */
+    NORMAL,
+
+    /** 批量推送：多视频、文件夹推送、频道转发 */
+    BULK;
+
+    private static final ThreadLocal<SendPriority> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 当前线程的发送优先级
+     */
+    public static SendPriority current() {
+        SendPriority priority = CURRENT.get();
+        return priority != null ? priority : NORMAL;
+    }
+
+    /**
+     * 设置当前线程的发送优先级，返回的 Scope 关闭时恢复之前的值
+     *
+     * <pre>
+     * try (SendPriority.Scope ignored = SendPriority.BULK.enter()) {
+     *     bot.sendText(...);
+     * }
+     * </pre>
+     */
+    public Scope enter() {
+        SendPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * 按名称解析优先级，不区分大小写
+     */
+    public static SendPriority parse(String value) {
+        return valueOf(value.trim().toUpperCase(java.util.Locale.ROOT));
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
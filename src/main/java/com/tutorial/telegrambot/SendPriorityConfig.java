@@ -0,0 +1,46 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按接口配置发送优先级
+ *
+ * bot.priority.endpoints 格式为 "路径=优先级" 的逗号分隔列表，例如 {@code /sendPhoto=interactive,/sendGridContent=bulk}，
+ * 未列出的接口使用 bot.priority.default。
+ */
+@Configuration
+public class SendPriorityConfig implements WebMvcConfigurer {
+
+    @Value("${bot.priority.endpoints:}")
+    private String endpoints;
+
+    @Value("${bot.priority.default:normal}")
+    private String defaultPriority;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SendPriorityInterceptor(parseEndpoints(endpoints), SendPriority.parse(defaultPriority)))
+                .addPathPatterns("/**");
+    }
+
+    static Map<String, SendPriority> parseEndpoints(String value) {
+        Map<String, SendPriority> priorities = new HashMap<>();
+        if (value == null) {
+            return priorities;
+        }
+        for (String entry : value.split(",")) {
+            int index = entry.indexOf('=');
+            if (index <= 0) {
+                continue;
+            }
+            priorities.put(entry.substring(0, index).trim(), SendPriority.parse(entry.substring(index + 1)));
+        }
+        return priorities;
+    }
+}
@@ -0,0 +1,39 @@
+package com.tutorial.telegrambot;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Map;
+
+/**
+ * 按接口路径设置请求线程的发送优先级，请求结束时恢复
+ */
+public class SendPriorityInterceptor implements HandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = SendPriorityInterceptor.class.getName() + ".scope";
+
+    private final Map<String, SendPriority> endpointPriorities;
+    private final SendPriority defaultPriority;
+
+    public SendPriorityInterceptor(Map<String, SendPriority> endpointPriorities, SendPriority defaultPriority) {
+        this.endpointPriorities = endpointPriorities;
+        this.defaultPriority = defaultPriority;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SendPriority priority = endpointPriorities.getOrDefault(request.getServletPath(), defaultPriority);
+        request.setAttribute(SCOPE_ATTRIBUTE, priority.enter());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object scope = request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope instanceof SendPriority.Scope) {
+            request.removeAttribute(SCOPE_ATTRIBUTE);
+            ((SendPriority.Scope) scope).close();
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 发送限流：全局速率 + 每个聊天的速率，按优先级分配发送额度
+ *
+ * 每个聊天的速率按 {@link ChatDirectory} 中的聊天类型选择，开启慢速模式的群组按慢速模式间隔发送。
+ * 速率采用 GCRA（理论到达时间），允许少量突发。等待发送的请求按 {@link SendPriority} 分为三个队列，
+ * 有额度时从各队列中选出聊天额度也已就绪的最早请求，按权重轮转（平滑加权轮询）决定由哪个队列发送；
+ * 等待超过该队列上限的请求优先发送，保证低优先级队列不会被无限期推后。
+ * 同一聊天的额度同样先给高优先级请求。使用 ReentrantLock 而不是 synchronized，等待期间不占用锁。
+ */
+@Component
+public class SendRateLimiter {
+
+    /** 记录的聊天数量上限，超过后淘汰最久未使用的聊天 */
+    private static final int MAX_TRACKED_CHATS = 10_000;
+
+    private static final SendPriority[] PRIORITIES = SendPriority.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** 有请求获得额度或离开队列时通知所有等待者重新检查 */
+    private final Condition changed = lock.newCondition();
+
+    private final int globalBurst;
+    private final double maxGlobalPerSecond;
+
+    /** 全局发送间隔，可由 {@link AdaptiveSendLimit} 在运行时调整 */
+    private long globalIntervalNanos;
+    private long globalToleranceNanos;
+    private final long privateIntervalNanos;
+    private final long groupIntervalNanos;
+    private final long channelIntervalNanos;
+    private final int chatBurst;
+    private final boolean respectSlowMode;
+    private final ChatDirectory chatDirectory;
+
+    /** 纳秒时钟，测试时可替换 */
+    private final LongSupplier clock;
+
+    /** 全局的理论到达时间 */
+    private long globalTat;
+
+    /** 每个聊天的理论到达时间 */
+    private final Map<String, Long> chatTat = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED_CHATS;
+        }
+    };
+
+    /** 按优先级分开的等待队列，下标为 {@link SendPriority#ordinal()} */
+    private final Lane[] lanes = new Lane[PRIORITIES.length];
+
+    @Autowired
+    public SendRateLimiter(MeterRegistry meterRegistry,
+                           ChatDirectory chatDirectory,
+                           @Value("${bot.rate.global-per-second:30}") int globalPerSecond,
+                           @Value("${bot.rate.global-burst:30}") int globalBurst,
+                           @Value("${bot.rate.private-per-minute:60}") int privatePerMinute,
+                           @Value("${bot.rate.group-per-minute:20}") int groupPerMinute,
+                           @Value("${bot.rate.channel-per-minute:20}") int channelPerMinute,
+                           @Value("${bot.rate.respect-slow-mode:true}") boolean respectSlowMode,
+                           @Value("${bot.rate.chat-burst:3}") int chatBurst,
+                           @Value("${bot.priority.interactive.weight:8}") int interactiveWeight,
+                           @Value("${bot.priority.normal.weight:3}") int normalWeight,
+                           @Value("${bot.priority.bulk.weight:1}") int bulkWeight,
+                           @Value("${bot.priority.interactive.max-wait-ms:2000}") long interactiveMaxWaitMillis,
+                           @Value("${bot.priority.normal.max-wait-ms:30000}") long normalMaxWaitMillis,
+                           @Value("${bot.priority.bulk.max-wait-ms:300000}") long bulkMaxWaitMillis) {
+        this(meterRegistry, chatDirectory, globalPerSecond, globalBurst, privatePerMinute, groupPerMinute, channelPerMinute,
+                respectSlowMode, chatBurst, interactiveWeight, normalWeight, bulkWeight,
+                interactiveMaxWaitMillis, normalMaxWaitMillis, bulkMaxWaitMillis, System::nanoTime);
+    }
+
+    SendRateLimiter(MeterRegistry meterRegistry, ChatDirectory chatDirectory,
+                    int globalPerSecond, int globalBurst, int privatePerMinute, int groupPerMinute, int channelPerMinute,
+                    boolean respectSlowMode, int chatBurst, int interactiveWeight, int normalWeight, int bulkWeight,
+                    long interactiveMaxWaitMillis, long normalMaxWaitMillis, long bulkMaxWaitMillis, LongSupplier clock) {
+        this.clock = clock;
+        this.globalBurst = Math.max(1, globalBurst);
+        this.maxGlobalPerSecond = Math.max(1, globalPerSecond);
+        this.globalIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, globalPerSecond);
+        this.globalToleranceNanos = globalIntervalNanos * (this.globalBurst - 1);
+        this.privateIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, privatePerMinute);
+        this.groupIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, groupPerMinute);
+        this.channelIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, channelPerMinute);
+        this.chatBurst = Math.max(1, chatBurst);
+        this.respectSlowMode = respectSlowMode;
+        this.chatDirectory = chatDirectory;
+        this.globalTat = clock.getAsLong();
+
+        lanes[SendPriority.INTERACTIVE.ordinal()] = new Lane(interactiveWeight, interactiveMaxWaitMillis);
+        lanes[SendPriority.NORMAL.ordinal()] = new Lane(normalWeight, normalMaxWaitMillis);
+        lanes[SendPriority.BULK.ordinal()] = new Lane(bulkWeight, bulkMaxWaitMillis);
+        for (SendPriority priority : PRIORITIES) {
+            Lane lane = lanes[priority.ordinal()];
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("telegram.send.waiting", lane, l -> l.size)
+                    .description("Sends waiting for rate limit budget")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+            lane.queueTimer = Timer.builder("telegram.send.queue")
+                    .description("Time spent waiting for rate limit budget")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 等待直到可以向指定聊天发送一条消息，优先级取自当前线程的 {@link SendPriority#current()}
+     */
+    public void acquire(String chatId) throws InterruptedException {
+        acquire(chatId, SendPriority.current());
+    }
+
+    /**
+     * 按指定优先级等待直到可以向指定聊天发送一条消息
+     */
+    public void acquire(String chatId, SendPriority priority) throws InterruptedException {
+        acquire(chatId, priority, 1);
+    }
+
+    /**
+     * 按指定优先级等待直到可以向指定聊天发送多条消息（例如媒体组），额度按消息条数扣除
+     */
+    public void acquire(String chatId, SendPriority priority, int messages) throws InterruptedException {
+        Lane lane = lanes[priority.ordinal()];
+        Waiter waiter = newWaiter(chatId, messages);
+        lock.lock();
+        try {
+            lane.add(waiter);
+            while (true) {
+                long now = clock.getAsLong();
+                long wakeAt = dispatch(now);
+                if (waiter.granted) {
+                    break;
+                }
+                changed.awaitNanos(wakeAt - now);
+            }
+        } catch (InterruptedException e) {
+            if (!waiter.granted) {
+                lane.remove(waiter);
+                changed.signalAll();
+                throw e;
+            }
+            // 额度已经分配，照常发送，保留中断标记
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        lane.queueTimer.record(clock.getAsLong() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private Waiter newWaiter(String chatId, int messages) {
+        ChatDirectory.ChatInfo chat = chatDirectory.peek(chatId);
+        long interval = chatIntervalNanos(chat);
+        // 慢速模式下不允许突发
+        int burst = slowModeNanos(chat) > 0 ? 1 : chatBurst;
+        return new Waiter(chatId, interval, interval * (burst - 1), Math.max(1, messages), clock.getAsLong());
+    }
+
+    /**
+     * 加入等待队列但不等待，推进时钟后由 {@link #dispatchNow()} 分配额度；用于按确定的时间顺序测试调度
+     */
+    Waiter enqueue(String chatId, SendPriority priority, int messages) {
+        Waiter waiter = newWaiter(chatId, messages);
+        lock.lock();
+        try {
+            lanes[priority.ordinal()].add(waiter);
+        } finally {
+            lock.unlock();
+        }
+        return waiter;
+    }
+
+    /**
+     * 按时钟的当前时间分配额度
+     */
+    void dispatchNow() {
+        lock.lock();
+        try {
+            dispatch(clock.getAsLong());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 配置的全局速率上限（条/秒）
+     */
+    public double getMaxGlobalPerSecond() {
+        return maxGlobalPerSecond;
+    }
+
+    /**
+     * 调整全局速率，突发量随之按比例缩放
+     */
+    public void setGlobalPerSecond(double perSecond) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.01, perSecond));
+        lock.lock();
+        try {
+            globalIntervalNanos = interval;
+            // 降速时突发量一起收缩，避免暂停结束后立即以原有突发量发送
+            globalToleranceNanos = interval * Math.max(0, Math.min(globalBurst, (int) perSecond) - 1);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 暂停全局发送直到指定的时间之后，用于服务端返回 retry_after 的情况
+     */
+    public void pauseFor(long nanos) {
+        lock.lock();
+        try {
+            long resumeTat = clock.getAsLong() + nanos + globalToleranceNanos;
+            if (resumeTat - globalTat > 0) {
+                globalTat = resumeTat;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把当前可用的额度分配给等待中的请求
+     *
+     * @return 下一次可能有额度的时间
+     */
+    private long dispatch(long now) {
+        boolean grantedAny = false;
+        long wakeAt;
+        while (true) {
+            long tat = globalTat - now < 0 ? now : globalTat;
+            long globalAt = tat - globalToleranceNanos;
+            if (globalAt - now > 0) {
+                wakeAt = globalAt;
+                break;
+            }
+
+            // 每个队列取聊天额度已就绪的最早请求，同时记录最早就绪的时间
+            Waiter[] candidates = new Waiter[lanes.length];
+            long earliestChatAt = Long.MAX_VALUE;
+            boolean anyWaiting = false;
+            for (int i = 0; i < lanes.length; i++) {
+                for (Waiter w : lanes[i].waiters) {
+                    anyWaiting = true;
+                    long chatAt = chatReadyAt(w, now);
+                    if (chatAt - now <= 0) {
+                        candidates[i] = w;
+                        break;
+                    }
+                    if (earliestChatAt == Long.MAX_VALUE || chatAt - earliestChatAt < 0) {
+                        earliestChatAt = chatAt;
+                    }
+                }
+            }
+            int chosen = choose(candidates, now);
+            if (chosen < 0) {
+                wakeAt = anyWaiting && earliestChatAt != Long.MAX_VALUE
+                        ? earliestChatAt : now + TimeUnit.SECONDS.toNanos(1);
+                break;
+            }
+
+            Waiter waiter = candidates[chosen];
+            Long previous = chatTat.get(waiter.chatId);
+            long chatTatNow = previous == null || previous - now < 0 ? now : previous;
+            chatTat.put(waiter.chatId, chatTatNow + waiter.intervalNanos * waiter.messages);
+            globalTat = tat + globalIntervalNanos * waiter.messages;
+            lanes[chosen].remove(waiter);
+            waiter.granted = true;
+            grantedAny = true;
+        }
+        if (grantedAny) {
+            changed.signalAll();
+        }
+        return wakeAt;
+    }
+
+    /**
+     * 在有候选请求的队列中选择一个：先选等待超过上限最多的，否则按平滑加权轮询
+     */
+    private int choose(Waiter[] candidates, long now) {
+        int overdue = -1;
+        long maxOverdue = 0L;
+        int totalWeight = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] == null) {
+                continue;
+            }
+            long late = now - candidates[i].enqueuedAt - lanes[i].maxWaitNanos;
+            if (late > maxOverdue) {
+                maxOverdue = late;
+                overdue = i;
+            }
+            totalWeight += lanes[i].weight;
+        }
+        if (overdue >= 0) {
+            return overdue;
+        }
+
+        int chosen = -1;
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] == null) {
+                continue;
+            }
+            Lane lane = lanes[i];
+            lane.currentWeight += lane.weight;
+            if (chosen < 0 || lane.currentWeight > lanes[chosen].currentWeight) {
+                chosen = i;
+            }
+        }
+        if (chosen >= 0) {
+            lanes[chosen].currentWeight -= totalWeight;
+        }
+        return chosen;
+    }
+
+    private long chatReadyAt(Waiter waiter, long now) {
+        Long previous = chatTat.get(waiter.chatId);
+        long tat = previous == null || previous - now < 0 ? now : previous;
+        return tat - waiter.toleranceNanos;
+    }
+
+    /**
+     * 按聊天类型选择发送间隔：私聊、群组（包括超级群组）、频道分别配置；开启慢速模式的群组不短于慢速模式间隔
+     */
+    long chatIntervalNanos(ChatDirectory.ChatInfo chat) {
+        long interval;
+        switch (chat.getType()) {
+            case PRIVATE:
+                interval = privateIntervalNanos;
+                break;
+            case CHANNEL:
+                interval = channelIntervalNanos;
+                break;
+            default:
+                interval = groupIntervalNanos;
+                break;
+        }
+        return Math.max(interval, slowModeNanos(chat));
+    }
+
+    /**
+     * 慢速模式的最小间隔；Telegram 不对管理员启用慢速模式
+     */
+    private long slowModeNanos(ChatDirectory.ChatInfo chat) {
+        return respectSlowMode && !chat.isAdmin() ? TimeUnit.SECONDS.toNanos(chat.getSlowModeDelay()) : 0L;
+    }
+
+    /**
+     * 一个优先级的等待队列，只在持有锁时访问
+     */
+    private static final class Lane {
+        final int weight;
+        final long maxWaitNanos;
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        Timer queueTimer;
+        /** 平滑加权轮询的当前权重 */
+        int currentWeight;
+        /** 供监控读取的队列长度 */
+        volatile int size;
+
+        Lane(int weight, long maxWaitMillis) {
+            this.weight = Math.max(1, weight);
+            this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxWaitMillis));
+        }
+
+        void add(Waiter waiter) {
+            waiters.add(waiter);
+            size = waiters.size();
+        }
+
+        void remove(Waiter waiter) {
+            waiters.remove(waiter);
+            size = waiters.size();
+        }
+    }
+
+    static final class Waiter {
+        final String chatId;
+        final long intervalNanos;
+        final long toleranceNanos;
+        final int messages;
+        final long enqueuedAt;
+        boolean granted;
+
+        Waiter(String chatId, long intervalNanos, long toleranceNanos, int messages, long enqueuedAt) {
+            this.chatId = chatId;
+            this.intervalNanos = intervalNanos;
+            this.toleranceNanos = toleranceNanos;
+            this.messages = messages;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * 是否已分配额度，只在调用 {@link #dispatchNow()} 的线程上读取
+         */
+        boolean isGranted() {
+            return granted;
+        }
+    }
+}
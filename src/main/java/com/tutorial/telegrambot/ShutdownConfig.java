@@ -0,0 +1,33 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 停止服务时拒绝新的推送请求
+ *
+ * bot.shutdown.paths 为逗号分隔的路径模式，默认覆盖所有发送接口、文件夹推送和模板发送。
+ */
+@Configuration
+public class ShutdownConfig implements WebMvcConfigurer {
+
+    private final ShutdownCoordinator shutdownCoordinator;
+
+    @Value("${bot.shutdown.paths:/sendPhoto,/sendPhotoByUrl,/sendTextOnly,/sendRichContent,/sendGridContent,/api/pushFolder/**,/api/templates/**}")
+    private String[] paths;
+
+    @Value("${bot.shutdown.retry-after-s:30}")
+    private int retryAfterSeconds;
+
+    public ShutdownConfig(ShutdownCoordinator shutdownCoordinator) {
+        this.shutdownCoordinator = shutdownCoordinator;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ShutdownInterceptor(shutdownCoordinator, retryAfterSeconds))
+                .addPathPatterns(paths);
+    }
+}
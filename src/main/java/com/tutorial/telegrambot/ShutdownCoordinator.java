@@ -0,0 +1,211 @@
+package com.tutorial.telegrambot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.generics.BotSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 停止服务时的排空阶段
+ *
+ * 在 Web 服务器优雅关闭和线程池销毁之前执行：先拒绝新的推送请求（503），停止长轮询，
+ * 然后等待已接受的请求和正在进行的发送完成，最多等待 bot.shutdown.drain-timeout-ms。
+ * 后台任务在排空开始后不再开始新的发送：文件夹推送保存进度并标记为中断，模板批次记录未发送的收件人数。
+ * 频道转发立即发出收集中的相册，并等待已排队的转发完成。
+ * 超时后仍未完成的工作按类别记录在日志中。
+ */
+@Component
+public class ShutdownCoordinator implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ShutdownCoordinator.class);
+
+    /** 正在进行的工作，用于在排空结束时确认已完成 */
+    @FunctionalInterface
+    public interface Activity extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final long drainTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition idle = lock.newCondition();
+
+    /** 各类别正在进行的工作数量 */
+    private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+    private int total;
+
+    private volatile boolean running;
+    private volatile boolean draining;
+    private volatile BotSession session;
+    private final List<Runnable> drainActions = new CopyOnWriteArrayList<>();
+
+    public ShutdownCoordinator(@Value("${bot.shutdown.drain-timeout-ms:25000}") long drainTimeoutMillis) {
+        this.drainTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, drainTimeoutMillis));
+    }
+
+    /**
+     * 长轮询会话，排空开始时停止接收更新
+     */
+    public void setSession(BotSession session) {
+        this.session = session;
+    }
+
+    /**
+     * 排空开始、长轮询停止后执行的动作，例如提前发出缓冲中的消息；动作中登记的工作同样会被等待
+     */
+    public void onDrain(Runnable action) {
+        drainActions.add(action);
+    }
+
+    /**
+     * 是否已开始排空，后台任务据此在下一次发送前停止
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * 登记一项正在进行的工作，关闭返回值时结束
+     *
+     * @param kind 工作类别，只用于日志，例如 send、request、push
+     */
+    public Activity begin(String kind) {
+        AtomicInteger counter = active.computeIfAbsent(kind, k -> new AtomicInteger());
+        lock.lock();
+        try {
+            counter.incrementAndGet();
+            total++;
+        } finally {
+            lock.unlock();
+        }
+        return () -> end(counter);
+    }
+
+    private void end(AtomicInteger counter) {
+        lock.lock();
+        try {
+            counter.decrementAndGet();
+            if (--total == 0) {
+                idle.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        drain();
+    }
+
+    /**
+     * 排空在单独的线程中进行，同一阶段的其他组件可以同时停止
+     */
+    @Override
+    public void stop(Runnable callback) {
+        Thread thread = new Thread(() -> {
+            try {
+                drain();
+            } finally {
+                callback.run();
+            }
+        }, "shutdown-drain");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 在 Web 服务器优雅关闭（DEFAULT_PHASE - 1024）之前停止
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    private void drain() {
+        if (!running) {
+            return;
+        }
+        long start = System.nanoTime();
+        draining = true;
+        log.info("event=shutdown_drain_start active={}", snapshot());
+
+        BotSession current = session;
+        if (current != null && current.isRunning()) {
+            try {
+                current.stop();
+            } catch (RuntimeException e) {
+                log.warn("event=bot_session_stop_failed error=\"{}\"", e.getMessage());
+            }
+        }
+        for (Runnable action : drainActions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("event=shutdown_drain_action_failed error=\"{}\"", e.getMessage());
+            }
+        }
+
+        boolean drained = awaitIdle(start + drainTimeoutNanos);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (drained) {
+            log.info("event=shutdown_drain_done elapsed_ms={}", elapsedMillis);
+        } else {
+            log.warn("event=shutdown_drain_timeout elapsed_ms={} remaining={}", elapsedMillis, snapshot());
+        }
+        running = false;
+    }
+
+    private boolean awaitIdle(long deadline) {
+        lock.lock();
+        try {
+            while (total > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                idle.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return total == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, Integer> snapshot() {
+        Map<String, Integer> counts = new TreeMap<>();
+        active.forEach((kind, counter) -> {
+            int value = counter.get();
+            if (value > 0) {
+                counts.put(kind, value);
+            }
+        });
+        return counts;
+    }
+}
@@ -0,0 +1,49 @@
+package com.tutorial.telegrambot;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+
+/**
+ * 推送请求的排空处理：排空开始后新请求返回 503，已接受的请求登记为进行中的工作
+ *
+ * 只拦截会产生发送的请求（非 GET），任务状态查询在排空期间仍可访问。
+ */
+public class ShutdownInterceptor implements HandlerInterceptor {
+
+    private static final String ACTIVITY_ATTRIBUTE = ShutdownInterceptor.class.getName() + ".activity";
+
+    private final ShutdownCoordinator shutdownCoordinator;
+    private final String retryAfterSeconds;
+
+    public ShutdownInterceptor(ShutdownCoordinator shutdownCoordinator, int retryAfterSeconds) {
+        this.shutdownCoordinator = shutdownCoordinator;
+        this.retryAfterSeconds = String.valueOf(Math.max(1, retryAfterSeconds));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        if (shutdownCoordinator.isDraining()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "服务正在停止，请稍后重试");
+            return false;
+        }
+        request.setAttribute(ACTIVITY_ATTRIBUTE, shutdownCoordinator.begin("request"));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object activity = request.getAttribute(ACTIVITY_ATTRIBUTE);
+        if (activity instanceof ShutdownCoordinator.Activity) {
+            request.removeAttribute(ACTIVITY_ATTRIBUTE);
+            ((ShutdownCoordinator.Activity) activity).close();
+        }
+    }
+}
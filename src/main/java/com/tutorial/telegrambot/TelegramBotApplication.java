@@ -2,19 +2,17 @@ package com.tutorial.telegrambot;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.ConfigurableApplicationContext;
-import org.telegram.telegrambots.meta.TelegramBotsApi;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class TelegramBotApplication {
 
-	public static void main(String[] args) throws TelegramApiException {
-		ConfigurableApplicationContext context = SpringApplication.run(TelegramBotApplication.class, args);
-        TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-        Bot bot = context.getBean(Bot.class);
-        botsApi.registerBot(bot);
+	public static void main(String[] args) {
+		SpringApplication application = new SpringApplication(TelegramBotApplication.class);
+		// 记录启动步骤耗时，通过 /actuator/startup 查看
+		application.setApplicationStartup(new BufferingApplicationStartup(2048));
+		// Bot 由 BotSessionLifecycle 在 Web 服务器启动后于后台注册
+		application.run(args);
 	}
 
 }
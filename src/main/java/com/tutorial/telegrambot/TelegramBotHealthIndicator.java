@@ -0,0 +1,41 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bot 长轮询的连接状态，在 /actuator/health/bot 组中报告
+ *
+ * 不计入 readiness 组：HTTP 推送接口不依赖长轮询，连接 Telegram 期间即可接收流量。
+ */
+@Component
+public class TelegramBotHealthIndicator implements HealthIndicator {
+
+    private final BotSessionLifecycle botSession;
+
+    public TelegramBotHealthIndicator(BotSessionLifecycle botSession) {
+        this.botSession = botSession;
+    }
+
+    @Override
+    public Health health() {
+        BotSessionLifecycle.State state = botSession.getState();
+        Health.Builder builder;
+        switch (state) {
+            case CONNECTED:
+                builder = Health.up().withDetail("connectedAt", botSession.getConnectedAt());
+                break;
+            case DISABLED:
+                builder = Health.up();
+                break;
+            case FAILED:
+                builder = Health.down().withDetail("error", String.valueOf(botSession.getLastError()));
+                break;
+            default:
+                builder = Health.outOfService();
+                break;
+        }
+        return builder.withDetail("state", state.name()).build();
+    }
+}
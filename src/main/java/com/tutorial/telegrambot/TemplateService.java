@@ -0,0 +1,524 @@
+package com.tutorial.telegrambot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 消息模板：富文本只解析和转换一次，之后按收件人代入变量批量发送
+ *
+ * 模板中的图片和视频在第一次发送时上传，之后的收件人都使用返回的 file_id，不再上传。
+ * 为此每批先逐个发送，直到所有媒体都取得 file_id，剩余的收件人再并行发送；发送均为批量优先级。
+ * 媒体的临时文件按正在使用的批次计数，没有批次在使用、且已取得全部 file_id 或模板已删除时才删除。
+ * 媒体的发送方式与 /sendTextOnly 一致：有视频时逐个发送视频，否则发送图片（多张为媒体组），都没有时发送文字。
+ * 收件人的 @用户名 在发送线程中由 {@link ChatDirectory} 解析，解析失败记为该收件人发送失败。
+ */
+@Service
+public class TemplateService {
+
+    private static final Logger log = LoggerFactory.getLogger(TemplateService.class);
+
+    /** 媒体组的元素个数上限 */
+    private static final int MAX_GROUP_SIZE = 10;
+
+    /** 每批记录的失败明细条数 */
+    private static final int MAX_RECORDED_ERRORS = 20;
+
+    /** 模板的发送方式 */
+    public enum Kind {
+        TEXT, PHOTO, ALBUM, VIDEO
+    }
+
+    private final Bot bot;
+    private final ChatDirectory chatDirectory;
+    private final ShutdownCoordinator shutdownCoordinator;
+    private final ExecutorService sendExecutor;
+    private final int maxBatches;
+
+    private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    /** 最近的发送批次，超过上限时移除最早完成的 */
+    private final Map<String, Batch> batches = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public TemplateService(Bot bot,
+                           ChatDirectory chatDirectory,
+                           ShutdownCoordinator shutdownCoordinator,
+                           @Qualifier("templateSendExecutor") ExecutorService sendExecutor,
+                           @Value("${bot.template.max-batches:100}") int maxBatches) {
+        this.bot = bot;
+        this.chatDirectory = chatDirectory;
+        this.shutdownCoordinator = shutdownCoordinator;
+        this.sendExecutor = sendExecutor;
+        this.maxBatches = Math.max(1, maxBatches);
+    }
+
+    /**
+     * 编译模板：转换文字、解析变量，并把 Data URL 媒体写入临时文件
+     *
+     * @throws IllegalArgumentException 模板语法错误或没有内容
+     * @throws IOException              媒体数据无法解码
+     */
+    public CompiledTemplate compile(String html) throws IOException {
+        TemplateText text = TemplateText.compile(HtmlUtils.convertForTelegram(html));
+        List<String> videoUrls = HtmlUtils.extractVideoUrls(html);
+        List<String> imageUrls = HtmlUtils.extractImageUrls(html);
+
+        List<Media> media = new ArrayList<>();
+        Kind kind;
+        try {
+            if (!videoUrls.isEmpty()) {
+                kind = Kind.VIDEO;
+                for (String url : videoUrls) {
+                    if (url.startsWith("data:video/")) {
+                        File file = DataUrlUtils.saveVideoDataUrlAsTempFile(url);
+                        media.add(new Media(true, file, null, MediaProbe.probe(file)));
+                    } else {
+                        media.add(new Media(true, null, url, null));
+                    }
+                }
+            } else if (!imageUrls.isEmpty()) {
+                kind = imageUrls.size() == 1 ? Kind.PHOTO : Kind.ALBUM;
+                for (String url : imageUrls) {
+                    if (url.startsWith("data:image")) {
+                        media.add(new Media(false, DataUrlUtils.saveDataUrlAsTempFile(url), null, null));
+                    } else {
+                        media.add(new Media(false, null, url, null));
+                    }
+                }
+            } else if (!text.isEmpty()) {
+                kind = Kind.TEXT;
+            } else {
+                throw new IllegalArgumentException("模板没有内容");
+            }
+        } catch (IOException | RuntimeException e) {
+            media.forEach(Media::releaseUpload);
+            throw e;
+        }
+
+        CompiledTemplate template = new CompiledTemplate(UUID.randomUUID().toString().replace("-", "").substring(0, 12),
+                kind, text, media);
+        templates.put(template.id, template);
+        return template;
+    }
+
+    public CompiledTemplate get(String id) {
+        return templates.get(id);
+    }
+
+    /**
+     * 删除模板；尚未上传的媒体文件在使用它的批次都结束后删除
+     */
+    public boolean remove(String id) {
+        CompiledTemplate template = templates.remove(id);
+        if (template == null) {
+            return false;
+        }
+        if (template.markRemoved()) {
+            template.media.forEach(Media::releaseUpload);
+        }
+        return true;
+    }
+
+    /**
+     * 按收件人列表发送模板，立即返回批次，发送在后台进行
+     *
+     * @param recipients 收件人，key 为数字聊天ID或 @用户名，value 为该收件人的变量
+     * @return 批次，模板不存在时返回 null
+     */
+    public Batch send(String templateId, Map<String, Map<String, String>> recipients) {
+        CompiledTemplate template = templates.get(templateId);
+        if (template == null || !template.acquire()) {
+            return null;
+        }
+        Batch batch = new Batch(UUID.randomUUID().toString().replace("-", "").substring(0, 12), templateId, recipients.size());
+        addBatch(batch);
+        List<Map.Entry<String, Map<String, String>>> list = new ArrayList<>(recipients.entrySet());
+        if (list.isEmpty()) {
+            releaseTemplate(template);
+            return batch;
+        }
+        try {
+            sendExecutor.execute(() -> run(template, batch, list));
+        } catch (RejectedExecutionException e) {
+            for (Map.Entry<String, Map<String, String>> recipient : list) {
+                rejected(template, batch, recipient, e);
+            }
+        }
+        return batch;
+    }
+
+    public Batch getBatch(String id) {
+        return batches.get(id);
+    }
+
+    private void run(CompiledTemplate template, Batch batch, List<Map.Entry<String, Map<String, String>>> recipients) {
+        int index = 0;
+        try (SendPriority.Scope ignored = SendPriority.BULK.enter();
+             ShutdownCoordinator.Activity work = shutdownCoordinator.begin("template")) {
+            // 逐个发送直到所有媒体都取得 file_id，之后的发送不再上传
+            while (index < recipients.size() && !template.isPrimed()) {
+                deliver(template, batch, recipients.get(index++));
+            }
+        }
+        for (; index < recipients.size(); index++) {
+            Map.Entry<String, Map<String, String>> recipient = recipients.get(index);
+            try {
+                sendExecutor.execute(() -> {
+                    try (SendPriority.Scope ignored = SendPriority.BULK.enter()) {
+                        deliver(template, batch, recipient);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected(template, batch, recipient, e);
+            }
+        }
+    }
+
+    /**
+     * 线程池已关闭等原因无法提交发送任务时，记为该收件人发送失败，保证批次能够结束
+     */
+    private void rejected(CompiledTemplate template, Batch batch, Map.Entry<String, Map<String, String>> recipient,
+                          RejectedExecutionException e) {
+        batch.failed(recipient.getKey(), e);
+        log.warn("event=template_send_rejected batch={} chat_id={}", batch.id, recipient.getKey());
+        finish(template, batch);
+    }
+
+    private void deliver(CompiledTemplate template, Batch batch, Map.Entry<String, Map<String, String>> recipient) {
+        if (shutdownCoordinator.isDraining()) {
+            // 停止服务后不再开始新的发送，只记录未发送的数量
+            batch.unsent.incrementAndGet();
+            finish(template, batch);
+            return;
+        }
+        String recipientId = recipient.getKey();
+        try {
+            Long chatId = chatDirectory.resolveId(recipientId);
+            String caption = template.text.render(recipient.getValue());
+            switch (template.kind) {
+                case TEXT:
+                    bot.sendText(chatId, caption);
+                    break;
+                case PHOTO: {
+                    Media photo = template.media.get(0);
+                    photo.remember(bot.sendPhoto(chatId, photo.inputFile(), caption));
+                    break;
+                }
+                case ALBUM:
+                    for (int start = 0; start < template.media.size(); start += MAX_GROUP_SIZE) {
+                        List<Media> group = template.media.subList(start, Math.min(template.media.size(), start + MAX_GROUP_SIZE));
+                        sendAlbum(chatId, group, start == 0 ? caption : null);
+                    }
+                    break;
+                case VIDEO:
+                    for (Media video : template.media) {
+                        video.remember(bot.sendVideo(chatId, video.inputFile(), caption, video.videoInfo));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException(template.kind.name());
+            }
+            batch.sent.incrementAndGet();
+        } catch (RuntimeException e) {
+            batch.failed(recipientId, e);
+            log.warn("event=template_send_failed batch={} chat_id={} error=\"{}\"", batch.id, recipientId, e.getMessage());
+        } finally {
+            finish(template, batch);
+        }
+    }
+
+    private void finish(CompiledTemplate template, Batch batch) {
+        if (!batch.finishOne()) {
+            return;
+        }
+        if (batch.getUnsent() > 0) {
+            log.warn("event=template_batch_interrupted batch={} template={} sent={} failed={} unsent={}",
+                    batch.id, batch.templateId, batch.getSent(), batch.getFailed(), batch.getUnsent());
+        }
+        releaseTemplate(template);
+    }
+
+    /**
+     * 批次结束，最后一个使用模板的批次负责删除不再需要的临时文件
+     */
+    private void releaseTemplate(CompiledTemplate template) {
+        if (template.release()) {
+            template.media.forEach(Media::releaseUpload);
+        }
+    }
+
+    private void sendAlbum(Long chatId, List<Media> group, String caption) {
+        if (group.size() == 1) {
+            // 图片数量除以10余1时，最后一张单独发送
+            Media photo = group.get(0);
+            photo.remember(bot.sendPhoto(chatId, photo.inputFile(), caption));
+            return;
+        }
+        List<InputMedia> medias = new ArrayList<>(group.size());
+        for (Media photo : group) {
+            medias.add(photo.inputMedia());
+        }
+        if (caption != null && !caption.isEmpty()) {
+            medias.get(0).setCaption(caption);
+        }
+        List<Message> messages = bot.sendMediaGroup(chatId, medias);
+        for (int i = 0; i < Math.min(group.size(), messages.size()); i++) {
+            group.get(i).remember(messages.get(i));
+        }
+    }
+
+    private void addBatch(Batch batch) {
+        synchronized (batches) {
+            batches.put(batch.id, batch);
+            Iterator<Batch> it = batches.values().iterator();
+            while (batches.size() > maxBatches && it.hasNext()) {
+                if (it.next().isDone()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 模板中的一个图片或视频
+     */
+    static final class Media {
+        final boolean video;
+        final String url;
+        final VideoInfo videoInfo;
+        /** 待上传的临时文件，取得 file_id 后删除 */
+        private volatile File file;
+        private volatile String fileId;
+
+        Media(boolean video, File file, String url, VideoInfo videoInfo) {
+            this.video = video;
+            this.file = file;
+            this.url = url;
+            this.videoInfo = videoInfo;
+        }
+
+        InputFile inputFile() {
+            String id = fileId;
+            if (id != null) {
+                return new InputFile(id);
+            }
+            File local = file;
+            return local != null ? new InputFile(local, local.getName()) : new InputFile(url);
+        }
+
+        InputMedia inputMedia() {
+            InputMediaPhoto media = new InputMediaPhoto();
+            String id = fileId;
+            File local = file;
+            if (id != null) {
+                media.setMedia(id);
+            } else if (local != null) {
+                media.setMedia(local, local.getName());
+            } else {
+                media.setMedia(url);
+            }
+            return media;
+        }
+
+        /**
+         * 从发送结果中记下 file_id
+         */
+        void remember(Message message) {
+            if (fileId != null || message == null) {
+                return;
+            }
+            if (video && message.getVideo() != null) {
+                fileId = message.getVideo().getFileId();
+            } else if (!video && message.hasPhoto()) {
+                List<PhotoSize> sizes = message.getPhoto();
+                fileId = sizes.get(sizes.size() - 1).getFileId();
+            }
+        }
+
+        boolean hasFileId() {
+            return fileId != null;
+        }
+
+        void releaseUpload() {
+            File local = file;
+            if (local != null) {
+                file = null;
+                local.delete();
+            }
+        }
+    }
+
+    /**
+     * 编译后的模板
+     */
+    public static final class CompiledTemplate {
+        private final String id;
+        private final Kind kind;
+        private final TemplateText text;
+        private final List<Media> media;
+
+        /** 正在发送的批次数，由 this 保护 */
+        private int activeBatches;
+        private boolean removed;
+
+        CompiledTemplate(String id, Kind kind, TemplateText text, List<Media> media) {
+            this.id = id;
+            this.kind = kind;
+            this.text = text;
+            this.media = media;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public Set<String> getVariables() {
+            return text.getVariables();
+        }
+
+        public int getMediaCount() {
+            return media.size();
+        }
+
+        /**
+         * 登记一个使用模板的批次
+         *
+         * @return 模板已删除时返回 false
+         */
+        synchronized boolean acquire() {
+            if (removed) {
+                return false;
+            }
+            activeBatches++;
+            return true;
+        }
+
+        /**
+         * 批次结束
+         *
+         * @return 是否可以删除临时文件：没有其他批次在使用，且媒体都已取得 file_id 或模板已删除
+         */
+        synchronized boolean release() {
+            return --activeBatches == 0 && (removed || isPrimed());
+        }
+
+        /**
+         * 标记为已删除
+         *
+         * @return 没有批次在使用、可以立即删除临时文件时返回 true
+         */
+        synchronized boolean markRemoved() {
+            removed = true;
+            return activeBatches == 0;
+        }
+
+        /** 所有媒体是否都已取得 file_id */
+        public boolean isPrimed() {
+            for (Media item : media) {
+                if (!item.hasFileId()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 一次按收件人列表的发送
+     */
+    public static final class Batch {
+        private final String id;
+        private final String templateId;
+        private final int total;
+        private final long createdAt = System.currentTimeMillis();
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger unsent = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+        private final Map<String, String> errors = new ConcurrentHashMap<>();
+
+        Batch(String id, String templateId, int total) {
+            this.id = id;
+            this.templateId = templateId;
+            this.total = total;
+        }
+
+        void failed(String chatId, Exception e) {
+            failed.incrementAndGet();
+            if (errors.size() < MAX_RECORDED_ERRORS) {
+                errors.put(chatId, String.valueOf(e.getMessage()));
+            }
+        }
+
+        /**
+         * @return 是否为最后一个收件人
+         */
+        boolean finishOne() {
+            return finished.incrementAndGet() == total;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTemplateId() {
+            return templateId;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getSent() {
+            return sent.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        /** 因停止服务而未发送的收件人数 */
+        public int getUnsent() {
+            return unsent.get();
+        }
+
+        public boolean isDone() {
+            return finished.get() >= total;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /** 部分失败明细，key 为请求中的聊天ID或 @用户名 */
+        public Map<String, String> getErrors() {
+            return errors;
+        }
+    }
+}
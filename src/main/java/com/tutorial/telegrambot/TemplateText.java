@@ -0,0 +1,115 @@
+package com.tutorial.telegrambot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的文本模板：固定文字和变量交替排列的片段列表
+ *
+ * 变量写作 {@code {name}}，可带默认值 {@code {name|朋友}}；<code>{{</code> 和 <code>}}</code> 表示字面的花括号。
+ * 编译只进行一次，渲染时按片段拼接，只分配一个长度合适的 StringBuilder。
+ */
+public final class TemplateText {
+
+    /** 固定文字，比变量多一个：literals[0] var[0] literals[1] ... var[n-1] literals[n] */
+    private final String[] literals;
+    private final String[] variables;
+    private final String[] defaults;
+    private final int literalLength;
+
+    private TemplateText(String[] literals, String[] variables, String[] defaults) {
+        this.literals = literals;
+        this.variables = variables;
+        this.defaults = defaults;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 解析模板文字
+     *
+     * @throws IllegalArgumentException 变量没有闭合或变量名为空
+     */
+    public static TemplateText compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        List<String> defaults = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '{' && i + 1 < length && text.charAt(i + 1) == '{') {
+                literal.append('{');
+                i++;
+            } else if (c == '}' && i + 1 < length && text.charAt(i + 1) == '}') {
+                literal.append('}');
+                i++;
+            } else if (c == '{') {
+                int end = text.indexOf('}', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("模板变量没有闭合，位置 " + i);
+                }
+                String body = text.substring(i + 1, end);
+                int bar = body.indexOf('|');
+                String name = (bar < 0 ? body : body.substring(0, bar)).trim();
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("模板变量名为空，位置 " + i);
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                variables.add(name);
+                defaults.add(bar < 0 ? "" : body.substring(bar + 1));
+                i = end;
+            } else {
+                literal.append(c);
+            }
+        }
+        literals.add(literal.toString());
+        return new TemplateText(literals.toArray(new String[0]), variables.toArray(new String[0]),
+                defaults.toArray(new String[0]));
+    }
+
+    /**
+     * 代入变量；缺少的变量使用默认值，没有默认值时为空
+     */
+    public String render(Map<String, String> values) {
+        if (variables.length == 0) {
+            return literals[0];
+        }
+        // 先算出总长度，只分配一次缓冲区
+        int length = literalLength;
+        for (int i = 0; i < variables.length; i++) {
+            length += valueOf(values, i).length();
+        }
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < variables.length; i++) {
+            out.append(literals[i]).append(valueOf(values, i));
+        }
+        return out.append(literals[variables.length]).toString();
+    }
+
+    private String valueOf(Map<String, String> values, int index) {
+        String value = values != null ? values.get(variables[index]) : null;
+        return value != null ? value : defaults[index];
+    }
+
+    /**
+     * 模板中出现的变量名，按首次出现的顺序
+     */
+    public Set<String> getVariables() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, variables);
+        return names;
+    }
+
+    public boolean isEmpty() {
+        return variables.length == 0 && literals[0].isEmpty();
+    }
+}
@@ -0,0 +1,163 @@
+package com.tutorial.telegrambot;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 富文本中多个视频的流水线发送
+ *
+ * 后续视频的解码、写临时文件和元数据解析在线程池中提前进行，当前视频上传的同时准备下一个；
+ * 上传仍按原始顺序逐个进行，保证消息在聊天中的顺序与富文本一致。
+ */
+@Component
+public class VideoDeliveryPipeline {
+
+    private final BotService botService;
+    private final ExecutorService prepareExecutor;
+    private final int prefetch;
+
+    public VideoDeliveryPipeline(BotService botService,
+                                 @Qualifier("videoPrepareExecutor") ExecutorService prepareExecutor,
+                                 @Value("${bot.video.prefetch:2}") int prefetch) {
+        this.botService = botService;
+        this.prepareExecutor = prepareExecutor;
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    /**
+     * 预处理后的视频：Data URL 已落盘为临时文件，外部URL原样保留
+     */
+    static final class PreparedVideo {
+        final File file;
+        final String url;
+        final VideoInfo info;
+        final long decodeNanos;
+        final long spoolNanos;
+        final long probeNanos;
+
+        PreparedVideo(File file, String url, VideoInfo info, long decodeNanos, long spoolNanos, long probeNanos) {
+            this.file = file;
+            this.url = url;
+            this.info = info;
+            this.decodeNanos = decodeNanos;
+            this.spoolNanos = spoolNanos;
+            this.probeNanos = probeNanos;
+        }
+    }
+
+    /**
+     * 视频预处理失败
+     */
+    public static class VideoPrepareException extends Exception {
+        public VideoPrepareException(Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 按顺序发送所有视频，每个视频附带相同的说明文字
+     *
+     * @return 发送成功的视频数量
+     * @throws VideoPrepareException 某个视频Data URL处理失败，之前的视频已发送，之后的不再发送
+     */
+    public int deliver(Long chatId, List<String> videoUrls, String caption) throws VideoPrepareException {
+        // 已落盘但还没有上传完的临时文件；结束后由预处理线程或当前线程删除，取消时正在写入的文件也不会遗留
+        Set<File> spooled = ConcurrentHashMap.newKeySet();
+        AtomicBoolean finished = new AtomicBoolean();
+        List<Future<PreparedVideo>> pending = new ArrayList<>(videoUrls.size());
+        for (int i = 0; i < Math.min(prefetch, videoUrls.size()); i++) {
+            pending.add(submit(videoUrls.get(i), spooled, finished));
+        }
+
+        int sent = 0;
+        try {
+            for (int i = 0; i < videoUrls.size(); i++) {
+                PreparedVideo video = await(pending.get(i));
+                // 当前视频上传前，提交后续视频的预处理
+                int next = i + prefetch;
+                if (next < videoUrls.size()) {
+                    pending.add(submit(videoUrls.get(next), spooled, finished));
+                }
+                try {
+                    if (video.file != null) {
+                        botService.sendVideoWithCaption(chatId, video.file.getAbsolutePath(), caption, video.info);
+                    } else {
+                        botService.sendVideoWithCaptionByUrl(chatId, video.url, caption);
+                    }
+                    sent++;
+                } finally {
+                    if (video.file != null) {
+                        video.file.delete();
+                        spooled.remove(video.file);
+                    }
+                }
+            }
+        } finally {
+            // 出错时取消尚未完成的预处理，并清理已经落盘的文件
+            finished.set(true);
+            for (int i = sent + 1; i < pending.size(); i++) {
+                pending.get(i).cancel(true);
+            }
+            for (File file : spooled) {
+                file.delete();
+            }
+        }
+        return sent;
+    }
+
+    private Future<PreparedVideo> submit(String videoUrl, Set<File> spooled, AtomicBoolean finished) {
+        return prepareExecutor.submit(() -> prepare(videoUrl, spooled, finished));
+    }
+
+    private static PreparedVideo prepare(String videoUrl, Set<File> spooled, AtomicBoolean finished) throws Exception {
+        if (!videoUrl.startsWith("data:video/")) {
+            return new PreparedVideo(null, videoUrl, null, 0L, 0L, 0L);
+        }
+        // 在工作线程上单独计时，完成后再并入请求线程的统计
+        RequestTiming timing = RequestTiming.begin();
+        try {
+            File file = DataUrlUtils.saveVideoDataUrlAsTempFile(videoUrl);
+            spooled.add(file);
+            if (finished.get()) {
+                // 发送已经结束（出错），结果不会再被取走
+                file.delete();
+                spooled.remove(file);
+                throw new CancellationException();
+            }
+            VideoInfo info = MediaProbe.probe(file);
+            return new PreparedVideo(file, videoUrl, info, timing.getNanos(RequestTiming.Phase.DECODE),
+                    timing.getNanos(RequestTiming.Phase.SPOOL), timing.getNanos(RequestTiming.Phase.PROBE));
+        } finally {
+            RequestTiming.end();
+        }
+    }
+
+    private static PreparedVideo await(Future<PreparedVideo> future) throws VideoPrepareException {
+        try {
+            PreparedVideo video = future.get();
+            if (video.file != null) {
+                RequestTiming.add(RequestTiming.Phase.DECODE, video.decodeNanos);
+                RequestTiming.add(RequestTiming.Phase.SPOOL, video.spoolNanos);
+                RequestTiming.add(RequestTiming.Phase.PROBE, video.probeNanos);
+            }
+            return video;
+        } catch (ExecutionException e) {
+            throw new VideoPrepareException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VideoPrepareException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.tutorial.telegrambot;
+
+/**
+ * 从视频容器头部读取的元数据，未知字段为0或null
+ */
+public class VideoInfo {
+
+    public static final VideoInfo UNKNOWN = new VideoInfo(0, 0, 0, false, null);
+
+    private final int width;
+    private final int height;
+    private final int durationSeconds;
+    private final boolean supportsStreaming;
+    private final byte[] thumbnailJpeg;
+
+    public VideoInfo(int width, int height, int durationSeconds, boolean supportsStreaming, byte[] thumbnailJpeg) {
+        this.width = width;
+        this.height = height;
+        this.durationSeconds = durationSeconds;
+        this.supportsStreaming = supportsStreaming;
+        this.thumbnailJpeg = thumbnailJpeg;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public boolean isSupportsStreaming() {
+        return supportsStreaming;
+    }
+
+    /**
+     * 缩略图（JPEG，不超过320x320），没有时为null
+     */
+    public byte[] getThumbnailJpeg() {
+        return thumbnailJpeg;
+    }
+}
@@ -1,18 +1,28 @@
 package com.tutorial.telegrambot;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import com.tutorial.telegrambot.HtmlUtils;
@@ -21,9 +31,35 @@ import com.tutorial.telegrambot.DataUrlUtils;
 @Controller
 public class WebController {
 
+    private static final Logger log = LoggerFactory.getLogger(WebController.class);
+
     @Autowired
     private BotService botService;
 
+    @Autowired
+    private VideoDeliveryPipeline videoDeliveryPipeline;
+
+    @Autowired
+    private MediaProbeService mediaProbeService;
+
+    @Autowired
+    private MediaCatalog mediaCatalog;
+
+    @Autowired
+    private FolderPushService folderPushService;
+
+    @Autowired
+    private TemplateService templateService;
+
+    @Autowired
+    private RichContentDelivery richContentDelivery;
+
+    @Autowired
+    private ChatDirectory chatDirectory;
+
+    @Autowired
+    private DeliveryJournal deliveryJournal;
+
     private static final String DEFAULT_CHAT_ID = System.getenv("DEFAULT_CHAT_ID") != null ? 
         System.getenv("DEFAULT_CHAT_ID") : "-1002979306798"; // 默认聊天ID
 
@@ -43,7 +79,7 @@ public class WebController {
             
             // 如果没有提供聊天ID，则使用默认ID
             String actualChatId = (chatId == null || chatId.trim().isEmpty()) ? DEFAULT_CHAT_ID : chatId;
-            Long chatIdLong = Long.parseLong(actualChatId);
+            Long chatIdLong = chatDirectory.resolveId(actualChatId);
             String telegramCaption = HtmlUtils.convertForTelegram(caption);
             
             // 检查是否为Data URL
@@ -63,7 +99,7 @@ public class WebController {
             
             return "图片发送成功！";
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("sendPhoto failed: {}", e.getMessage(), e);
             return "发送失败：" + e.getMessage();
         }
     }
@@ -78,7 +114,7 @@ public class WebController {
             
             // 如果没有提供聊天ID，则使用默认ID
             String actualChatId = (chatId == null || chatId.trim().isEmpty()) ? DEFAULT_CHAT_ID : chatId;
-            Long chatIdLong = Long.parseLong(actualChatId);
+            Long chatIdLong = chatDirectory.resolveId(actualChatId);
             // 转换HTML内容为Telegram兼容格式
             String telegramCaption = HtmlUtils.convertForTelegram(caption);
             botService.sendPhotoWithCaptionByUrl(chatIdLong, imageUrl, telegramCaption);
@@ -97,7 +133,7 @@ public class WebController {
             
             // 如果没有提供聊天ID，则使用默认ID
             String actualChatId = (chatId == null || chatId.trim().isEmpty()) ? DEFAULT_CHAT_ID : chatId;
-            Long chatIdLong = Long.parseLong(actualChatId);
+            Long chatIdLong = chatDirectory.resolveId(actualChatId);
             
             // 提取富文本中的图片URL
             List<String> imageUrls = HtmlUtils.extractImageUrls(caption);
@@ -109,32 +145,14 @@ public class WebController {
                 // 如果富文本中包含视频，优先发送视频
                 String textWithoutVideos = HtmlUtils.convertForTelegram(caption);
                             
-                // 发送所有视频
-                for (String videoUrl : videoUrls) {
-                    if (videoUrl.startsWith("data:video/")) {
-                        // 如果是视频Data URL，保存为临时文件后发送
-                        try {
-                            // 首先验证Data URL格式
-                            if (!videoUrl.matches("^data:video/[a-zA-Z0-9\\-+/]+;base64,[a-zA-Z0-9+/=]+$")) {
-                                // 尝试修复格式
-                                videoUrl = videoUrl.replaceAll("[^a-zA-Z0-9+/=;,:\\-]", "");
-                                if (!videoUrl.matches("^data:video/[a-zA-Z0-9\\-+/]+;base64,[a-zA-Z0-9+/=]+$")) {
-                                    throw new IllegalArgumentException("Invalid video Data URL format");
-                                }
-                            }
-                                        
-                            File tempVideoFile = DataUrlUtils.saveVideoDataUrlAsTempFile(videoUrl);
-                            botService.sendVideoWithCaption(chatIdLong, tempVideoFile.getAbsolutePath(), textWithoutVideos);
-                        } catch (Exception e) {
-                            // 如果处理视频数据失败，尝试作为普通文本发送
-                            String telegramCaption = HtmlUtils.convertForTelegram(caption);
-                            botService.sendText(chatIdLong, telegramCaption);
-                            return "视频数据处理失败，已发送文本内容：" + e.getMessage();
-                        }
-                    } else {
-                        // 如果是外部视频URL
-                        botService.sendVideoWithCaptionByUrl(chatIdLong, videoUrl, textWithoutVideos);
-                    }
+                // 按顺序发送所有视频，后续视频的解码与当前视频的上传并行进行
+                try {
+                    videoDeliveryPipeline.deliver(chatIdLong, videoUrls, textWithoutVideos);
+                } catch (VideoDeliveryPipeline.VideoPrepareException e) {
+                    // 如果处理视频数据失败，尝试作为普通文本发送
+                    String telegramCaption = HtmlUtils.convertForTelegram(caption);
+                    botService.sendText(chatIdLong, telegramCaption);
+                    return "视频数据处理失败，已发送文本内容：" + e.getMessage();
                 }
                 return "富文本中的视频及文字发送成功！共发送 " + videoUrls.size() + " 个视频";
             } else if (!imageUrls.isEmpty()) {
@@ -235,6 +253,28 @@ public class WebController {
         }
     }
     
+    /**
+     * 与 /sendTextOnly 相同的富文本发送，媒体以二进制部件上传
+     *
+     * 表单字段：chatId、caption（HTML）；HTML 中的 {@code <img src="cid:photo1">} 和 {@code <video src="cid:clip">}
+     * 引用同名的文件部件。
+     */
+    @PostMapping(value = "/sendRichContent", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseBody
+    public String sendRichContent(
+            @RequestParam(value = "chatId", required = false) String chatId,
+            @RequestParam("caption") String caption,
+            MultipartHttpServletRequest request) {
+        try {
+            String actualChatId = (chatId == null || chatId.trim().isEmpty()) ? DEFAULT_CHAT_ID : chatId;
+            Long chatIdLong = chatDirectory.resolveId(actualChatId);
+            return richContentDelivery.deliver(chatIdLong, caption, request.getFileMap());
+        } catch (Exception e) {
+            log.warn("sendRichContent failed: {}", e.getMessage(), e);
+            return "发送失败：" + e.getMessage();
+        }
+    }
+
     @PostMapping(value = "/sendGridContent", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @ResponseBody
     public String sendGridContent(
@@ -245,17 +285,18 @@ public class WebController {
         try {
             // 如果没有提供聊天ID，则使用默认ID
             String actualChatId = (chatId == null || chatId.trim().isEmpty()) ? DEFAULT_CHAT_ID : chatId;
-            Long chatIdLong = Long.parseLong(actualChatId);
+            Long chatIdLong = chatDirectory.resolveId(actualChatId);
             
             // 首先发送视频（如果有）
             if (video != null && !video.isEmpty()) {
                 // 保存视频到临时文件
-                File tempVideoFile = File.createTempFile("temp_video_", "." + getFileExtension(video.getOriginalFilename()));
-                tempVideoFile.deleteOnExit();
-                video.transferTo(tempVideoFile);
+                File tempVideoFile = spoolToTempFile(video, "temp_video_");
+                // 解析视频元数据，与说明文字的转换并行进行
+                CompletableFuture<MediaProbeService.Probed> videoInfo = mediaProbeService.probeAsync(tempVideoFile);
+                String videoCaption = HtmlUtils.convertForTelegram(caption);
                 
                 // 发送视频 - 使用绝对路径（本地文件）
-                botService.sendVideoWithCaption(chatIdLong, tempVideoFile.getAbsolutePath(), HtmlUtils.convertForTelegram(caption));
+                botService.sendVideoWithCaption(chatIdLong, tempVideoFile.getAbsolutePath(), videoCaption, MediaProbeService.await(videoInfo));
             }
             
             // 如果有图片，发送图片（作为媒体组）
@@ -267,9 +308,7 @@ public class WebController {
                     MultipartFile image = images.get(i);
                     if (!image.isEmpty()) {
                         // 保存图片到临时文件
-                        File tempImageFile = File.createTempFile("temp_image_", "." + getFileExtension(image.getOriginalFilename()));
-                        tempImageFile.deleteOnExit();
-                        image.transferTo(tempImageFile);
+                        File tempImageFile = spoolToTempFile(image, "temp_image_");
                         
                         // 添加图片路径 - 使用绝对路径（本地文件）
                         imagePaths.add(tempImageFile.getAbsolutePath());
@@ -307,6 +346,19 @@ public class WebController {
         }
     }
     
+    // 辅助方法：将上传的文件保存到临时文件
+    private File spoolToTempFile(MultipartFile file, String prefix) throws java.io.IOException {
+        long start = RequestTiming.start();
+        try {
+            File tempFile = File.createTempFile(prefix, "." + getFileExtension(file.getOriginalFilename()));
+            tempFile.deleteOnExit();
+            file.transferTo(tempFile);
+            return tempFile;
+        } finally {
+            RequestTiming.stop(RequestTiming.Phase.SPOOL, start);
+        }
+    }
+    
     // 辅助方法：获取文件扩展名
     private String getFileExtension(String fileName) {
         if (fileName != null && fileName.contains(".")) {
@@ -318,28 +370,224 @@ public class WebController {
     @PostMapping("/api/getFolderFiles")
     @ResponseBody
     public List<String> getFolderFiles(@RequestParam String folderPath) {
-        List<String> files = new ArrayList<>();
         try {
-            File folder = new File(folderPath);
-            if (folder.exists() && folder.isDirectory()) {
-                File[] fileList = folder.listFiles((dir, name) -> {
-                    String lowerName = name.toLowerCase();
-                    return lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg") || 
-                           lowerName.endsWith(".png") || lowerName.endsWith(".gif") || 
-                           lowerName.endsWith(".bmp") || lowerName.endsWith(".webp");
-                });
-                
-                if (fileList != null) {
-                    for (File file : fileList) {
-                        if (file.isFile()) {
-                            files.add(file.getName());
-                        }
-                    }
-                }
-            }
+            return mediaCatalog.names(folderPath);
+        } catch (Exception e) {
+            log.warn("getFolderFiles failed for {}: {}", folderPath, e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 分页列出文件夹内的图片，支持排序、按文件名和扩展名过滤，以及 If-None-Match 条件请求
+     *
+     * @param sort  name、modified 或 size
+     * @param order asc 或 desc
+     * @param q     文件名包含的文字
+     * @param type  扩展名，例如 jpg
+     */
+    @GetMapping("/api/catalog")
+    @ResponseBody
+    public ResponseEntity<MediaCatalog.Page> listCatalog(@RequestParam String folderPath,
+                                                         @RequestParam(defaultValue = "0") int page,
+                                                         @RequestParam(defaultValue = "100") int size,
+                                                         @RequestParam(defaultValue = "name") String sort,
+                                                         @RequestParam(defaultValue = "asc") String order,
+                                                         @RequestParam(required = false) String q,
+                                                         @RequestParam(required = false) String type,
+                                                         WebRequest webRequest) {
+        MediaCatalog.Sort sortBy;
+        try {
+            sortBy = MediaCatalog.Sort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        String etag = mediaCatalog.etag(folderPath);
+        if (etag == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        MediaCatalog.Page result = mediaCatalog.list(folderPath, page, Math.min(size, 1000), sortBy,
+                "desc".equalsIgnoreCase(order), q, type);
+        return ResponseEntity.ok().eTag(result.etag()).body(result);
+    }
+
+    /**
+     * 查询聊天信息（类型、慢速模式、默认权限），chatId 可以是数字 ID 或 @用户名
+     */
+    @GetMapping("/api/chats/{chatId}")
+    @ResponseBody
+    public ResponseEntity<?> getChat(@PathVariable String chatId) {
+        try {
+            return ResponseEntity.ok(chatDirectory.get(chatId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(502).body(e.getMessage());
+        }
+    }
+
+    /**
+     * 查询发送记录，按时间从新到旧返回
+     *
+     * 参数：chatId（数字 ID 或 @用户名）、from / to（毫秒时间戳）、digest（文字摘要，见 {@link DeliveryJournal#digestOf(String)}）、
+     * limit（默认 100，最多 1000），均可省略
+     */
+    @GetMapping("/api/deliveries")
+    @ResponseBody
+    public ResponseEntity<?> listDeliveries(@RequestParam(value = "chatId", required = false) String chatId,
+                                            @RequestParam(value = "from", required = false) Long from,
+                                            @RequestParam(value = "to", required = false) Long to,
+                                            @RequestParam(value = "digest", required = false) String digest,
+                                            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        try {
+            Long chat = chatId == null || chatId.isBlank() ? null : chatDirectory.resolveId(chatId);
+            return ResponseEntity.ok(deliveryJournal.query(chat, from, to, digest, Math.min(limit, 1000)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (java.io.IOException e) {
+            log.error("event=delivery_query_failed error=\"{}\"", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("查询失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 创建文件夹推送任务：把文件夹内的图片按媒体组发送到指定聊天
+     *
+     * 请求体：folderPath（必填）、chatId、caption（HTML，可选）
+     */
+    @PostMapping("/api/pushFolder")
+    @ResponseBody
+    public ResponseEntity<?> pushFolder(@RequestBody Map<String, String> requestData) {
+        String folderPath = requestData.get("folderPath");
+        String chatIdStr = requestData.getOrDefault("chatId", DEFAULT_CHAT_ID);
+        if (folderPath == null || folderPath.isBlank()) {
+            return ResponseEntity.badRequest().body("文件夹路径不能为空");
+        }
+        try {
+            Long chatId = chatDirectory.resolveId(chatIdStr);
+            return ResponseEntity.ok(folderPushService.start(folderPath, chatId, requestData.get("caption")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/pushFolder")
+    @ResponseBody
+    public Collection<FolderPushService.Job> listPushJobs() {
+        return folderPushService.list();
+    }
+
+    @GetMapping("/api/pushFolder/{id}")
+    @ResponseBody
+    public ResponseEntity<FolderPushService.Job> getPushJob(@PathVariable String id) {
+        FolderPushService.Job job = folderPushService.get(id);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/api/pushFolder/{id}/cancel")
+    @ResponseBody
+    public ResponseEntity<FolderPushService.Job> cancelPushJob(@PathVariable String id) {
+        FolderPushService.Job job = folderPushService.cancel(id);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 从上次发送成功的位置继续中断、失败或取消的任务
+     */
+    @PostMapping("/api/pushFolder/{id}/resume")
+    @ResponseBody
+    public ResponseEntity<FolderPushService.Job> resumePushJob(@PathVariable String id) {
+        FolderPushService.Job job = folderPushService.resume(id);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 编译消息模板：文字中的 {name} 或 {name|默认值} 在发送时按收件人替换
+     *
+     * 请求体：html（必填，与 /sendTextOnly 的内容格式相同）
+     */
+    @PostMapping("/api/templates")
+    @ResponseBody
+    public ResponseEntity<?> createTemplate(@RequestBody Map<String, String> requestData) {
+        String html = requestData.get("html");
+        if (html == null || html.isBlank()) {
+            return ResponseEntity.badRequest().body("模板内容不能为空");
+        }
+        try {
+            return ResponseEntity.ok(templateService.compile(html));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("event=template_compile_failed error=\"{}\"", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("模板编译失败: " + e.getMessage());
         }
-        return files;
+    }
+
+    @GetMapping("/api/templates/{id}")
+    @ResponseBody
+    public ResponseEntity<TemplateService.CompiledTemplate> getTemplate(@PathVariable String id) {
+        TemplateService.CompiledTemplate template = templateService.get(id);
+        return template != null ? ResponseEntity.ok(template) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/api/templates/{id}")
+    @ResponseBody
+    public ResponseEntity<Void> deleteTemplate(@PathVariable String id) {
+        return templateService.remove(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 按收件人发送模板
+     *
+     * 请求体：recipients，每项为 {chatId, variables: {name: value}}；chatId 可以是数字 ID 或 @用户名，
+     * 在发送线程中解析，无法解析的收件人记为该批次的失败，不影响其他收件人。
+     * 同一个收件人出现多次（@用户名不区分大小写）时返回 400，而不是只保留其中一项
+     */
+    @PostMapping("/api/templates/{id}/send")
+    @ResponseBody
+    public ResponseEntity<?> sendTemplate(@PathVariable String id, @RequestBody Map<String, Object> requestData) {
+        if (!(requestData.get("recipients") instanceof List<?> list) || list.isEmpty()) {
+            return ResponseEntity.badRequest().body("收件人不能为空");
+        }
+        Map<String, Map<String, String>> recipients = new LinkedHashMap<>();
+        Set<String> keys = new HashSet<>();
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?> recipient) || recipient.get("chatId") == null
+                    || String.valueOf(recipient.get("chatId")).isBlank()) {
+                return ResponseEntity.badRequest().body("收件人缺少 chatId");
+            }
+            Map<String, String> variables = new LinkedHashMap<>();
+            if (recipient.get("variables") instanceof Map<?, ?> values) {
+                values.forEach((key, value) -> variables.put(String.valueOf(key), value == null ? null : String.valueOf(value)));
+            }
+            String chatId = String.valueOf(recipient.get("chatId")).trim();
+            if (!keys.add(recipientKey(chatId))) {
+                return ResponseEntity.badRequest().body("收件人重复: " + chatId);
+            }
+            recipients.put(chatId, variables);
+        }
+        TemplateService.Batch batch = templateService.send(id, recipients);
+        return batch != null ? ResponseEntity.ok(batch) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 判断收件人是否重复时使用的键；格式无效的 chatId 原样使用，发送时再记为失败
+     */
+    private static String recipientKey(String chatId) {
+        try {
+            return ChatDirectory.normalize(chatId);
+        } catch (IllegalArgumentException e) {
+            return chatId;
+        }
+    }
+
+    @GetMapping("/api/templates/batches/{id}")
+    @ResponseBody
+    public ResponseEntity<TemplateService.Batch> getTemplateBatch(@PathVariable String id) {
+        TemplateService.Batch batch = templateService.getBatch(id);
+        return batch != null ? ResponseEntity.ok(batch) : ResponseEntity.notFound().build();
     }
 }
\ No newline at end of file
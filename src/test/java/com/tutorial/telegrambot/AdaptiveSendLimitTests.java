@@ -0,0 +1,213 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveSendLimitTests {
+
+	private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private long now = TimeUnit.DAYS.toNanos(1);
+
+	@AfterEach
+	void stop() {
+		executor.shutdownNow();
+	}
+
+	private SendRateLimiter rateLimiter(int globalPerSecond) {
+		ChatDirectory chats = new ChatDirectory(new StaticListableBeanFactory().getBeanProvider(Bot.class), executor,
+				new SimpleMeterRegistry(), 100, 3600, 600);
+		return new SendRateLimiter(new SimpleMeterRegistry(), chats, globalPerSecond, globalPerSecond, 60, 20, 20, true, 3,
+				8, 3, 1, HOUR_MS, HOUR_MS, HOUR_MS, () -> now);
+	}
+
+	/**
+	 * 全局速率上限 30 条/秒，速率下限 2 条/秒，延迟下限 100ms，冷却 1 秒，时钟手动推进
+	 */
+	private AdaptiveSendLimit limit(int initial, int min, int max) {
+		return new AdaptiveSendLimit(rateLimiter(30), new SimpleMeterRegistry(), true, initial, min, max, 2,
+				2.0, 100, 1000, HOUR_MS, HOUR_MS, HOUR_MS, () -> now);
+	}
+
+	@Test
+	void throttleHalvesConcurrencyAndRate() {
+		AdaptiveSendLimit limit = limit(8, 1, 16);
+
+		limit.onThrottled(1);
+
+		assertEquals(4.0, limit.getConcurrencyLimit());
+		assertEquals(15.0, limit.getRateLimit());
+	}
+
+	@Test
+	void decreasesWithinCooldownAreSuppressed() {
+		AdaptiveSendLimit limit = limit(8, 1, 16);
+
+		limit.onThrottled(1);
+		// 同一批并发请求的其他 429
+		now += 999 * MS;
+		limit.onThrottled(1);
+		assertEquals(4.0, limit.getConcurrencyLimit());
+		assertEquals(15.0, limit.getRateLimit());
+
+		now += MS;
+		limit.onThrottled(1);
+		assertEquals(2.0, limit.getConcurrencyLimit());
+		assertEquals(7.5, limit.getRateLimit());
+	}
+
+	@Test
+	void inflatedLatencyDecreasesSlightly() {
+		AdaptiveSendLimit limit = limit(8, 1, 16);
+		for (int i = 0; i < 4; i++) {
+			permit(limit, 80 * MS, 0L);
+		}
+		double concurrency = limit.getConcurrencyLimit();
+		double rate = limit.getRateLimit();
+
+		// 超过基线的 2 倍且高于延迟下限
+		permit(limit, 400 * MS, 0L);
+
+		assertEquals(concurrency * 0.9, limit.getConcurrencyLimit(), 1e-9);
+		assertEquals(rate * 0.9, limit.getRateLimit(), 1e-9);
+	}
+
+	@Test
+	void slowUploadsAndFastCallsDoNotDecrease() {
+		AdaptiveSendLimit limit = limit(8, 1, 16);
+		permit(limit, 10 * MS, 0L);
+
+		double concurrency = limit.getConcurrencyLimit();
+		// 上传的延迟取决于文件大小，不参与判断
+		permit(limit, 5000 * MS, 10L * 1024 * 1024);
+		assertTrue(limit.getConcurrencyLimit() > concurrency);
+
+		concurrency = limit.getConcurrencyLimit();
+		// 超过基线的 2 倍，但低于延迟下限
+		permit(limit, 90 * MS, 0L);
+		assertTrue(limit.getConcurrencyLimit() > concurrency);
+	}
+
+	@Test
+	void limitsStayWithinBounds() {
+		AdaptiveSendLimit limit = limit(4, 2, 6);
+		for (int i = 0; i < 10; i++) {
+			limit.onThrottled(1);
+			now += TimeUnit.SECONDS.toNanos(2);
+		}
+		assertEquals(2.0, limit.getConcurrencyLimit());
+		assertEquals(2.0, limit.getRateLimit());
+
+		for (int i = 0; i < 5000; i++) {
+			permit(limit, 10 * MS, 0L);
+		}
+		assertEquals(6.0, limit.getConcurrencyLimit());
+		assertEquals(30.0, limit.getRateLimit());
+	}
+
+	@Test
+	void failedCallsDoNotAdjust() {
+		AdaptiveSendLimit limit = limit(8, 1, 16);
+
+		limit.release(0L, 0L, false);
+
+		assertEquals(8.0, limit.getConcurrencyLimit());
+		assertEquals(30.0, limit.getRateLimit());
+	}
+
+	@Test
+	void bulkProgressesUnderSustainedInteractiveLoad() throws Exception {
+		// 并发固定为 1，使用真实时钟
+		AdaptiveSendLimit yielding = new AdaptiveSendLimit(rateLimiter(30), new SimpleMeterRegistry(), false, 1, 1, 1, 2,
+				2.0, 100, 1000, HOUR_MS, HOUR_MS, HOUR_MS, System::nanoTime);
+		AdaptiveSendLimit bounded = new AdaptiveSendLimit(rateLimiter(30), new SimpleMeterRegistry(), false, 1, 1, 1, 2,
+				2.0, 100, 1000, HOUR_MS, HOUR_MS, 200, System::nanoTime);
+
+		// 等待上限很长时，持续的 INTERACTIVE 请求使 BULK 一直让出许可
+		try (Load ignored = new Load(yielding)) {
+			Future<?> bulk = executor.submit(() -> permit(yielding, SendPriority.BULK));
+			assertThrows(TimeoutException.class, () -> bulk.get(500, TimeUnit.MILLISECONDS));
+			bulk.cancel(true);
+		}
+
+		try (Load load = new Load(bounded)) {
+			long start = System.nanoTime();
+			Future<?> bulk = executor.submit(() -> permit(bounded, SendPriority.BULK));
+			bulk.get(5, TimeUnit.SECONDS);
+			long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue(load.sent.get() > 0);
+			assertTrue(waitedMillis < 5000, "bulk waited " + waitedMillis + "ms");
+		}
+	}
+
+	private static void permit(AdaptiveSendLimit limit, long latencyNanos, long bytes) {
+		try {
+			limit.acquire(SendPriority.NORMAL);
+		} catch (InterruptedException e) {
+			throw new AssertionError(e);
+		}
+		limit.release(latencyNanos, bytes, true);
+	}
+
+	private static Void permit(AdaptiveSendLimit limit, SendPriority priority) throws InterruptedException {
+		limit.acquire(priority);
+		limit.release(MS, 0L, true);
+		return null;
+	}
+
+	/**
+	 * 三个线程不间断地以 INTERACTIVE 优先级获取许可，每次占用 2ms
+	 */
+	private final class Load implements AutoCloseable {
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicInteger sent = new AtomicInteger();
+		final List<Future<?>> threads = new ArrayList<>();
+
+		Load(AdaptiveSendLimit limit) throws InterruptedException {
+			for (int i = 0; i < 3; i++) {
+				threads.add(executor.submit(() -> {
+					while (running.get()) {
+						limit.acquire(SendPriority.INTERACTIVE);
+						try {
+							Thread.sleep(2);
+						} finally {
+							limit.release(2 * MS, 0L, true);
+						}
+						sent.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+			// 等到负载建立起来
+			while (sent.get() < 10) {
+				Thread.sleep(5);
+			}
+		}
+
+		@Override
+		public void close() throws Exception {
+			running.set(false);
+			for (Future<?> thread : threads) {
+				thread.get(5, TimeUnit.SECONDS);
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+		"bot.token=1:test-token",
+		"bot.session.enabled=false",
+		"bot.journal.dir=target/relay-journal",
+		"bot.rate.global-per-second=100000",
+		"bot.rate.private-per-minute=1000000",
+		"bot.relay.enabled=true",
+		"bot.relay.source-chat-id=-1001000",
+		"bot.relay.target-chat-ids=2001,2002",
+		"bot.relay.album-window-ms=300"
+})
+class ChannelRelayTests {
+
+	private static final long SOURCE = -1001000L;
+
+	static final FakeTelegramServer telegram = FakeTelegramServer.start();
+
+	@DynamicPropertySource
+	static void telegramProperties(DynamicPropertyRegistry registry) {
+		registry.add("bot.api.base-url", telegram::getBaseUrl);
+	}
+
+	@AfterAll
+	static void stopTelegram() {
+		telegram.close();
+	}
+
+	@Autowired
+	ApplicationEventPublisher events;
+
+	@BeforeEach
+	void resetCounters() {
+		telegram.reset();
+		telegram.latency(0, 0);
+	}
+
+	@Test
+	void albumIsCollectedWithinWindowAndSentAsOneGroup() throws Exception {
+		// 相册的消息分别到达，顺序不保证
+		publish(photo(12, "g1"));
+		publish(photo(11, "g1"));
+		assertEquals(0, telegram.getCalls("sendMediaGroup"));
+
+		// 每个目标一个两张图片的媒体组；调用次数在收到请求时计数，消息数在响应前计数
+		await(() -> telegram.getMessages() == 4);
+		assertEquals(2, telegram.getCalls("sendMediaGroup"));
+		assertEquals(0, telegram.getCalls("copyMessage"));
+	}
+
+	@Test
+	void albumWithOtherMediaFallsBackToCopyInOrder() throws Exception {
+		publish(document(22, "g2"));
+		publish(photo(21, "g2"));
+
+		await(() -> telegram.getMessages() == 4);
+		assertEquals(0, telegram.getCalls("sendMediaGroup"));
+		assertEquals(List.of("21", "22"), copied("2001"));
+		assertEquals(List.of("21", "22"), copied("2002"));
+	}
+
+	@Test
+	void postsKeepTheirOrderInEachTarget() throws Exception {
+		telegram.latency(10, 0);
+		List<String> ids = IntStream.rangeClosed(31, 42).mapToObj(String::valueOf).collect(Collectors.toList());
+		for (String id : ids) {
+			publish(post(Integer.parseInt(id)));
+		}
+
+		await(() -> telegram.getMessages() == 2L * ids.size());
+		assertEquals(ids, copied("2001"));
+		assertEquals(ids, copied("2002"));
+	}
+
+	@Test
+	void rejectedLaneHandsQueuedTasksBack() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		List<Runnable> rejected = new CopyOnWriteArrayList<>();
+		List<String> ran = new CopyOnWriteArrayList<>();
+		ChannelRelay.SerialExecutor lane = new ChannelRelay.SerialExecutor(executor, rejected::add);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		lane.execute(() -> {
+			running.countDown();
+			awaitLatch(release);
+			ran.add("first");
+		});
+		Runnable second = () -> ran.add("second");
+		Runnable third = () -> ran.add("third");
+		lane.execute(second);
+		lane.execute(third);
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+
+		// 第一个任务结束后线程池已关闭，排队的任务交还给调用方而不是留在队列中
+		executor.shutdown();
+		release.countDown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(List.of("first"), ran);
+		assertEquals(List.of(second, third), rejected);
+
+		// 队列不会卡在已拒绝的任务上，之后提交的任务同样交还
+		Runnable fourth = () -> ran.add("fourth");
+		lane.execute(fourth);
+		assertEquals(List.of(second, third, fourth), rejected);
+	}
+
+	private void publish(Message post) {
+		events.publishEvent(new ChannelPostEvent(this, post));
+	}
+
+	private static List<String> copied(String target) {
+		return telegram.getRequests("copyMessage").stream()
+				.filter(request -> target.equals(request.chatId))
+				.map(request -> request.messageId)
+				.collect(Collectors.toList());
+	}
+
+	private static Message post(int messageId) {
+		Message post = new Message();
+		post.setMessageId(messageId);
+		post.setChat(new Chat(SOURCE, "channel"));
+		post.setDate((int) (System.currentTimeMillis() / 1000L));
+		post.setText("post " + messageId);
+		return post;
+	}
+
+	private static Message photo(int messageId, String mediaGroupId) {
+		Message post = post(messageId);
+		PhotoSize size = new PhotoSize();
+		size.setFileId("photo-" + messageId);
+		post.setPhoto(List.of(size));
+		post.setMediaGroupId(mediaGroupId);
+		return post;
+	}
+
+	private static Message document(int messageId, String mediaGroupId) {
+		Message post = post(messageId);
+		Document document = new Document();
+		document.setFileId("document-" + messageId);
+		post.setDocument(document);
+		post.setMediaGroupId(mediaGroupId);
+		return post;
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			if (condition.getAsBoolean()) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("condition not met in time");
+	}
+
+	private static void awaitLatch(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DataUrlDecoderTests {
+
+	@Test
+	void decodesSameAsJdkDecoder() throws Exception {
+		Random random = new Random(42);
+		for (int size = 0; size < 200_000; size = size * 2 + 1) {
+			byte[] data = new byte[size + 1];
+			random.nextBytes(data);
+			String dataUrl = "data:video/mp4;base64," + Base64.getEncoder().encodeToString(data);
+
+			DataUrlDecoder.Header header = DataUrlDecoder.parseHeader(dataUrl);
+			assertEquals("video/mp4", header.getMimeType());
+			assertArrayEquals(data, DataUrlDecoder.decodeToBytes(dataUrl, header));
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertEquals(data.length, DataUrlDecoder.decodeTo(dataUrl, header, Channels.newChannel(out)));
+			assertArrayEquals(data, out.toByteArray());
+		}
+	}
+
+	@Test
+	void skipsWhitespaceAndJunkAndAcceptsMissingPadding() {
+		byte[] data = "hello telegram".getBytes();
+		String base64 = Base64.getMimeEncoder(4, "\r\n".getBytes()).encodeToString(data);
+		String dataUrl = "  data:image/png;base64," + base64.replace("=", "") + " \"";
+
+		DataUrlDecoder.Header header = DataUrlDecoder.parseHeader(dataUrl);
+		assertEquals("image/png", header.getMimeType());
+		assertArrayEquals(data, DataUrlDecoder.decodeToBytes(dataUrl, header));
+	}
+
+	@Test
+	void rejectsMalformedInput() {
+		assertThrows(IllegalArgumentException.class, () -> DataUrlDecoder.parseHeader("video/mp4;base64,AAAA"));
+		assertThrows(IllegalArgumentException.class, () -> DataUrlDecoder.parseHeader("data:video/mp4,AAAA"));
+		assertThrows(IllegalArgumentException.class, () -> DataUrlDecoder.parseHeader("data:video<mp4;base64,AAAA"));
+
+		String afterPadding = "data:video/mp4;base64,AA==AAAA";
+		assertThrows(IllegalArgumentException.class,
+				() -> DataUrlDecoder.decodeToBytes(afterPadding, DataUrlDecoder.parseHeader(afterPadding)));
+		String truncated = "data:video/mp4;base64,AAAAA";
+		assertThrows(IllegalArgumentException.class,
+				() -> DataUrlDecoder.decodeToBytes(truncated, DataUrlDecoder.parseHeader(truncated)));
+	}
+}
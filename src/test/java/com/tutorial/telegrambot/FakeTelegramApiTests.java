@@ -0,0 +1,437 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bot.token=1:test-token",
+		"bot.session.enabled=false",
+		"bot.journal.dir=target/fake-api-journal",
+		"bot.ingest.max-inflated-bytes=4194304",
+		"bot.rate.global-per-second=100000",
+		"bot.rate.private-per-minute=1000000",
+		"bot.rate.group-per-minute=1000000"
+})
+class FakeTelegramApiTests {
+
+	static final FakeTelegramServer telegram = FakeTelegramServer.start();
+
+	@DynamicPropertySource
+	static void telegramProperties(DynamicPropertyRegistry registry) {
+		registry.add("bot.api.base-url", telegram::getBaseUrl);
+	}
+
+	@AfterAll
+	static void stopTelegram() {
+		telegram.close();
+	}
+
+	@LocalServerPort
+	int port;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@BeforeEach
+	void resetCounters() {
+		telegram.reset();
+	}
+
+	@Test
+	void sendTextOnlySendsMessageAndReportsServerTiming() throws Exception {
+		HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"1001\",\"caption\":\"<p>hello <b>world</b></p>\"}");
+
+		assertEquals(200, response.statusCode());
+		assertEquals("文本发送成功！", response.body());
+		assertEquals(1, telegram.getCalls("sendMessage"));
+		assertTrue(response.headers().firstValue("Server-Timing").orElse("").contains("api;dur="));
+	}
+
+	@Test
+	void sendTextOnlyUploadsVideoDataUrls() throws Exception {
+		String video = "data:video/mp4;base64," + Base64.getEncoder().encodeToString(new byte[256 * 1024]);
+		String caption = "<p>clip</p><video src=\\\"" + video + "\\\"></video><video src=\\\"" + video + "\\\"></video>";
+		HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"1001\",\"caption\":\"" + caption + "\"}");
+
+		assertTrue(response.body().contains("共发送 2 个视频"), response.body());
+		assertEquals(2, telegram.getCalls("sendVideo"));
+		assertTrue(telegram.getUploadedBytes() > 2 * 256 * 1024);
+	}
+
+	@Test
+	void videosAreUploadedInOriginalOrder() throws Exception {
+		// 第一个视频最大，预处理最慢；后面的视频先准备好也要等前面的上传完
+		int[] sizes = {1024 * 1024, 16 * 1024, 256 * 1024, 64 * 1024};
+		Set<Path> before = tempVideos();
+		HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"1001\",\"caption\":\"" + videos(sizes) + "\"}");
+
+		assertTrue(response.body().contains("共发送 4 个视频"), response.body());
+		List<Long> uploads = telegram.getRequests("sendVideo").stream().map(request -> request.length).toList();
+		assertEquals(sizes.length, uploads.size());
+		for (int i = 0; i < sizes.length; i++) {
+			// 请求体比视频本身多出 multipart 的字段和分隔符
+			assertTrue(uploads.get(i) > sizes[i] && uploads.get(i) < sizes[i] + 8192, "upload " + i + ": " + uploads);
+		}
+		assertNoTempVideosLeft(before);
+	}
+
+	@Test
+	void invalidVideoStopsPipelineAndDeletesTempFiles() throws Exception {
+		String video = "<video src=\\\"data:video/mp4;base64," + Base64.getEncoder().encodeToString(new byte[512 * 1024]) + "\\\"></video>";
+		String invalid = "<video src=\\\"data:video/mp4;base64,@@@@\\\"></video>";
+		Set<Path> before = tempVideos();
+		HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"1001\",\"caption\":\"<p>clip</p>"
+				+ video + invalid + video + video + "\"}");
+
+		assertTrue(response.body().startsWith("视频数据处理失败"), response.body());
+		// 失败之前的视频已发送，之后的不再发送，改为发送文字
+		assertEquals(1, telegram.getCalls("sendVideo"));
+		assertEquals(1, telegram.getCalls("sendMessage"));
+		assertNoTempVideosLeft(before);
+	}
+
+	@Test
+	void failedUploadDeletesPreparedTempFiles() throws Exception {
+		telegram.badRequestAfter("sendVideo", 1);
+		Set<Path> before = tempVideos();
+		HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"1001\",\"caption\":\""
+				+ videos(256 * 1024, 256 * 1024, 256 * 1024, 256 * 1024) + "\"}");
+
+		assertTrue(response.body().startsWith("发送失败"), response.body());
+		assertEquals(2, telegram.getCalls("sendVideo"));
+		assertNoTempVideosLeft(before);
+	}
+
+	private static String videos(int... sizes) {
+		StringBuilder caption = new StringBuilder("<p>clip</p>");
+		for (int size : sizes) {
+			caption.append("<video src=\\\"data:video/mp4;base64,").append(Base64.getEncoder().encodeToString(new byte[size])).append("\\\"></video>");
+		}
+		return caption.toString();
+	}
+
+	private static Set<Path> tempVideos() throws IOException {
+		try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+			return files.filter(file -> file.getFileName().toString().startsWith("temp_video_")).collect(Collectors.toCollection(HashSet::new));
+		}
+	}
+
+	/**
+	 * 被取消的预处理可能在响应返回后才结束，它写出的文件由预处理线程自己删除，这里稍等片刻
+	 */
+	private static void assertNoTempVideosLeft(Set<Path> before) throws Exception {
+		Set<Path> left = new HashSet<>();
+		for (int i = 0; i < 100; i++) {
+			left = tempVideos();
+			left.removeAll(before);
+			if (left.isEmpty()) {
+				return;
+			}
+			Thread.sleep(20);
+		}
+		throw new AssertionError("temp files left: " + left);
+	}
+
+	@Test
+	void sendRichContentUploadsReferencedParts() throws Exception {
+		byte[] image = new byte[64 * 1024];
+		String caption = "<p>album</p><img src=\"cid:a\"><img src=\"cid:b\">";
+		HttpResponse<String> response = postMultipart("/sendRichContent", caption, "a", image, "b", image);
+
+		assertTrue(response.body().contains("共发送 2 张图片"), response.body());
+		assertEquals(1, telegram.getCalls("sendMediaGroup"));
+		assertTrue(telegram.getUploadedBytes() > 2 * image.length);
+	}
+
+	@Test
+	void sendRichContentRejectsMissingPart() throws Exception {
+		HttpResponse<String> response = postMultipart("/sendRichContent", "<img src=\"cid:missing\">", "a", new byte[16]);
+
+		assertTrue(response.body().contains("cid:missing"), response.body());
+		assertEquals(0, telegram.getCalls("sendPhoto"));
+	}
+
+	@Test
+	void sendTextOnlyResolvesUsernameOnce() throws Exception {
+		telegram.chat("fake_news", -1001234567L, "channel", 0);
+
+		for (int i = 0; i < 2; i++) {
+			HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"@fake_news\",\"caption\":\"<p>news</p>\"}");
+			assertEquals("文本发送成功！", response.body());
+		}
+		assertEquals(2, telegram.getCalls("sendMessage"));
+		assertEquals(1, telegram.getCalls("getChat"));
+	}
+
+	@Test
+	void slowModeDoesNotApplyWhenBotIsAdmin() throws Exception {
+		telegram.chat("slow_admin", -1007007L, "supergroup", 30).admin(-1007007L);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 2; i++) {
+			HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"@slow_admin\",\"caption\":\"<p>fast</p>\"}");
+			assertEquals("文本发送成功！", response.body());
+		}
+		// 不是管理员时第二条要等待慢速模式的 30 秒
+		assertTrue(System.nanoTime() - start < java.util.concurrent.TimeUnit.SECONDS.toNanos(10));
+		assertEquals(1, telegram.getCalls("getChatMember"));
+	}
+
+	@Test
+	void sendTextOnlyRejectsUnknownUsername() throws Exception {
+		HttpResponse<String> response = post("/sendTextOnly", "{\"chatId\":\"@missing_chat\",\"caption\":\"<p>hello</p>\"}");
+
+		assertTrue(response.body().contains("chat not found"), response.body());
+		assertEquals(0, telegram.getCalls("sendMessage"));
+	}
+
+	@Test
+	void blockedChatIsRejectedWithoutRequest() throws Exception {
+		telegram.forbid("2002");
+
+		HttpResponse<String> first = post("/sendTextOnly", "{\"chatId\":\"2002\",\"caption\":\"<p>hello</p>\"}");
+		HttpResponse<String> second = post("/sendTextOnly", "{\"chatId\":\"2002\",\"caption\":\"<p>hello</p>\"}");
+
+		assertTrue(first.body().startsWith("发送失败"), first.body());
+		assertTrue(second.body().contains("聊天不可用"), second.body());
+		assertEquals(1, telegram.getCalls("sendMessage"));
+	}
+
+	@Test
+	void missingPermissionFailsOnlyThatSend() throws Exception {
+		telegram.forbid("5005", "Forbidden: not enough rights to send text messages to the chat");
+
+		post("/sendTextOnly", "{\"chatId\":\"5005\",\"caption\":\"<p>hello</p>\"}");
+		post("/sendTextOnly", "{\"chatId\":\"5005\",\"caption\":\"<p>hello</p>\"}");
+
+		assertEquals(2, telegram.getCalls("sendMessage"));
+	}
+
+	@Test
+	void migratedGroupIsSentToNewSupergroup() throws Exception {
+		telegram.migrate("-6006", -1006006L);
+
+		HttpResponse<String> first = post("/sendTextOnly", "{\"chatId\":\"-6006\",\"caption\":\"<p>hello</p>\"}");
+		HttpResponse<String> second = post("/sendTextOnly", "{\"chatId\":\"-6006\",\"caption\":\"<p>hello</p>\"}");
+
+		assertEquals("文本发送成功！", first.body());
+		assertEquals("文本发送成功！", second.body());
+		// 第一次发送得知升级后按新 ID 重发，之后直接发往新 ID
+		assertEquals(3, telegram.getCalls("sendMessage"));
+	}
+
+	@Test
+	void sentMessagesAreJournaled() throws Exception {
+		long start = System.currentTimeMillis();
+		post("/sendTextOnly", "{\"chatId\":\"3003\",\"caption\":\"<p>journal</p>\"}");
+
+		String body = "[]";
+		for (int i = 0; i < 50 && body.equals("[]"); i++) {
+			Thread.sleep(50);
+			body = get("/api/deliveries?chatId=3003&from=" + start).body();
+		}
+		assertTrue(body.contains("\"chatId\":3003"), body);
+		assertTrue(body.contains("\"method\":\"sendMessage\""), body);
+	}
+
+	@Test
+	void templateBatchRecordsUnresolvableRecipients() throws Exception {
+		telegram.forbid("4004");
+		String template = post("/api/templates", "{\"html\":\"<p>hi {name}</p>\"}").body();
+		String templateId = jsonString(template, "id");
+
+		HttpResponse<String> response = post("/api/templates/" + templateId + "/send", "{\"recipients\":["
+				+ "{\"chatId\":\"1001\",\"variables\":{\"name\":\"a\"}},"
+				+ "{\"chatId\":\"@missing_chat\"},"
+				+ "{\"chatId\":\"4004\"}]}");
+		assertEquals(200, response.statusCode(), response.body());
+
+		String batch = response.body();
+		for (int i = 0; i < 50 && !batch.contains("\"done\":true"); i++) {
+			Thread.sleep(50);
+			batch = get("/api/templates/batches/" + jsonString(response.body(), "id")).body();
+		}
+		assertTrue(batch.contains("\"done\":true"), batch);
+		assertTrue(batch.contains("\"sent\":1"), batch);
+		assertTrue(batch.contains("\"failed\":2"), batch);
+		assertTrue(batch.contains("@missing_chat"), batch);
+	}
+
+	@Test
+	void templateSendRejectsDuplicateRecipients() throws Exception {
+		String templateId = jsonString(post("/api/templates", "{\"html\":\"<p>hi {name}</p>\"}").body(), "id");
+
+		HttpResponse<String> sameUsername = post("/api/templates/" + templateId + "/send", "{\"recipients\":["
+				+ "{\"chatId\":\"@Fake_News\",\"variables\":{\"name\":\"a\"}},"
+				+ "{\"chatId\":\"@fake_news\",\"variables\":{\"name\":\"b\"}}]}");
+		HttpResponse<String> sameId = post("/api/templates/" + templateId + "/send", "{\"recipients\":["
+				+ "{\"chatId\":\"1001\"},{\"chatId\":\" 1001\"}]}");
+
+		assertEquals(400, sameUsername.statusCode());
+		assertTrue(sameUsername.body().contains("@fake_news"), sameUsername.body());
+		assertEquals(400, sameId.statusCode());
+		assertEquals(0, telegram.getCalls("sendMessage"));
+	}
+
+	@Test
+	void removedTemplateKeepsMediaUntilRunningBatchFinishes() throws Exception {
+		String image = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(new byte[4096]);
+		String template = post("/api/templates", "{\"html\":\"<p>pic</p><img src=\\\"" + image + "\\\">\"}").body();
+		String templateId = jsonString(template, "id");
+
+		telegram.latency(100, 0);
+		try {
+			// 模拟服务的响应不带 photo，模板不会取得 file_id，每个收件人都上传临时文件
+			String batchId = jsonString(post("/api/templates/" + templateId + "/send",
+					"{\"recipients\":[{\"chatId\":\"1001\"},{\"chatId\":\"1002\"},{\"chatId\":\"1003\"}]}").body(), "id");
+			HttpRequest delete = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/templates/" + templateId))
+					.DELETE().build();
+			assertEquals(204, client.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+			String batch = "";
+			for (int i = 0; i < 100 && !batch.contains("\"done\":true"); i++) {
+				Thread.sleep(50);
+				batch = get("/api/templates/batches/" + batchId).body();
+			}
+			assertTrue(batch.contains("\"sent\":3"), batch);
+			assertEquals(3, telegram.getCalls("sendPhoto"));
+		} finally {
+			telegram.latency(0, 0);
+		}
+	}
+
+	@Test
+	void concurrentSendsAreNotLimitedToTwoConnections() throws Exception {
+		telegram.latency(150L, 0L);
+		try {
+			List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				responses.add(client.sendAsync(request("/sendTextOnly", "{\"chatId\":\"" + (3001 + i) + "\",\"caption\":\"<p>hi</p>\"}"),
+						HttpResponse.BodyHandlers.ofString()));
+			}
+			for (CompletableFuture<HttpResponse<String>> response : responses) {
+				assertEquals(200, response.join().statusCode());
+			}
+		} finally {
+			telegram.latency(0L, 0L);
+		}
+
+		assertTrue(telegram.getPeakInFlight() > 2, "peak in-flight sends: " + telegram.getPeakInFlight());
+	}
+
+	@Test
+	void sendTextOnlyAcceptsGzipBody() throws Exception {
+		// 多余的字段模拟体积很大但压缩率高的 base64 内容
+		String padding = Base64.getEncoder().encodeToString(new byte[512 * 1024]);
+		String json = "{\"chatId\":\"1001\",\"caption\":\"<p>zipped</p>\",\"padding\":\"" + padding + "\"}";
+		HttpResponse<String> response = postGzip("/sendTextOnly", json.getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(200, response.statusCode(), response.body());
+		assertEquals("文本发送成功！", response.body());
+		assertEquals(1, telegram.getCalls("sendMessage"));
+	}
+
+	@Test
+	void gzipBodyOverInflatedLimitIsRejected() throws Exception {
+		String caption = "A".repeat(8 * 1024 * 1024);
+		String json = "{\"chatId\":\"1001\",\"caption\":\"" + caption + "\"}";
+		HttpResponse<String> response = postGzip("/sendTextOnly", json.getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(413, response.statusCode(), response.body());
+		assertEquals(0, telegram.getCalls("sendMessage"));
+	}
+
+	@Test
+	void unsupportedContentEncodingIsRejected() throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/sendTextOnly"))
+				.header("Content-Type", "application/json")
+				.header("Content-Encoding", "br")
+				.POST(HttpRequest.BodyPublishers.ofString("{}"))
+				.build();
+		HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+		assertEquals(415, response.statusCode());
+		assertTrue(response.headers().firstValue("Accept-Encoding").orElse("").contains("gzip"));
+	}
+
+	private HttpResponse<String> postGzip(String path, byte[] body) throws Exception {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(body);
+		}
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+				.header("Content-Type", "application/json")
+				.header("Content-Encoding", "gzip")
+				.POST(HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray()))
+				.build();
+		return client.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpResponse<String> postMultipart(String path, String caption, Object... parts) throws Exception {
+		String boundary = "----rich" + System.nanoTime();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"chatId\"\r\n\r\n1001\r\n").getBytes(StandardCharsets.UTF_8));
+		body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"caption\"\r\n"
+				+ "Content-Type: text/plain; charset=UTF-8\r\n\r\n" + caption + "\r\n").getBytes(StandardCharsets.UTF_8));
+		for (int i = 0; i < parts.length; i += 2) {
+			body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + parts[i] + "\"; filename=\"" + parts[i] + ".jpg\"\r\n"
+					+ "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+			body.write((byte[]) parts[i + 1]);
+			body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+		}
+		body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+				.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+				.POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+				.build();
+		return client.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	private static String jsonString(String json, String field) {
+		java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("\"" + field + "\":\"([^\"]*)\"").matcher(json);
+		assertTrue(matcher.find(), json);
+		return matcher.group(1);
+	}
+
+	private HttpResponse<String> get(String path) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)).GET().build();
+		return client.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpResponse<String> post(String path, String json) throws Exception {
+		return client.send(request(path, json), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpRequest request(String path, String json) {
+		return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(json))
+				.build();
+	}
+}
@@ -0,0 +1,483 @@
+package com.tutorial.telegrambot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内的模拟 Telegram Bot API 服务，用于集成测试和压测
+ *
+ * 支持 sendMessage、sendPhoto、sendVideo、sendMediaGroup、copyMessage、getChat、getChatMember、getUpdates、deleteWebhook，
+ * 可配置响应延迟（固定 + 按上传大小）、429 注入、拒绝发送（403）、第 N 次之后的上传失败（400）和已升级为超级群组的聊天，
+ * 并统计每个接口的调用次数、上传字节数，按到达顺序记录每次发送请求的目标和大小。
+ * 把 {@code bot.api.base-url} 设为 {@link #getBaseUrl()} 即可让 {@link Bot} 指向它。
+ */
+class FakeTelegramServer implements AutoCloseable {
+
+	/** 只保留请求体开头这部分用于提取 chat_id 等字段，其余部分只计数 */
+	private static final int CAPTURE_LIMIT = 64 * 1024;
+
+	private static final Pattern CHAT_ID_JSON = Pattern.compile("\"chat_id\"\\s*:\\s*\"?(-?\\d+|@\\w+)");
+	private static final Pattern CHAT_ID_PART = Pattern.compile("name=\"chat_id\"\\r\\n(?:[^\\r\\n]+\\r\\n)*\\r\\n(-?\\d+|@\\w+)");
+	private static final Pattern MESSAGE_ID_JSON = Pattern.compile("\"message_id\"\\s*:\\s*\"?(\\d+)");
+	private static final Pattern MEDIA_ITEM = Pattern.compile("\\\\?\"type\\\\?\"\\s*:\\s*\\\\?\"(photo|video|document|audio)");
+
+	/** telegrambots 请求的路径是小写的方法名（如 sendmessage），统一换成 Bot API 文档中的写法 */
+	private static final Map<String, String> METHODS = Map.ofEntries(
+			Map.entry("sendmessage", "sendMessage"),
+			Map.entry("sendphoto", "sendPhoto"),
+			Map.entry("sendvideo", "sendVideo"),
+			Map.entry("sendmediagroup", "sendMediaGroup"),
+			Map.entry("copymessage", "copyMessage"),
+			Map.entry("getchat", "getChat"),
+			Map.entry("getchatmember", "getChatMember"),
+			Map.entry("getupdates", "getUpdates"),
+			Map.entry("deletewebhook", "deleteWebhook"),
+			Map.entry("getme", "getMe"));
+
+	private final HttpServer server;
+	/** 处理请求的线程名前缀，压测统计应用线程数时据此排除 */
+	static final String THREAD_PREFIX = "fake-telegram-";
+
+	private final ExecutorService executor = Executors.newCachedThreadPool(ExecutorConfig.namedThreadFactory(THREAD_PREFIX));
+
+	private volatile long latencyMillis;
+	private volatile long latencyMillisPerMegabyte;
+	private volatile double tooManyRequestsRate;
+	private volatile int retryAfterSeconds = 1;
+
+	/** getChat 的结果，键为数字 ID 和小写的 @用户名 */
+	private final Map<String, String> chats = new ConcurrentHashMap<>();
+	/** 返回 403 的聊天及其错误描述 */
+	private final Map<String, String> forbidden = new ConcurrentHashMap<>();
+	/** Bot 为管理员的聊天（数字 ID） */
+	private final Set<String> admins = ConcurrentHashMap.newKeySet();
+	/** 已升级为超级群组的群组及新 ID */
+	private final Map<String, Long> migrated = new ConcurrentHashMap<>();
+	/** 返回 400 之前还能成功的调用次数，键为方法名 */
+	private final Map<String, AtomicInteger> badRequestAfter = new ConcurrentHashMap<>();
+
+	private final AtomicInteger nextMessageId = new AtomicInteger(1);
+	private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder uploadedBytes = new LongAdder();
+	private final LongAdder multipartParts = new LongAdder();
+	private final LongAdder tooManyRequests = new LongAdder();
+	/** 发送类请求，按到达顺序 */
+	private final List<Request> sends = new CopyOnWriteArrayList<>();
+	private final AtomicLong firstMessageNanos = new AtomicLong();
+	private final AtomicLong lastMessageNanos = new AtomicLong();
+	/** 正在处理（模拟延迟中）的发送请求数及其峰值 */
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+
+	FakeTelegramServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * 启动一个监听随机端口的实例，便于在测试类的静态字段中使用
+	 */
+	static FakeTelegramServer start() {
+		try {
+			return new FakeTelegramServer();
+		} catch (IOException e) {
+			throw new java.io.UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Bot API 地址前缀，对应 {@code bot.api.base-url}
+	 */
+	String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+	}
+
+	FakeTelegramServer latency(long fixedMillis, long millisPerMegabyte) {
+		this.latencyMillis = fixedMillis;
+		this.latencyMillisPerMegabyte = millisPerMegabyte;
+		return this;
+	}
+
+	/**
+	 * 按给定比例对发送类请求返回 429
+	 */
+	FakeTelegramServer tooManyRequests(double rate, int retryAfterSeconds) {
+		this.tooManyRequestsRate = rate;
+		this.retryAfterSeconds = retryAfterSeconds;
+		return this;
+	}
+
+	/**
+	 * 登记一个聊天，getChat 按数字 ID 或 @用户名 返回
+	 */
+	FakeTelegramServer chat(String username, long id, String type, int slowModeDelay) {
+		String json = "{\"id\":" + id + ",\"type\":\"" + type + "\",\"title\":\"" + username + "\",\"username\":\"" + username
+				+ "\",\"slow_mode_delay\":" + slowModeDelay + "}";
+		chats.put("@" + username.toLowerCase(Locale.ROOT), json);
+		chats.put(String.valueOf(id), json);
+		return this;
+	}
+
+	/**
+	 * 向指定聊天的发送返回 403，与用户屏蔽 Bot 时相同
+	 */
+	FakeTelegramServer forbid(String chatId) {
+		return forbid(chatId, "Forbidden: bot was blocked by the user");
+	}
+
+	/**
+	 * 向指定聊天的发送返回 403 和给定的描述，例如缺少发送权限
+	 */
+	FakeTelegramServer forbid(String chatId, String description) {
+		forbidden.put(chatId, description);
+		return this;
+	}
+
+	/**
+	 * getChatMember 查询 Bot 自己时返回管理员
+	 */
+	FakeTelegramServer admin(long chatId) {
+		admins.add(String.valueOf(chatId));
+		return this;
+	}
+
+	/**
+	 * 向指定群组的发送返回 400 和 migrate_to_chat_id，与群组升级为超级群组后相同
+	 */
+	FakeTelegramServer migrate(String chatId, long newChatId) {
+		migrated.put(chatId, newChatId);
+		return this;
+	}
+
+	/**
+	 * 指定方法的前 successes 次调用成功，之后都返回 400，与上传的文件无法处理时相同
+	 */
+	FakeTelegramServer badRequestAfter(String method, int successes) {
+		badRequestAfter.put(method, new AtomicInteger(successes));
+		return this;
+	}
+
+	long getCalls(String method) {
+		LongAdder adder = calls.get(method);
+		return adder == null ? 0L : adder.sum();
+	}
+
+	long getMessages() {
+		return messages.sum();
+	}
+
+	long getUploadedBytes() {
+		return uploadedBytes.sum();
+	}
+
+	long getMultipartParts() {
+		return multipartParts.sum();
+	}
+
+	long getTooManyRequests() {
+		return tooManyRequests.sum();
+	}
+
+	/**
+	 * 指定方法的发送请求，按到达顺序排列
+	 */
+	List<Request> getRequests(String method) {
+		return sends.stream().filter(send -> send.method.equals(method)).toList();
+	}
+
+	/**
+	 * 同时处理中的发送请求数的峰值
+	 */
+	int getPeakInFlight() {
+		return peakInFlight.get();
+	}
+
+	/**
+	 * 第一条到最后一条消息之间的时间跨度
+	 */
+	long getMessageSpanNanos() {
+		return lastMessageNanos.get() - firstMessageNanos.get();
+	}
+
+	void reset() {
+		calls.clear();
+		messages.reset();
+		uploadedBytes.reset();
+		multipartParts.reset();
+		tooManyRequests.reset();
+		sends.clear();
+		badRequestAfter.clear();
+		firstMessageNanos.set(0L);
+		lastMessageNanos.set(0L);
+		peakInFlight.set(0);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String path = exchange.getRequestURI().getPath();
+			String method = path.substring(path.lastIndexOf('/') + 1);
+			method = METHODS.getOrDefault(method.toLowerCase(Locale.ROOT), method);
+			calls.computeIfAbsent(method, m -> new LongAdder()).increment();
+
+			String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			String boundary = boundaryOf(contentType);
+			Body body = readBody(exchange.getRequestBody(), boundary);
+			uploadedBytes.add(body.length);
+			multipartParts.add(body.parts);
+
+			switch (method) {
+				case "getUpdates":
+					sleep(Math.min(1000L, latencyMillis + 200L));
+					respond(exchange, 200, "{\"ok\":true,\"result\":[]}");
+					return;
+				case "deleteWebhook":
+					respond(exchange, 200, "{\"ok\":true,\"result\":true}");
+					return;
+				case "getChat":
+					getChat(exchange, body.chatId);
+					return;
+				case "getChatMember":
+					respond(exchange, 200, "{\"ok\":true,\"result\":{\"status\":\"" + (admins.contains(body.chatId) ? "administrator" : "member")
+							+ "\",\"user\":{\"id\":1,\"is_bot\":true,\"first_name\":\"fake\"}}}");
+					return;
+				case "getMe":
+					respond(exchange, 200, "{\"ok\":true,\"result\":{\"id\":1,\"is_bot\":true,\"first_name\":\"fake\",\"username\":\"fake_bot\"}}");
+					return;
+				default:
+					break;
+			}
+
+			sends.add(new Request(method, body.chatId, body.messageId, body.length));
+			peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				sleep(latencyMillis + latencyMillisPerMegabyte * body.length / (1024L * 1024L));
+			} finally {
+				inFlight.decrementAndGet();
+			}
+
+			if (tooManyRequestsRate > 0 && ThreadLocalRandom.current().nextDouble() < tooManyRequestsRate) {
+				tooManyRequests.increment();
+				respond(exchange, 429, "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after "
+						+ retryAfterSeconds + "\",\"parameters\":{\"retry_after\":" + retryAfterSeconds + "}}");
+				return;
+			}
+
+			String chatId = body.chatId != null ? body.chatId : "0";
+			Long migratedTo = migrated.get(chatId);
+			if (migratedTo != null) {
+				respond(exchange, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: group chat was upgraded to a supergroup chat\","
+						+ "\"parameters\":{\"migrate_to_chat_id\":" + migratedTo + "}}");
+				return;
+			}
+			String forbiddenReason = forbidden.get(chatId);
+			if (forbiddenReason != null) {
+				respond(exchange, 403, "{\"ok\":false,\"error_code\":403,\"description\":\"" + forbiddenReason + "\"}");
+				return;
+			}
+			AtomicInteger remaining = badRequestAfter.get(method);
+			if (remaining != null && remaining.getAndDecrement() <= 0) {
+				respond(exchange, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: wrong file type\"}");
+				return;
+			}
+			switch (method) {
+				case "sendMessage":
+				case "sendPhoto":
+				case "sendVideo":
+					recordMessages(1);
+					respond(exchange, 200, "{\"ok\":true,\"result\":" + message(chatId) + "}");
+					break;
+				case "sendMediaGroup": {
+					int count = Math.max(1, body.mediaItems);
+					recordMessages(count);
+					StringBuilder result = new StringBuilder("{\"ok\":true,\"result\":[");
+					for (int i = 0; i < count; i++) {
+						result.append(i == 0 ? "" : ",").append(message(chatId));
+					}
+					respond(exchange, 200, result.append("]}").toString());
+					break;
+				}
+				case "copyMessage":
+					recordMessages(1);
+					respond(exchange, 200, "{\"ok\":true,\"result\":{\"message_id\":" + nextMessageId.getAndIncrement() + "}}");
+					break;
+				default:
+					respond(exchange, 404, "{\"ok\":false,\"error_code\":404,\"description\":\"Not Found: method " + method + "\"}");
+					break;
+			}
+		}
+	}
+
+	/**
+	 * 已登记的聊天按登记的内容返回；未登记的数字 ID 按 ID 推断类型，未登记的用户名返回 chat not found
+	 */
+	private void getChat(HttpExchange exchange, String chatId) throws IOException {
+		String key = chatId == null ? "" : chatId.toLowerCase(Locale.ROOT);
+		String json = chats.get(key);
+		if (json == null && key.matches("-?\\d+")) {
+			json = "{\"id\":" + key + ",\"type\":\"" + (key.startsWith("-100") ? "supergroup" : key.startsWith("-") ? "group" : "private") + "\"}";
+		}
+		if (json == null) {
+			respond(exchange, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: chat not found\"}");
+			return;
+		}
+		respond(exchange, 200, "{\"ok\":true,\"result\":" + json + "}");
+	}
+
+	private void recordMessages(int count) {
+		long now = System.nanoTime();
+		firstMessageNanos.compareAndSet(0L, now);
+		lastMessageNanos.set(now);
+		messages.add(count);
+	}
+
+	private String message(String chatId) {
+		return "{\"message_id\":" + nextMessageId.getAndIncrement()
+				+ ",\"date\":" + (System.currentTimeMillis() / 1000L)
+				+ ",\"chat\":{\"id\":" + chatId + ",\"type\":\"" + (chatId.startsWith("-") ? "supergroup" : "private") + "\"}}";
+	}
+
+	private static final class Body {
+		long length;
+		int parts;
+		int mediaItems;
+		String chatId;
+		String messageId;
+	}
+
+	/**
+	 * 收到的一次发送请求：目标聊天、copyMessage 复制的源消息 ID 和请求体大小
+	 */
+	static final class Request {
+		final String method;
+		final String chatId;
+		final String messageId;
+		final long length;
+
+		Request(String method, String chatId, String messageId, long length) {
+			this.method = method;
+			this.chatId = chatId;
+			this.messageId = messageId;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * 流式读取请求体：统计字节数和 multipart 分段数，只保留开头部分用于提取字段
+	 */
+	private static Body readBody(InputStream in, String boundary) throws IOException {
+		Body body = new Body();
+		byte[] marker = boundary == null ? null : ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+		byte[] capture = new byte[CAPTURE_LIMIT];
+		int captured = 0;
+		int matched = 0;
+		byte[] buffer = new byte[64 * 1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			body.length += read;
+			if (captured < CAPTURE_LIMIT) {
+				int n = Math.min(read, CAPTURE_LIMIT - captured);
+				System.arraycopy(buffer, 0, capture, captured, n);
+				captured += n;
+			}
+			if (marker != null) {
+				for (int i = 0; i < read; i++) {
+					if (buffer[i] == marker[matched]) {
+						if (++matched == marker.length) {
+							body.parts++;
+							matched = 0;
+						}
+					} else if (buffer[i] == '-') {
+						// 分隔符以 "--" 开头，连续的 '-' 仍可能是分隔符的开头
+						matched = matched == 2 ? 2 : 1;
+					} else {
+						matched = 0;
+					}
+				}
+			}
+		}
+		// 结束分隔符也会被计数一次
+		if (body.parts > 0) {
+			body.parts--;
+		}
+
+		String head = new String(capture, 0, captured, StandardCharsets.ISO_8859_1);
+		Matcher chatId = (marker != null ? CHAT_ID_PART : CHAT_ID_JSON).matcher(head);
+		if (chatId.find()) {
+			body.chatId = chatId.group(1);
+		}
+		if (marker == null) {
+			Matcher messageId = MESSAGE_ID_JSON.matcher(head);
+			if (messageId.find()) {
+				body.messageId = messageId.group(1);
+			}
+		}
+		Matcher media = MEDIA_ITEM.matcher(head);
+		while (media.find()) {
+			body.mediaItems++;
+		}
+		return body;
+	}
+
+	private static String boundaryOf(String contentType) {
+		if (contentType == null || !contentType.startsWith("multipart/")) {
+			return null;
+		}
+		int index = contentType.indexOf("boundary=");
+		if (index < 0) {
+			return null;
+		}
+		String boundary = contentType.substring(index + 9);
+		int end = boundary.indexOf(';');
+		boundary = end >= 0 ? boundary.substring(0, end) : boundary;
+		return boundary.replace("\"", "").trim();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FolderPushServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private FolderPushService service(int groupSize) {
+		// 只用到分组和任务状态，不需要发送相关的依赖
+		return new FolderPushService(null, null, null, null, null, groupSize, 2, 2560, dir.toString(), false);
+	}
+
+	@Test
+	void partitionCoversRangeWithValidGroupSizes() {
+		for (int groupSize = 1; groupSize <= 12; groupSize++) {
+			FolderPushService service = service(groupSize);
+			int max = Math.max(3, Math.min(10, groupSize));
+			for (int from = 0; from < 3; from++) {
+				for (int to = from + 1; to <= from + 45; to++) {
+					List<int[]> groups = service.partition(from, to);
+					int expectedStart = from;
+					for (int[] group : groups) {
+						assertEquals(expectedStart, group[0]);
+						int size = group[1] - group[0];
+						String where = "group-size=" + groupSize + " range=[" + from + "," + to + ")";
+						assertTrue(size <= max, where);
+						// 只有总数为 1 时才允许单张的组
+						assertTrue(size >= 2 || to - from == 1, where);
+						expectedStart = group[1];
+					}
+					assertEquals(to, expectedStart);
+				}
+			}
+		}
+	}
+
+	@Test
+	void groupSizeTwoIsRaisedToThree() {
+		List<int[]> groups = service(2).partition(0, 5);
+
+		assertEquals(2, groups.size());
+		assertEquals(List.of(0, 3), List.of(groups.get(0)[0], groups.get(0)[1]));
+		assertEquals(List.of(3, 5), List.of(groups.get(1)[0], groups.get(1)[1]));
+	}
+
+	@Test
+	void lastSingleFileBorrowsFromPreviousGroup() {
+		List<int[]> groups = service(10).partition(4, 25);
+
+		assertEquals(3, groups.size());
+		assertEquals(List.of(4, 14), List.of(groups.get(0)[0], groups.get(0)[1]));
+		assertEquals(List.of(14, 23), List.of(groups.get(1)[0], groups.get(1)[1]));
+		assertEquals(List.of(23, 25), List.of(groups.get(2)[0], groups.get(2)[1]));
+	}
+
+	@Test
+	void newJobSurvivesSaveAndLoad() throws Exception {
+		FolderPushService.Job job = new FolderPushService.Job("job1", "/data/相册 1", -1001234567890L,
+				"<p>第一行\n= 标题 =</p>", List.of("a.jpg", "b c.png", "图片#1.webp"));
+		job.save(dir);
+
+		FolderPushService.Job loaded = FolderPushService.Job.load(dir.resolve("job1.properties"));
+
+		assertEquals("job1", loaded.getId());
+		assertEquals("/data/相册 1", loaded.getFolder());
+		assertEquals(-1001234567890L, loaded.getChatId());
+		assertEquals(job.getCreatedAt(), loaded.getCreatedAt());
+		assertEquals(FolderPushService.Status.QUEUED, loaded.getStatus());
+		assertEquals(3, loaded.getTotal());
+		assertEquals(0, loaded.getNext());
+		assertNull(loaded.getError());
+		// 没有临时文件留下
+		try (var files = Files.list(dir)) {
+			assertEquals(List.of(dir.resolve("job1.properties")), files.toList());
+		}
+	}
+
+	@Test
+	void progressSurvivesSaveAndLoad() throws Exception {
+		Path file = dir.resolve("job2.properties");
+		Files.writeString(file, String.join("\n",
+				"folder=/data/push",
+				"chatId=42",
+				"files=a.jpg/b.jpg/c.jpg/d.jpg",
+				"createdAt=1700000000000",
+				"status=FAILED",
+				"next=2",
+				"sent=1",
+				"skipped=1",
+				"error=Bad Request\\: wrong file type"), StandardCharsets.UTF_8);
+		FolderPushService.Job job = FolderPushService.Job.load(file);
+
+		// 再保存一次后读取，内容不变
+		Path copy = Files.createDirectories(dir.resolve("copy"));
+		job.save(copy);
+		FolderPushService.Job loaded = FolderPushService.Job.load(copy.resolve("job2.properties"));
+
+		assertEquals("/data/push", loaded.getFolder());
+		assertEquals(42L, loaded.getChatId());
+		assertEquals(4, loaded.getTotal());
+		assertEquals(1700000000000L, loaded.getCreatedAt());
+		assertEquals(FolderPushService.Status.FAILED, loaded.getStatus());
+		assertEquals(2, loaded.getNext());
+		assertEquals(1, loaded.getSent());
+		assertEquals(1, loaded.getSkipped());
+		assertEquals("Bad Request: wrong file type", loaded.getError());
+	}
+
+	@Test
+	void onlyOneTransitionWinsForTheSameState() throws Exception {
+		FolderPushService.Job job = FolderPushService.Job.load(Files.writeString(dir.resolve("job3.properties"),
+				"folder=/data\nchatId=1\nfiles=a.jpg\nstatus=INTERRUPTED\n", StandardCharsets.UTF_8));
+		EnumSet<FolderPushService.Status> resumable = EnumSet.of(FolderPushService.Status.INTERRUPTED,
+				FolderPushService.Status.FAILED, FolderPushService.Status.CANCELLED);
+
+		assertTrue(job.transition(resumable, FolderPushService.Status.QUEUED));
+		assertFalse(job.transition(resumable, FolderPushService.Status.QUEUED));
+		assertEquals(FolderPushService.Status.QUEUED, job.getStatus());
+	}
+}
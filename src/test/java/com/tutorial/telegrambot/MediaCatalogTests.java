@@ -0,0 +1,104 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaCatalogTests {
+
+	@TempDir
+	Path dir;
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private MediaCatalog catalog;
+
+	@AfterEach
+	void stop() {
+		if (catalog != null) {
+			catalog.stop();
+		}
+		executor.shutdownNow();
+	}
+
+	private MediaCatalog start(Path root, int maxFolders) {
+		catalog = new MediaCatalog(executor, root.toString(), maxFolders, 0, dir.resolve("index.tsv").toString());
+		catalog.start();
+		return catalog;
+	}
+
+	private static Path folder(Path parent, String name, String... images) throws IOException {
+		Path folder = Files.createDirectories(parent.resolve(name));
+		for (String image : images) {
+			Files.write(folder.resolve(image), (name + "/" + image).getBytes(StandardCharsets.UTF_8));
+		}
+		return folder;
+	}
+
+	@Test
+	void indexesOnlyFoldersUnderRoots() throws Exception {
+		Path root = folder(dir, "root", "a.jpg");
+		Path inside = folder(root, "inside", "b.jpg");
+		Path outside = folder(dir, "outside", "c.jpg");
+		start(root, 8);
+
+		assertEquals(List.of("b.jpg"), catalog.names(inside.toString()));
+		assertEquals(List.of(), catalog.names(outside.toString()));
+		assertEquals(List.of(), catalog.names(root.resolve("..").resolve("outside").toString()));
+	}
+
+	@Test
+	void symlinkOutOfRootIsRejected() throws Exception {
+		Path root = folder(dir, "root", "a.jpg");
+		Path outside = folder(dir, "outside", "c.jpg");
+		Path link;
+		try {
+			link = Files.createSymbolicLink(root.resolve("link"), outside);
+		} catch (UnsupportedOperationException | IOException e) {
+			return;
+		}
+		start(root, 8);
+
+		assertEquals(List.of(), catalog.names(link.toString()));
+	}
+
+	@Test
+	void evictedFolderMetadataIsDropped() throws Exception {
+		Path root = folder(dir, "root");
+		Path first = folder(root, "first", "a.jpg");
+		Path second = folder(root, "second", "b.jpg");
+		// 根目录常驻，另外只保留一个按需建立的文件夹
+		start(root, 2);
+
+		awaitHash(first);
+		catalog.names(second.toString());
+		awaitHash(second);
+		catalog.stop();
+
+		String index = Files.readString(dir.resolve("index.tsv"));
+		assertFalse(index.contains(first.resolve("a.jpg").toString()), index);
+		assertTrue(index.contains(second.resolve("b.jpg").toString()), index);
+	}
+
+	private void awaitHash(Path folder) throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			List<MediaCatalog.Entry> items = catalog.list(folder.toString(), 0, 10, MediaCatalog.Sort.NAME, false, null, null).getItems();
+			if (!items.isEmpty() && items.get(0).getHash() != null) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("metadata not computed for " + folder);
+	}
+}
@@ -0,0 +1,185 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaProbeTests {
+
+	private static final int[] IDENTITY = {0x10000, 0, 0, 0, 0x10000, 0, 0, 0, 0x40000000};
+	private static final int[] ROTATE_90 = {0, 0x10000, 0, -0x10000, 0, 0, 0, 0, 0x40000000};
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsMp4DimensionsDurationAndStreaming() throws Exception {
+		VideoInfo info = MediaProbe.probe(write("fast.mp4", ftyp(), moov(IDENTITY, null), mdat()));
+
+		assertEquals(640, info.getWidth());
+		assertEquals(360, info.getHeight());
+		assertEquals(5, info.getDurationSeconds());
+		assertTrue(info.isSupportsStreaming());
+		assertNull(info.getThumbnailJpeg());
+	}
+
+	@Test
+	void moovAfterMdatIsNotStreamable() throws Exception {
+		VideoInfo info = MediaProbe.probe(write("slow.mp4", ftyp(), mdat(), moov(IDENTITY, null)));
+
+		assertEquals(640, info.getWidth());
+		assertFalse(info.isSupportsStreaming());
+	}
+
+	@Test
+	void rotatedTrackSwapsDimensions() throws Exception {
+		VideoInfo info = MediaProbe.probe(write("rotated.mp4", ftyp(), moov(ROTATE_90, null), mdat()));
+
+		assertEquals(360, info.getWidth());
+		assertEquals(640, info.getHeight());
+	}
+
+	@Test
+	void embeddedCoverBecomesJpegThumbnail() throws Exception {
+		BufferedImage cover = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_ARGB);
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(cover, "png", png);
+
+		VideoInfo info = MediaProbe.probe(write("cover.mp4", ftyp(), moov(IDENTITY, png.toByteArray()), mdat()));
+
+		assertNotNull(info.getThumbnailJpeg());
+		assertTrue(info.getThumbnailJpeg().length <= 200 * 1024);
+		BufferedImage thumb = ImageIO.read(new ByteArrayInputStream(info.getThumbnailJpeg()));
+		assertEquals(320, thumb.getWidth());
+		assertEquals(180, thumb.getHeight());
+	}
+
+	@Test
+	void readsWebmDimensionsAndDuration() throws Exception {
+		byte[] webm = concat(
+				ebml(0x1A45DFA3, ebml(0x4282, "webm".getBytes(StandardCharsets.US_ASCII))),
+				ebml(0x18538067, concat(
+						ebml(0x1549A966, concat(
+								ebml(0x2AD7B1, new byte[]{0x0F, 0x42, 0x40}),
+								ebml(0x4489, ByteBuffer.allocate(4).putFloat(4000f).array()))),
+						ebml(0x1654AE6B, ebml(0xAE, ebml(0xE0, concat(
+								ebml(0xB0, new byte[]{0x01, 0x40}),
+								ebml(0xBA, new byte[]{0x00, (byte) 0xF0}))))),
+						ebml(0x1F43B675, new byte[16]))));
+
+		VideoInfo info = MediaProbe.probe(write("clip.webm", webm));
+
+		assertEquals(320, info.getWidth());
+		assertEquals(240, info.getHeight());
+		assertEquals(4, info.getDurationSeconds());
+		assertFalse(info.isSupportsStreaming());
+	}
+
+	@Test
+	void unreadableFilesFallBackToUnknown() throws Exception {
+		assertSame(VideoInfo.UNKNOWN, MediaProbe.probe(write("short.mp4", new byte[4])));
+		assertSame(VideoInfo.UNKNOWN, MediaProbe.probe(write("text.mp4", "not a video at all".getBytes(StandardCharsets.US_ASCII))));
+		assertSame(VideoInfo.UNKNOWN, MediaProbe.probe(new File(dir.toFile(), "missing.mp4")));
+
+		// moov 声明的大小超出文件末尾
+		byte[] moov = moov(IDENTITY, null);
+		byte[] truncated = concat(ftyp(), Arrays.copyOf(moov, moov.length / 2));
+		assertSame(VideoInfo.UNKNOWN, MediaProbe.probe(write("truncated.mp4", truncated)));
+	}
+
+	@Test
+	void brokenCoverIsIgnored() throws Exception {
+		VideoInfo info = MediaProbe.probe(write("bad-cover.mp4", ftyp(), moov(IDENTITY, new byte[]{1, 2, 3}), mdat()));
+
+		assertEquals(640, info.getWidth());
+		assertNull(info.getThumbnailJpeg());
+	}
+
+	private File write(String name, byte[]... parts) throws IOException {
+		Path file = dir.resolve(name);
+		Files.write(file, concat(parts));
+		return file.toFile();
+	}
+
+	// ---------------------------------------------------------------- MP4
+
+	private static byte[] ftyp() {
+		return box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII), new byte[4]);
+	}
+
+	private static byte[] mdat() {
+		return box("mdat", new byte[64]);
+	}
+
+	/**
+	 * 时长 5 秒、640x360 的视频轨道，cover 不为 null 时加入 udta/meta/ilst/covr
+	 */
+	private static byte[] moov(int[] matrix, byte[] cover) {
+		ByteBuffer mvhd = ByteBuffer.allocate(100);
+		mvhd.putInt(12, 1000).putInt(16, 5000);
+
+		ByteBuffer tkhd = ByteBuffer.allocate(84);
+		for (int i = 0; i < matrix.length; i++) {
+			tkhd.putInt(40 + i * 4, matrix[i]);
+		}
+		tkhd.putInt(76, 640 << 16).putInt(80, 360 << 16);
+
+		ByteBuffer hdlr = ByteBuffer.allocate(25);
+		hdlr.put(8, "vide".getBytes(StandardCharsets.US_ASCII));
+
+		byte[] trak = box("trak", box("tkhd", tkhd.array()), box("mdia", box("hdlr", hdlr.array())));
+		if (cover == null) {
+			return box("moov", box("mvhd", mvhd.array()), trak);
+		}
+		byte[] data = box("data", ByteBuffer.allocate(8).putInt(0, 14).array(), cover);
+		byte[] udta = box("udta", box("meta", new byte[4], box("ilst", box("covr", data))));
+		return box("moov", box("mvhd", mvhd.array()), trak, udta);
+	}
+
+	private static byte[] box(String type, byte[]... children) {
+		byte[] body = concat(children);
+		return concat(ByteBuffer.allocate(8).putInt(8 + body.length).put(type.getBytes(StandardCharsets.US_ASCII)).array(), body);
+	}
+
+	// ---------------------------------------------------------------- WebM
+
+	/**
+	 * EBML 元素：ID 按原样写出，大小固定用 4 字节的 vint
+	 */
+	private static byte[] ebml(int id, byte[] payload) {
+		int idLength = id > 0xFFFFFF ? 4 : id > 0xFFFF ? 3 : id > 0xFF ? 2 : 1;
+		ByteBuffer buf = ByteBuffer.allocate(idLength + 4 + payload.length);
+		for (int i = idLength - 1; i >= 0; i--) {
+			buf.put((byte) (id >>> (i * 8)));
+		}
+		buf.putInt(0x10000000 | payload.length);
+		buf.put(payload);
+		return buf.array();
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.writeBytes(part);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,256 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 推送接口压测：通过 HTTP 调用 WebController 的接口，Telegram 端由 {@link FakeTelegramServer} 模拟
+ *
+ * 默认不运行，使用 {@code mvn test -Dloadtest=true -Dtest=PushLoadTests} 启动，可调参数：
+ * <ul>
+ *     <li>loadtest.concurrency：并发客户端数，默认 16</li>
+ *     <li>loadtest.requests：请求总数，默认 400</li>
+ *     <li>loadtest.mix：请求类型权重，默认 text:6,photo:2,album:1,video:1,grid:1</li>
+ *     <li>loadtest.video-kb / loadtest.photo-kb：媒体大小，默认 1024 / 128</li>
+ *     <li>loadtest.latency-ms / loadtest.latency-ms-per-mb / loadtest.rate-429：模拟服务的延迟和 429 比例</li>
+ * </ul>
+ * 结果输出 p50/p99 延迟、每秒消息数、堆内存峰值和模拟服务收到的上传字节数。
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bot.token=load-test-token",
+		"bot.session.enabled=false",
+		"bot.journal.dir=target/push-load-journal",
+		"bot.rate.global-per-second=100000",
+		"bot.rate.global-burst=100000",
+		"bot.rate.private-per-minute=1000000",
+		"bot.rate.group-per-minute=1000000"
+})
+class PushLoadTests {
+
+	static final FakeTelegramServer telegram = FakeTelegramServer.start()
+			.latency(Long.getLong("loadtest.latency-ms", 50L), Long.getLong("loadtest.latency-ms-per-mb", 200L))
+			.tooManyRequests(Double.parseDouble(System.getProperty("loadtest.rate-429", "0")), 1);
+
+	@DynamicPropertySource
+	static void telegramProperties(DynamicPropertyRegistry registry) {
+		registry.add("bot.api.base-url", telegram::getBaseUrl);
+	}
+
+	@AfterAll
+	static void stopTelegram() {
+		telegram.close();
+	}
+
+	@LocalServerPort
+	int port;
+
+	private final HttpClient client = HttpClient.newBuilder()
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+
+	@Test
+	void pushEndpointsUnderLoad() throws Exception {
+		int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+		int total = Integer.getInteger("loadtest.requests", 400);
+		List<String> plan = buildPlan(System.getProperty("loadtest.mix", "text:6,photo:2,album:1,video:1,grid:1"), total);
+		Payloads payloads = new Payloads(Integer.getInteger("loadtest.photo-kb", 128), Integer.getInteger("loadtest.video-kb", 1024));
+
+		// 预热，避免首次请求的类加载和JIT计入结果
+		for (String kind : List.of("text", "photo", "video")) {
+			client.send(payloads.request(kind, port), HttpResponse.BodyHandlers.ofString());
+		}
+		telegram.reset();
+		System.gc();
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+
+		long[] latencies = new long[plan.size()];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger failures = new AtomicInteger();
+		AtomicLong requestBytes = new AtomicLong();
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		long start = System.nanoTime();
+		List<Future<?>> workers = new ArrayList<>();
+		for (int c = 0; c < concurrency; c++) {
+			workers.add(clients.submit(() -> {
+				int i;
+				while ((i = next.getAndIncrement()) < plan.size()) {
+					HttpRequest request = payloads.request(plan.get(i), port);
+					requestBytes.addAndGet(request.bodyPublisher().map(p -> p.contentLength()).orElse(0L));
+					long begin = System.nanoTime();
+					try {
+						HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+						if (response.statusCode() != 200 || response.body().startsWith("发送失败")) {
+							failures.incrementAndGet();
+						}
+					} catch (Exception e) {
+						failures.incrementAndGet();
+					}
+					latencies[i] = System.nanoTime() - begin;
+				}
+				return null;
+			}));
+		}
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		clients.shutdown();
+
+		long heapPeak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+		Arrays.sort(latencies);
+		double seconds = elapsed / 1e9;
+		System.out.printf("%n=== push load test ===%n");
+		System.out.printf("requests=%d concurrency=%d mix=%s failures=%d%n", plan.size(), concurrency,
+				System.getProperty("loadtest.mix", "text:6,photo:2,album:1,video:1,grid:1"), failures.get());
+		System.out.printf("latency p50=%.1fms p99=%.1fms max=%.1fms%n",
+				percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6);
+		System.out.printf("throughput requests/s=%.1f msgs/s=%.1f telegram_messages=%d 429s=%d%n",
+				plan.size() / seconds, telegram.getMessages() / seconds, telegram.getMessages(), telegram.getTooManyRequests());
+		System.out.printf("bytes in=%dKB uploaded_to_telegram=%dKB multipart_parts=%d heap_peak=%dMB%n",
+				requestBytes.get() / 1024, telegram.getUploadedBytes() / 1024, telegram.getMultipartParts(), heapPeak / (1024 * 1024));
+
+		assertEquals(0, failures.get(), "failed requests");
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+	}
+
+	/**
+	 * 按权重展开请求类型，并打乱顺序
+	 */
+	private static List<String> buildPlan(String mix, int total) {
+		List<String> kinds = new ArrayList<>();
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.trim().split(":");
+			int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+			for (int i = 0; i < weight; i++) {
+				kinds.add(parts[0]);
+			}
+		}
+		List<String> plan = new ArrayList<>(total);
+		for (int i = 0; i < total; i++) {
+			plan.add(kinds.get(i % kinds.size()));
+		}
+		java.util.Collections.shuffle(plan, new Random(7));
+		return plan;
+	}
+
+	/**
+	 * 各类请求的请求体，预先生成，压测过程中复用
+	 */
+	static final class Payloads {
+		private static final String CHAT_ID = "1001";
+
+		private final String textJson;
+		private final String photoJson;
+		private final String albumJson;
+		private final String videoJson;
+		private final byte[] gridBody;
+		private final String gridBoundary = "loadtest" + Long.toHexString(new Random(3).nextLong());
+
+		Payloads(int photoKb, int videoKb) {
+			Random random = new Random(11);
+			byte[] photo = new byte[photoKb * 1024];
+			byte[] video = new byte[videoKb * 1024];
+			random.nextBytes(photo);
+			random.nextBytes(video);
+			String photoUrl = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(photo);
+			String videoUrl = "data:video/mp4;base64," + Base64.getEncoder().encodeToString(video);
+			String text = "<p>load test <b>message</b> with <i>formatting</i></p>";
+
+			textJson = json(text);
+			photoJson = json(text + "<img src=\\\"" + photoUrl + "\\\">");
+			albumJson = json(text + "<img src=\\\"" + photoUrl + "\\\"><img src=\\\"" + photoUrl + "\\\"><img src=\\\"" + photoUrl + "\\\">");
+			videoJson = json(text + "<video src=\\\"" + videoUrl + "\\\"></video>");
+			gridBody = multipart(text, photo, 3);
+		}
+
+		HttpRequest request(String kind, int port) {
+			URI base = URI.create("http://127.0.0.1:" + port);
+			switch (kind) {
+				case "grid":
+					return HttpRequest.newBuilder(base.resolve("/sendGridContent"))
+							.header("Content-Type", "multipart/form-data; boundary=" + gridBoundary)
+							.POST(HttpRequest.BodyPublishers.ofByteArray(gridBody))
+							.build();
+				case "photo":
+					return jsonRequest(base, photoJson);
+				case "album":
+					return jsonRequest(base, albumJson);
+				case "video":
+					return jsonRequest(base, videoJson);
+				default:
+					return jsonRequest(base, textJson);
+			}
+		}
+
+		private static HttpRequest jsonRequest(URI base, String json) {
+			return HttpRequest.newBuilder(base.resolve("/sendTextOnly"))
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(json))
+					.build();
+		}
+
+		private static String json(String caption) {
+			return "{\"chatId\":\"" + CHAT_ID + "\",\"caption\":\"" + caption + "\"}";
+		}
+
+		private byte[] multipart(String caption, byte[] image, int images) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			writeField(out, "chatId", CHAT_ID);
+			writeField(out, "caption", caption);
+			for (int i = 0; i < images; i++) {
+				write(out, "--" + gridBoundary + "\r\nContent-Disposition: form-data; name=\"images\"; filename=\"image" + i
+						+ ".jpg\"\r\nContent-Type: image/jpeg\r\n\r\n");
+				out.writeBytes(image);
+				write(out, "\r\n");
+			}
+			write(out, "--" + gridBoundary + "--\r\n");
+			return out.toByteArray();
+		}
+
+		private void writeField(ByteArrayOutputStream out, String name, String value) {
+			write(out, "--" + gridBoundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n");
+		}
+
+		private static void write(ByteArrayOutputStream out, String text) {
+			out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package com.tutorial.telegrambot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemoteMediaCacheTests {
+
+	@TempDir
+	Path dir;
+
+	private HttpServer origin;
+	private ExecutorService originExecutor;
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	/** 每个路径收到的请求数 */
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+	/** 每个路径收到的 If-None-Match */
+	private final Map<String, String> ifNoneMatch = new ConcurrentHashMap<>();
+	/** 设置后，源站在返回前等待 */
+	private volatile CountDownLatch gate;
+
+	@BeforeEach
+	void startOrigin() throws IOException {
+		origin = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		originExecutor = Executors.newCachedThreadPool();
+		origin.setExecutor(originExecutor);
+		origin.createContext("/", this::serve);
+		origin.start();
+	}
+
+	@AfterEach
+	void stopOrigin() {
+		origin.stop(0);
+		originExecutor.shutdownNow();
+	}
+
+	/**
+	 * /redirect 重定向到内网地址，其余路径返回 100 字节的内容，ETag 固定为 "v1"，带上相同 If-None-Match 时返回 304
+	 */
+	private void serve(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+		String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+		if (etag != null) {
+			ifNoneMatch.put(path, etag);
+		}
+		CountDownLatch latch = gate;
+		if (latch != null) {
+			try {
+				latch.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (path.equals("/redirect")) {
+			exchange.getResponseHeaders().add("Location", "http://10.0.0.1/internal.jpg");
+			exchange.sendResponseHeaders(302, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().add("ETag", "\"v1\"");
+		if ("\"v1\"".equals(etag)) {
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		byte[] body = content(path);
+		exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static byte[] content(String path) {
+		byte[] body = new byte[100];
+		Arrays.fill(body, (byte) path.hashCode());
+		return body;
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + origin.getAddress().getPort() + path;
+	}
+
+	private int requests(String path) {
+		AtomicInteger count = requests.get(path);
+		return count == null ? 0 : count.get();
+	}
+
+	private RemoteMediaCache cache(long maxBytes, long maxAgeSeconds, String allowedHosts) {
+		RemoteMediaCache cache = new RemoteMediaCache(registry, "proxy", dir.toString(), maxBytes, 1024 * 1024,
+				maxAgeSeconds, 5000, 10000, allowedHosts);
+		cache.start();
+		return cache;
+	}
+
+	private void fetch(RemoteMediaCache cache, String path) throws IOException {
+		try (RemoteMediaCache.Lease lease = cache.acquire(url(path), RemoteMediaCache.Kind.PHOTO)) {
+			assertArrayEquals(content(path), Files.readAllBytes(lease.getFile().toPath()));
+		}
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedOverMaxBytes() throws Exception {
+		RemoteMediaCache cache = cache(250, 300, "127.0.0.1");
+
+		fetch(cache, "/a.jpg");
+		fetch(cache, "/b.jpg");
+		Path b;
+		try (RemoteMediaCache.Lease lease = cache.acquire(url("/b.jpg"), RemoteMediaCache.Kind.PHOTO)) {
+			b = lease.getFile().toPath();
+		}
+		// 再次使用 a，b 成为最久未使用的
+		fetch(cache, "/a.jpg");
+		fetch(cache, "/c.jpg");
+
+		assertEquals(200, cache.getTotalBytes());
+		assertFalse(Files.exists(b));
+		fetch(cache, "/a.jpg");
+		assertEquals(1, requests("/a.jpg"));
+		fetch(cache, "/b.jpg");
+		assertEquals(2, requests("/b.jpg"));
+	}
+
+	@Test
+	void leasedFileIsNotEvicted() throws Exception {
+		RemoteMediaCache cache = cache(150, 300, "127.0.0.1");
+
+		try (RemoteMediaCache.Lease lease = cache.acquire(url("/a.jpg"), RemoteMediaCache.Kind.PHOTO)) {
+			fetch(cache, "/b.jpg");
+			assertTrue(lease.getFile().exists());
+		}
+		assertEquals(100, cache.getTotalBytes());
+	}
+
+	@Test
+	void revalidatesWithConditionalRequestAfterMaxAge() throws Exception {
+		RemoteMediaCache cache = cache(1024, 1, "127.0.0.1");
+
+		fetch(cache, "/a.jpg");
+		fetch(cache, "/a.jpg");
+		assertEquals(1, requests("/a.jpg"));
+
+		Thread.sleep(1100);
+		fetch(cache, "/a.jpg");
+		assertEquals(2, requests("/a.jpg"));
+		assertEquals("\"v1\"", ifNoneMatch.get("/a.jpg"));
+		assertEquals(1.0, registry.counter("telegram.remote.cache", "result", "revalidated").count());
+		assertEquals(1.0, registry.counter("telegram.remote.cache", "result", "miss").count());
+
+		// 重新验证后再次计算有效期
+		fetch(cache, "/a.jpg");
+		assertEquals(2, requests("/a.jpg"));
+	}
+
+	@Test
+	void concurrentRequestsForSameUrlDownloadOnce() throws Exception {
+		RemoteMediaCache cache = cache(1024, 300, "127.0.0.1");
+		gate = new CountDownLatch(1);
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Path>> files = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				files.add(callers.submit(() -> {
+					try (RemoteMediaCache.Lease lease = cache.acquire(url("/a.jpg"), RemoteMediaCache.Kind.PHOTO)) {
+						return lease.getFile().toPath();
+					}
+				}));
+			}
+			// 第一个请求到达源站后，其余调用都在等待同一次下载
+			while (requests("/a.jpg") == 0) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(200);
+			gate.countDown();
+
+			Path first = files.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<Path> file : files) {
+				assertEquals(first, file.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+		assertEquals(1, requests("/a.jpg"));
+		assertEquals(100, cache.getTotalBytes());
+	}
+
+	@Test
+	void indexSurvivesRestart() throws Exception {
+		RemoteMediaCache cache = cache(1024, 300, "127.0.0.1");
+		fetch(cache, "/a.jpg");
+		cache.stop();
+
+		RemoteMediaCache restarted = cache(1024, 300, "127.0.0.1");
+		assertEquals(100, restarted.getTotalBytes());
+		fetch(restarted, "/a.jpg");
+		assertEquals(1, requests("/a.jpg"));
+	}
+
+	@Test
+	void rejectsPrivateAddressesUnlessAllowed() {
+		RemoteMediaCache cache = cache(1024, 300, "");
+
+		assertThrows(IOException.class, () -> cache.acquire(url("/a.jpg"), RemoteMediaCache.Kind.PHOTO));
+		assertEquals(0, requests("/a.jpg"));
+	}
+
+	@Test
+	void checksEveryRedirectTarget() {
+		RemoteMediaCache cache = cache(1024, 300, "127.0.0.1");
+
+		IOException e = assertThrows(IOException.class, () -> cache.acquire(url("/redirect"), RemoteMediaCache.Kind.PHOTO));
+		assertTrue(e.getMessage().contains("10.0.0.1"), e.getMessage());
+		assertEquals(1, requests("/redirect"));
+	}
+
+	@Test
+	void classifiesPublicAddresses() throws Exception {
+		for (String address : new String[]{"127.0.0.1", "10.1.2.3", "172.16.0.1", "192.168.1.1", "169.254.169.254",
+				"100.64.0.1", "0.0.0.0", "::1", "fe80::1", "fd00::1", "::ffff:10.0.0.1"}) {
+			assertFalse(RemoteMediaCache.isPublic(InetAddress.getByName(address)), address);
+		}
+		for (String address : new String[]{"8.8.8.8", "149.154.167.220", "100.128.0.1", "2001:4860:4860::8888"}) {
+			assertTrue(RemoteMediaCache.isPublic(InetAddress.getByName(address)), address);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class RequestTimingTests {
+
+	@AfterEach
+	void endTiming() {
+		RequestTiming.end();
+	}
+
+	@Test
+	void accumulatesPerPhase() {
+		RequestTiming timing = RequestTiming.begin();
+		RequestTiming.add(RequestTiming.Phase.DECODE, 2_000_000L);
+		RequestTiming.add(RequestTiming.Phase.DECODE, 3_000_000L);
+		long start = RequestTiming.start();
+		RequestTiming.stop(RequestTiming.Phase.UPLOAD, start);
+
+		assertEquals(5_000_000L, timing.getNanos(RequestTiming.Phase.DECODE));
+		assertEquals(2, timing.getCount(RequestTiming.Phase.DECODE));
+		assertEquals(1, timing.getCount(RequestTiming.Phase.UPLOAD));
+		assertTrue(timing.getNanos(RequestTiming.Phase.UPLOAD) >= 0);
+		assertEquals(0, timing.getCount(RequestTiming.Phase.API));
+	}
+
+	@Test
+	void formatsServerTimingAndLogLine() {
+		RequestTiming timing = RequestTiming.begin();
+		// 按阶段定义的顺序输出，与记录顺序无关；没有记录的阶段不输出
+		RequestTiming.add(RequestTiming.Phase.UPLOAD, 830_100_000L);
+		RequestTiming.add(RequestTiming.Phase.DECODE, 12_345_678L);
+		RequestTiming.add(RequestTiming.Phase.API, 1_005_000L);
+		RequestTiming.add(RequestTiming.Phase.API, 45_000L);
+
+		String header = timing.toServerTiming();
+		assertTrue(header.matches("decode;dur=12\\.345, upload;dur=830\\.100, api;dur=1\\.050, total;dur=\\d+\\.\\d{3}"), header);
+
+		String line = timing.toLogLine("POST", "/sendTextOnly", 200);
+		assertTrue(line.matches("method=POST path=/sendTextOnly status=200 total_ms=\\d+\\.\\d{3}"
+				+ " decode_ms=12\\.345 decode_n=1 upload_ms=830\\.100 upload_n=1 api_ms=1\\.050 api_n=2"), line);
+	}
+
+	@Test
+	void onlyTotalWithoutPhases() {
+		assertTrue(RequestTiming.begin().toServerTiming().matches("total;dur=\\d+\\.\\d{3}"));
+	}
+
+	@Test
+	void nothingIsRecordedOutsideRequest() {
+		RequestTiming timing = RequestTiming.begin();
+		RequestTiming.end();
+		RequestTiming.add(RequestTiming.Phase.DECODE, 1_000_000L);
+		RequestTiming.stop(RequestTiming.Phase.API, RequestTiming.start());
+
+		assertFalse(timing.isActive());
+		assertEquals(0, timing.getCount(RequestTiming.Phase.DECODE));
+		assertEquals(0, timing.getCount(RequestTiming.Phase.API));
+	}
+
+	@Test
+	void pooledThreadStartsEachRequestEmpty() throws Exception {
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			RequestTiming first = pool.submit(() -> {
+				RequestTiming timing = RequestTiming.begin();
+				RequestTiming.add(RequestTiming.Phase.DECODE, 7_000_000L);
+				// 请求结束时没有清零，下一个请求的 begin 负责重置
+				RequestTiming.end();
+				return timing;
+			}).get();
+			RequestTiming second = pool.submit(() -> {
+				RequestTiming timing = RequestTiming.begin();
+				RequestTiming.add(RequestTiming.Phase.API, 1_000_000L);
+				return timing;
+			}).get();
+
+			// 同一线程复用同一个实例，前一个请求的数据不会带到下一个请求
+			assertSame(first, second);
+			assertEquals(0, second.getCount(RequestTiming.Phase.DECODE));
+			assertEquals(0L, second.getNanos(RequestTiming.Phase.DECODE));
+			assertEquals(1, second.getCount(RequestTiming.Phase.API));
+		} finally {
+			pool.shutdownNow();
+		}
+
+		// 其他线程上的请求不影响当前线程
+		assertFalse(RequestTiming.current().isActive());
+	}
+
+	@Test
+	void steadyStateTimingDoesNotAllocate() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		for (int i = 0; i < 20_000; i++) {
+			request();
+		}
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < 20_000; i++) {
+			request();
+		}
+		long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+		// 留出测量调用本身的少量分配，远小于每次请求分配一次的量
+		assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+	}
+
+	private static void request() {
+		RequestTiming.begin();
+		long start = RequestTiming.start();
+		RequestTiming.stop(RequestTiming.Phase.DECODE, start);
+		RequestTiming.add(RequestTiming.Phase.UPLOAD, 1_000L);
+		RequestTiming.end();
+	}
+
+	@Test
+	void adviceSetsHeaderOnlyDuringRequest() throws Exception {
+		RequestTimingAdvice advice = new RequestTimingAdvice();
+
+		MockHttpServletResponse outside = new MockHttpServletResponse();
+		ServletServerHttpResponse idle = new ServletServerHttpResponse(outside);
+		advice.beforeBodyWrite("body", null, null, null, null, idle);
+		idle.flush();
+		assertNull(outside.getHeader(RequestTimingAdvice.SERVER_TIMING_HEADER));
+
+		RequestTiming.begin();
+		RequestTiming.add(RequestTiming.Phase.API, 2_500_000L);
+		MockHttpServletResponse inside = new MockHttpServletResponse();
+		ServletServerHttpResponse response = new ServletServerHttpResponse(inside);
+		assertEquals("body", advice.beforeBodyWrite("body", null, null, null, null, response));
+		response.flush();
+		assertTrue(inside.getHeader(RequestTimingAdvice.SERVER_TIMING_HEADER).startsWith("api;dur=2.500, total;dur="),
+				inside.getHeader(RequestTimingAdvice.SERVER_TIMING_HEADER));
+	}
+}
@@ -0,0 +1,145 @@
+package com.tutorial.telegrambot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用手动推进的时钟测试发送额度的分配顺序，不依赖线程调度和真实时间
+ */
+class SendRateLimiterTests {
+
+	private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+	private final ExecutorService lookups = Executors.newSingleThreadExecutor();
+	private long now = TimeUnit.DAYS.toNanos(1);
+
+	@AfterEach
+	void stop() {
+		lookups.shutdownNow();
+	}
+
+	/**
+	 * 全局每秒 globalPerSecond 条、不允许突发，私聊不限速
+	 */
+	private SendRateLimiter limiter(int globalPerSecond, int interactiveWeight, int normalWeight, int bulkWeight,
+									long interactiveMaxWaitMillis, long normalMaxWaitMillis, long bulkMaxWaitMillis) {
+		ChatDirectory chats = new ChatDirectory(new StaticListableBeanFactory().getBeanProvider(Bot.class), lookups,
+				new SimpleMeterRegistry(), 100, 3600, 600);
+		return new SendRateLimiter(new SimpleMeterRegistry(), chats, globalPerSecond, 1, 60_000_000, 20, 20, true, 1,
+				interactiveWeight, normalWeight, bulkWeight, interactiveMaxWaitMillis, normalMaxWaitMillis, bulkMaxWaitMillis,
+				() -> now);
+	}
+
+	private void advanceMillis(long millis) {
+		now += TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	@Test
+	void interactiveIsServedFirst() {
+		SendRateLimiter limiter = limiter(1, 8, 3, 1, HOUR_MS, HOUR_MS, HOUR_MS);
+		// 低优先级先到；前两个和最后一个发往同一个聊天
+		SendRateLimiter.Waiter bulk = limiter.enqueue("1", SendPriority.BULK, 1);
+		SendRateLimiter.Waiter normal = limiter.enqueue("2", SendPriority.NORMAL, 1);
+		SendRateLimiter.Waiter interactive = limiter.enqueue("1", SendPriority.INTERACTIVE, 1);
+
+		limiter.dispatchNow();
+		assertTrue(interactive.isGranted());
+		assertFalse(normal.isGranted());
+		assertFalse(bulk.isGranted());
+
+		// 额度用完之前不再分配
+		advanceMillis(999);
+		limiter.dispatchNow();
+		assertFalse(normal.isGranted());
+		assertFalse(bulk.isGranted());
+
+		advanceMillis(1);
+		limiter.dispatchNow();
+		assertTrue(normal.isGranted());
+		assertFalse(bulk.isGranted());
+
+		advanceMillis(1000);
+		limiter.dispatchNow();
+		assertTrue(bulk.isGranted());
+	}
+
+	@Test
+	void contendedLanesShareBudgetByWeight() {
+		SendRateLimiter limiter = limiter(1000, 8, 3, 1, HOUR_MS, HOUR_MS, HOUR_MS);
+		Map<SendPriority, List<SendRateLimiter.Waiter>> waiters = new EnumMap<>(SendPriority.class);
+		int chat = 1;
+		for (SendPriority priority : SendPriority.values()) {
+			List<SendRateLimiter.Waiter> lane = new ArrayList<>();
+			for (int i = 0; i < 48; i++) {
+				lane.add(limiter.enqueue(String.valueOf(chat++), priority, 1));
+			}
+			waiters.put(priority, lane);
+		}
+
+		// 每毫秒一条额度，两轮权重之和（2 × 12）
+		for (int i = 0; i < 24; i++) {
+			limiter.dispatchNow();
+			advanceMillis(1);
+		}
+		assertEquals(16, granted(waiters.get(SendPriority.INTERACTIVE)));
+		assertEquals(6, granted(waiters.get(SendPriority.NORMAL)));
+		assertEquals(2, granted(waiters.get(SendPriority.BULK)));
+	}
+
+	@Test
+	void bulkIsServedOnceMaxWaitPasses() {
+		// 只按权重时 BULK 每 21 条才轮到一次；等待上限为 5 秒
+		SendRateLimiter limiter = limiter(1, 20, 3, 1, HOUR_MS, HOUR_MS, 5_000);
+		SendRateLimiter.Waiter bulk = limiter.enqueue("1", SendPriority.BULK, 1);
+		List<SendRateLimiter.Waiter> interactive = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			interactive.add(limiter.enqueue(String.valueOf(100 + i), SendPriority.INTERACTIVE, 1));
+		}
+
+		int seconds = 0;
+		while (!bulk.isGranted()) {
+			limiter.dispatchNow();
+			if (!bulk.isGranted()) {
+				advanceMillis(1000);
+				seconds++;
+			}
+			assertTrue(seconds < 30, "bulk not served");
+		}
+		// 第 6 秒时已超过上限，在下一条额度上发送；此前都给了 INTERACTIVE
+		assertEquals(6, seconds);
+		assertEquals(6, granted(interactive));
+	}
+
+	@Test
+	void pauseDelaysAllLanes() {
+		SendRateLimiter limiter = limiter(10, 8, 3, 1, HOUR_MS, HOUR_MS, HOUR_MS);
+		limiter.pauseFor(TimeUnit.SECONDS.toNanos(2));
+		SendRateLimiter.Waiter interactive = limiter.enqueue("1", SendPriority.INTERACTIVE, 1);
+
+		advanceMillis(1999);
+		limiter.dispatchNow();
+		assertFalse(interactive.isGranted());
+
+		advanceMillis(1);
+		limiter.dispatchNow();
+		assertTrue(interactive.isGranted());
+	}
+
+	private static long granted(List<SendRateLimiter.Waiter> waiters) {
+		return waiters.stream().filter(SendRateLimiter.Waiter::isGranted).count();
+	}
+}
@@ -0,0 +1,48 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测量应用从启动到 Web 服务器可以接收请求的时间
+ *
+ * Bot 注册在后台进行，即使 Telegram 不可达也不影响启动时间。
+ * 结果输出到控制台，设置 {@code -Dstartup.max-ms} 时超过该值则失败。
+ */
+class StartupTimeTests {
+
+	@Test
+	void startsWithoutWaitingForTelegram() {
+		long start = System.nanoTime();
+		// 指向不可连接的地址，验证注册失败不会阻塞启动；用命令行参数覆盖 application.properties 中的配置
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TelegramBotApplication.class)
+				.run("--server.port=0", "--bot.token=startup-token", "--bot.api.base-url=http://127.0.0.1:9/bot",
+						"--bot.session.retry-ms=60000", "--bot.journal.dir=target/startup-journal")) {
+			long elapsed = (System.nanoTime() - start) / 1_000_000;
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			System.out.printf("%n=== startup: %dms (port %d) ===%n", elapsed, port);
+
+			assertTrue(port > 0);
+			BotSessionLifecycle.State state = context.getBean(BotSessionLifecycle.class).getState();
+			assertTrue(state == BotSessionLifecycle.State.CONNECTING || state == BotSessionLifecycle.State.FAILED,
+					"unexpected bot session state " + state);
+			Long maxMillis = Long.getLong("startup.max-ms");
+			if (maxMillis != null) {
+				assertTrue(elapsed <= maxMillis, "startup took " + elapsed + "ms, limit " + maxMillis + "ms");
+			}
+		}
+	}
+
+	@Test
+	void sessionDisabled() {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TelegramBotApplication.class)
+				.run("--server.port=0", "--bot.session.enabled=false", "--bot.journal.dir=target/startup-journal")) {
+			assertEquals(BotSessionLifecycle.State.DISABLED, context.getBean(BotSessionLifecycle.class).getState());
+		}
+	}
+}
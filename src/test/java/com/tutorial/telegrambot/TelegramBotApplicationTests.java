@@ -3,7 +3,7 @@ package com.tutorial.telegrambot;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "bot.session.enabled=false")
 class TelegramBotApplicationTests {
 
 	@Test
@@ -0,0 +1,34 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateTextTests {
+
+	@Test
+	void rendersVariablesAndDefaults() {
+		TemplateText text = TemplateText.compile("{name|朋友}，您好！订单 {order} 已发货。");
+		assertEquals("张三，您好！订单 A-1 已发货。", text.render(Map.of("name", "张三", "order", "A-1")));
+		assertEquals("朋友，您好！订单  已发货。", text.render(Map.of()));
+		assertEquals(List.of("name", "order"), List.copyOf(text.getVariables()));
+	}
+
+	@Test
+	void doubledBracesAreLiteral() {
+		TemplateText text = TemplateText.compile("{{x}} = {x}");
+		assertEquals("{x} = 1", text.render(Map.of("x", "1")));
+		assertTrue(TemplateText.compile("").isEmpty());
+	}
+
+	@Test
+	void rejectsMalformedVariables() {
+		assertThrows(IllegalArgumentException.class, () -> TemplateText.compile("您好 {name"));
+		assertThrows(IllegalArgumentException.class, () -> TemplateText.compile("您好 {|默认}"));
+	}
+}
@@ -0,0 +1,180 @@
+package com.tutorial.telegrambot;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 关闭和开启 spring.threads.virtual.enabled 时，应用处理大量并发慢发送的对比
+ *
+ * 每种模式各启动一次应用，并发调用 /sendPhoto，请求经过 WebController、Bot.call、SendRateLimiter、
+ * AdaptiveSendLimit 和 telegrambots 的 HTTP 客户端发往 {@link FakeTelegramServer}，与线上的发送路径相同。
+ * 虚拟线程模式需要 Java 21+，低版本上跳过。
+ * 默认不运行，使用 {@code mvn test -Dloadtest=true -Dtest=ThreadModeBenchmarkTests} 启动，可调参数：
+ * <ul>
+ *     <li>loadtest.uploads：并发请求数，默认 1000</li>
+ *     <li>loadtest.upload-kb：每张图片的大小，默认 64</li>
+ *     <li>loadtest.latency-ms：模拟服务的响应延迟，默认 1000</li>
+ *     <li>loadtest.send-concurrency：固定的发送并发数（关闭自适应并发），默认 256；
+ *     自适应并发会把模拟服务的固定延迟当作拥塞而降到很低，掩盖线程模式的差别。设为 0 时使用应用的配置</li>
+ * </ul>
+ * 结果输出总耗时、p50/p99 完成时间、应用的平台线程数峰值（不含模拟服务的线程）和堆内存峰值。
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class ThreadModeBenchmarkTests {
+
+	static final FakeTelegramServer telegram = FakeTelegramServer.start()
+			.latency(Long.getLong("loadtest.latency-ms", 1000L), 0L);
+
+	@AfterAll
+	static void stopTelegram() {
+		telegram.close();
+	}
+
+	@Test
+	void platformThreads() throws Exception {
+		run(false);
+	}
+
+	@Test
+	void virtualThreads() throws Exception {
+		Assumptions.assumeTrue(VirtualThreads.isSupported(), "virtual threads require Java 21+");
+		run(true);
+	}
+
+	private void run(boolean virtual) throws Exception {
+		List<String> args = new ArrayList<>(List.of(
+				"--server.port=0",
+				"--spring.threads.virtual.enabled=" + virtual,
+				"--bot.token=1:bench-token",
+				"--bot.api.base-url=" + telegram.getBaseUrl(),
+				"--bot.session.enabled=false",
+				"--bot.journal.dir=target/thread-bench-journal",
+				"--bot.rate.global-per-second=100000",
+				"--bot.rate.global-burst=100000",
+				"--bot.rate.private-per-minute=1000000",
+				"--bot.rate.chat-burst=100000"));
+		int sendConcurrency = Integer.getInteger("loadtest.send-concurrency", 256);
+		if (sendConcurrency > 0) {
+			args.add("--bot.send.adaptive.enabled=false");
+			args.add("--bot.send.concurrency.initial=" + sendConcurrency);
+			args.add("--bot.send.concurrency.max=" + sendConcurrency);
+		}
+
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TelegramBotApplication.class)
+				.run(args.toArray(new String[0]))) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			benchmark(virtual ? "virtual" : "platform", port);
+		}
+	}
+
+	private void benchmark(String mode, int port) throws Exception {
+		int uploads = Integer.getInteger("loadtest.uploads", 1000);
+		int uploadKb = Integer.getInteger("loadtest.upload-kb", 64);
+		String photo = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(new byte[uploadKb * 1024]);
+		HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(30))
+				.build();
+
+		// 预热
+		send(client, port, 0, photo).join();
+		telegram.reset();
+		System.gc();
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+		AtomicLong peakThreads = new AtomicLong();
+		Thread sampler = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				peakThreads.accumulateAndGet(applicationThreads(), Math::max);
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}, "bench-thread-sampler");
+		sampler.setDaemon(true);
+		sampler.start();
+
+		long[] latencies = new long[uploads];
+		AtomicInteger failures = new AtomicInteger();
+		long start = System.nanoTime();
+		List<CompletableFuture<Void>> futures = new ArrayList<>(uploads);
+		for (int i = 0; i < uploads; i++) {
+			int index = i;
+			futures.add(send(client, port, i + 1, photo).handle((response, error) -> {
+				if (error != null || response.statusCode() != 200 || !response.body().startsWith("图片发送成功")) {
+					failures.incrementAndGet();
+				}
+				// 从全部提交开始计算的完成时间，包括在应用中排队等待线程和发送额度的时间
+				latencies[index] = System.nanoTime() - start;
+				return null;
+			}));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+		long elapsed = System.nanoTime() - start;
+		sampler.interrupt();
+
+		long heapPeak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+		Arrays.sort(latencies);
+		System.out.printf("%n=== thread mode benchmark: %s ===%n", mode);
+		System.out.printf("uploads=%d size=%dKB latency=%dms failures=%d telegram_messages=%d%n", uploads, uploadKb,
+				Long.getLong("loadtest.latency-ms", 1000L), failures.get(), telegram.getMessages());
+		System.out.printf("elapsed=%.2fs completion p50=%.0fms p99=%.0fms uploads/s=%.1f%n", elapsed / 1e9,
+				latencies[uploads / 2] / 1e6, latencies[Math.min(uploads - 1, (int) (uploads * 0.99))] / 1e6, uploads / (elapsed / 1e9));
+		System.out.printf("peak_app_platform_threads=%d heap_peak=%dMB%n", peakThreads.get(), heapPeak / (1024 * 1024));
+
+		assertEquals(0, failures.get(), "failed uploads");
+	}
+
+	/**
+	 * 发往不同的私聊，避免单个聊天的限流成为瓶颈
+	 */
+	private static CompletableFuture<HttpResponse<String>> send(HttpClient client, int port, int index, String photo) {
+		String json = "{\"chatId\":\"" + (100000 + index) + "\",\"caption\":\"<p>bench</p>\",\"photoPath\":\"" + photo + "\"}";
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/sendPhoto"))
+				.timeout(Duration.ofMinutes(10))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(json))
+				.build();
+		return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	/**
+	 * 当前的平台线程数，不含模拟服务和 HTTP 客户端的线程
+	 */
+	private static long applicationThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.map(Thread::getName)
+				.filter(name -> !name.startsWith(FakeTelegramServer.THREAD_PREFIX) && !name.startsWith("HttpClient-"))
+				.count();
+	}
+}